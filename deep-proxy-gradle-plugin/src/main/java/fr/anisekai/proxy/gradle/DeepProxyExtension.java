@@ -0,0 +1,24 @@
+package fr.anisekai.proxy.gradle;
+
+import org.gradle.api.provider.ListProperty;
+
+/**
+ * Configuration of the {@code fr.anisekai.deep-proxy} Gradle plugin, available as the {@code deepProxy} extension.
+ *
+ * <pre>{@code
+ * deepProxy {
+ *     packages = ['com.example.entities']
+ * }
+ * }</pre>
+ */
+public abstract class DeepProxyExtension {
+
+    /**
+     * The packages (including their sub-packages) in which the classes to proxy will be searched for. When empty, no
+     * proxy class is generated.
+     *
+     * @return A {@link ListProperty} of package names.
+     */
+    public abstract ListProperty<String> getPackages();
+
+}
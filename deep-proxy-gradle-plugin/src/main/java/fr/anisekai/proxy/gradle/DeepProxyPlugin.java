@@ -0,0 +1,52 @@
+package fr.anisekai.proxy.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+
+import java.util.Map;
+
+/**
+ * Gradle plugin generating the proxy classes of the configured packages at build time.
+ * <p>
+ * When applied alongside the {@code java} plugin, this registers a {@code generateProxyClasses} task whose output is
+ * added to the main source set output, so that the generated classes end up in the jar and on the runtime classpath.
+ * At runtime, the factory finds them before falling back to generating the classes itself.
+ */
+public class DeepProxyPlugin implements Plugin<Project> {
+
+    /**
+     * The name of the task generating the proxy classes.
+     */
+    public static final String TASK_NAME = "generateProxyClasses";
+
+    @Override
+    public void apply(Project project) {
+
+        DeepProxyExtension extension = project.getExtensions().create("deepProxy", DeepProxyExtension.class);
+
+        project.getPluginManager().withPlugin("java", plugin -> {
+            SourceSet main = project.getExtensions()
+                                    .getByType(SourceSetContainer.class)
+                                    .getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+
+            TaskProvider<GenerateProxyClassesTask> task = project.getTasks().register(
+                    TASK_NAME, GenerateProxyClassesTask.class, generate -> {
+                        generate.setGroup("build");
+                        generate.setDescription("Generates the deep-proxy classes of the configured packages.");
+                        generate.getClassesDirs().from(main.getOutput().getClassesDirs());
+                        // The runtime classpath of the source set contains its own output, which includes this task.
+                        generate.getClasspath().from(project.getConfigurations().getByName(JavaPlugin.RUNTIME_CLASSPATH_CONFIGURATION_NAME));
+                        generate.getPackages().set(extension.getPackages());
+                        generate.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("generated/deep-proxy/classes"));
+                    }
+            );
+
+            main.getOutput().dir(Map.of("builtBy", task), task.flatMap(GenerateProxyClassesTask::getOutputDirectory));
+        });
+    }
+
+}
@@ -0,0 +1,142 @@
+package fr.anisekai.proxy.gradle;
+
+import fr.anisekai.proxy.ProxyClassGenerator;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.*;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Task scanning compiled classes for the configured packages and writing the proxy class of each proxyable class in the
+ * output directory, using {@link ProxyClassGenerator#pregenerate(Class, File)}.
+ */
+@CacheableTask
+public abstract class GenerateProxyClassesTask extends DefaultTask {
+
+    /**
+     * The directories containing the compiled classes to scan.
+     *
+     * @return A {@link ConfigurableFileCollection} of class directories.
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClassesDirs();
+
+    /**
+     * The classpath required to load the scanned classes.
+     *
+     * @return A {@link ConfigurableFileCollection} of classpath entries.
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * The packages (including their sub-packages) in which the classes to proxy will be searched for.
+     *
+     * @return A {@link ListProperty} of package names.
+     */
+    @Input
+    public abstract ListProperty<String> getPackages();
+
+    /**
+     * The directory in which the proxy class files will be written.
+     *
+     * @return A {@link DirectoryProperty}.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @TaskAction
+    public void generate() {
+
+        File output = this.getOutputDirectory().get().getAsFile();
+        this.getFileSystemOperations().delete(spec -> spec.delete(output));
+        if (!output.mkdirs()) {
+            throw new GradleException("Unable to create " + output);
+        }
+
+        List<URL> urls = new ArrayList<>();
+        for (File file : this.getClassesDirs().plus(this.getClasspath())) {
+            urls.add(toUrl(file));
+        }
+
+        int generated = 0;
+        try (URLClassLoader loader = new URLClassLoader(urls.toArray(URL[]::new), this.getClass().getClassLoader())) {
+            for (File classesDir : this.getClassesDirs()) {
+                for (String className : this.findClassNames(classesDir.toPath())) {
+                    Class<?> type;
+                    try {
+                        type = Class.forName(className, false, loader);
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        this.getLogger().warn("Skipping {}: {}", className, e.toString());
+                        continue;
+                    }
+
+                    if (!ProxyClassGenerator.isProxyable(type)) {
+                        this.getLogger().debug("Skipping {}: not proxyable", className);
+                        continue;
+                    }
+
+                    ProxyClassGenerator.pregenerate(type, output);
+                    generated++;
+                }
+            }
+        } catch (IOException e) {
+            throw new GradleException("Unable to generate proxy classes", e);
+        }
+
+        this.getLogger().info("Generated {} proxy classes in {}", generated, output);
+    }
+
+    private Set<String> findClassNames(Path classesDir) throws IOException {
+
+        // Nested packages may be configured alongside their parent, a set avoids generating their classes twice.
+        Set<String> classNames = new LinkedHashSet<>();
+
+        for (String packageName : this.getPackages().get()) {
+            Path packageDir = classesDir.resolve(packageName.replace('.', File.separatorChar));
+            if (!Files.isDirectory(packageDir)) continue;
+
+            try (Stream<Path> files = Files.walk(packageDir)) {
+                files.filter(Files::isRegularFile)
+                     .map(file -> classesDir.relativize(file).toString())
+                     .filter(path -> path.endsWith(".class"))
+                     .map(path -> path.substring(0, path.length() - ".class".length()).replace(File.separatorChar, '.'))
+                     .filter(name -> !name.endsWith("module-info") && !name.endsWith("package-info"))
+                     .filter(name -> !name.endsWith(ProxyClassGenerator.PREGENERATED_SUFFIX))
+                     .forEach(classNames::add);
+            }
+        }
+
+        return classNames;
+    }
+
+    private static URL toUrl(File file) {
+
+        try {
+            return file.toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new GradleException("Invalid classpath entry " + file, e);
+        }
+    }
+
+}
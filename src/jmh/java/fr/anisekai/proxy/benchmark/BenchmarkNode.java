@@ -0,0 +1,136 @@
+package fr.anisekai.proxy.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Simple JavaBean used as the node type of every benchmarked object graph.
+ */
+public class BenchmarkNode {
+
+    /**
+     * Build a tree of {@link BenchmarkNode}. Every non-leaf node holds {@code width} children in its
+     * {@link #getChildren() children} list, the same children indexed by name in its {@link #getIndex() index} map,
+     * and its first child as its {@link #getChild() child}.
+     *
+     * @param width
+     *         The number of children of each non-leaf node.
+     * @param depth
+     *         The number of levels below the root.
+     *
+     * @return The root of the tree.
+     */
+    public static BenchmarkNode tree(int width, int depth) {
+
+        return tree(width, depth, 0);
+    }
+
+    private static BenchmarkNode tree(int width, int depth, long id) {
+
+        BenchmarkNode node = new BenchmarkNode();
+        node.setId(id);
+        node.setName("node-" + id);
+        node.setTags(new ArrayList<>(List.of("tag-a", "tag-b")));
+        node.setChildren(new ArrayList<>());
+        node.setIndex(new HashMap<>());
+
+        if (depth > 0) {
+            for (int i = 0; i < width; i++) {
+                BenchmarkNode child = tree(width, depth - 1, id * width + i + 1);
+                node.getChildren().add(child);
+                node.getIndex().put(child.getName(), child);
+            }
+            node.setChild(node.getChildren().getFirst());
+        }
+
+        return node;
+    }
+
+    /**
+     * Visit every node reachable from the provided node through {@link #getChildren()}, depth-first. When called on a
+     * proxy, every visited node is obtained through its parent's proxied getter.
+     *
+     * @param node
+     *         The node from which the walk starts.
+     * @param visitor
+     *         The {@link Consumer} receiving each visited node.
+     */
+    public static void walk(BenchmarkNode node, Consumer<BenchmarkNode> visitor) {
+
+        visitor.accept(node);
+        for (BenchmarkNode child : node.getChildren()) {
+            walk(child, visitor);
+        }
+    }
+
+    private long                       id;
+    private String                     name;
+    private List<String>               tags;
+    private BenchmarkNode              child;
+    private List<BenchmarkNode>        children;
+    private Map<String, BenchmarkNode> index;
+
+    public long getId() {
+
+        return this.id;
+    }
+
+    public void setId(long id) {
+
+        this.id = id;
+    }
+
+    public String getName() {
+
+        return this.name;
+    }
+
+    public void setName(String name) {
+
+        this.name = name;
+    }
+
+    public List<String> getTags() {
+
+        return this.tags;
+    }
+
+    public void setTags(List<String> tags) {
+
+        this.tags = tags;
+    }
+
+    public BenchmarkNode getChild() {
+
+        return this.child;
+    }
+
+    public void setChild(BenchmarkNode child) {
+
+        this.child = child;
+    }
+
+    public List<BenchmarkNode> getChildren() {
+
+        return this.children;
+    }
+
+    public void setChildren(List<BenchmarkNode> children) {
+
+        this.children = children;
+    }
+
+    public Map<String, BenchmarkNode> getIndex() {
+
+        return this.index;
+    }
+
+    public void setIndex(Map<String, BenchmarkNode> index) {
+
+        this.index = index;
+    }
+
+}
@@ -0,0 +1,127 @@
+package fr.anisekai.proxy.benchmark;
+
+import fr.anisekai.proxy.ClassProxyFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures common {@link List} and {@link Map} operations on containers obtained through a proxied getter, compared
+ * with the same operations on the raw containers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerBenchmark {
+
+    @Param({"16", "1024"})
+    private int size;
+
+    private ClassProxyFactory factory;
+
+    private List<BenchmarkNode>        rawList;
+    private List<BenchmarkNode>        proxyList;
+    private Map<String, BenchmarkNode> rawMap;
+    private Map<String, BenchmarkNode> proxyMap;
+
+    private BenchmarkNode extra;
+    private String        key;
+
+    @Setup
+    public void setup() {
+
+        BenchmarkNode root = BenchmarkNode.tree(this.size, 1);
+
+        this.factory = new ClassProxyFactory();
+
+        BenchmarkNode proxy = this.factory.create(root).getProxy();
+
+        this.rawList   = root.getChildren();
+        this.proxyList = proxy.getChildren();
+        this.rawMap    = root.getIndex();
+        this.proxyMap  = proxy.getIndex();
+        this.extra     = BenchmarkNode.tree(0, 0);
+        this.key       = this.rawList.get(this.size / 2).getName();
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        this.factory.close();
+    }
+
+    @Benchmark
+    public BenchmarkNode rawListGet() {
+
+        return this.rawList.get(this.size / 2);
+    }
+
+    @Benchmark
+    public BenchmarkNode proxyListGet() {
+
+        return this.proxyList.get(this.size / 2);
+    }
+
+    @Benchmark
+    public void rawListIterate(Blackhole blackhole) {
+
+        for (BenchmarkNode node : this.rawList) {
+            blackhole.consume(node);
+        }
+    }
+
+    @Benchmark
+    public void proxyListIterate(Blackhole blackhole) {
+
+        for (BenchmarkNode node : this.proxyList) {
+            blackhole.consume(node);
+        }
+    }
+
+    @Benchmark
+    public BenchmarkNode rawListAddRemove() {
+
+        this.rawList.add(this.extra);
+        return this.rawList.remove(this.size);
+    }
+
+    @Benchmark
+    public BenchmarkNode proxyListAddRemove() {
+
+        this.proxyList.add(this.extra);
+        return this.proxyList.remove(this.size);
+    }
+
+    @Benchmark
+    public BenchmarkNode rawMapGet() {
+
+        return this.rawMap.get(this.key);
+    }
+
+    @Benchmark
+    public BenchmarkNode proxyMapGet() {
+
+        return this.proxyMap.get(this.key);
+    }
+
+    @Benchmark
+    public BenchmarkNode rawMapPutRemove() {
+
+        this.rawMap.put("extra", this.extra);
+        return this.rawMap.remove("extra");
+    }
+
+    @Benchmark
+    public BenchmarkNode proxyMapPutRemove() {
+
+        this.proxyMap.put("extra", this.extra);
+        return this.proxyMap.remove("extra");
+    }
+
+}
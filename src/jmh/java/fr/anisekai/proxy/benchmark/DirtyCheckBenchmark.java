@@ -0,0 +1,82 @@
+package fr.anisekai.proxy.benchmark;
+
+import fr.anisekai.proxy.ClassProxyFactory;
+import fr.anisekai.proxy.interfaces.State;
+import fr.anisekai.proxy.reflection.Property;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link State#isDirty()} and {@link State#getDifferentialState()} on the root of a fully navigated graph,
+ * either clean or with a single modified leaf (the last one to be visited by a depth-first walk).
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirtyCheckBenchmark {
+
+    @Param({"2", "8"})
+    private int width;
+
+    @Param({"1", "3"})
+    private int depth;
+
+    @Param({"false", "true"})
+    private boolean dirty;
+
+    private ClassProxyFactory    factory;
+    private BenchmarkNode        raw;
+    private State<BenchmarkNode> state;
+
+    @Setup
+    public void setup() {
+
+        this.factory = new ClassProxyFactory();
+        this.raw     = BenchmarkNode.tree(this.width, this.depth);
+        this.state   = this.factory.create(this.raw);
+
+        // Make sure every node of the graph is proxied.
+        BenchmarkNode.walk(this.state.getProxy(), node -> {});
+
+        if (this.dirty) {
+            BenchmarkNode current = this.state.getProxy();
+            while (!current.getChildren().isEmpty()) {
+                List<BenchmarkNode> children = current.getChildren();
+                current = children.get(children.size() - 1);
+            }
+            current.setName("modified");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        this.factory.close();
+    }
+
+    @Benchmark
+    public boolean isDirty() {
+
+        return this.state.isDirty();
+    }
+
+    @Benchmark
+    public Map<Property, Object> getDifferentialState() {
+
+        return this.state.getDifferentialState();
+    }
+
+    @Benchmark
+    public void walkRawGraph(Blackhole blackhole) {
+
+        BenchmarkNode.walk(this.raw, blackhole::consume);
+    }
+
+}
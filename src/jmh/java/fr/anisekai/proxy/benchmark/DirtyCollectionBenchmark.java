@@ -0,0 +1,64 @@
+package fr.anisekai.proxy.benchmark;
+
+import fr.anisekai.proxy.ClassProxyFactory;
+import fr.anisekai.proxy.TraversalMode;
+import fr.anisekai.proxy.interfaces.State;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the collection of the modified states of a large, fully navigated graph whose leaves have all been modified,
+ * either by the calling thread or split between the threads of the common fork-join pool.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirtyCollectionBenchmark {
+
+    @Param({"SEQUENTIAL", "PARALLEL"})
+    private TraversalMode traversal;
+
+    private ClassProxyFactory    factory;
+    private State<BenchmarkNode> state;
+
+    @Setup
+    public void setup() {
+
+        this.factory = ClassProxyFactory.builder().traversalMode(this.traversal).build();
+        this.state   = this.factory.create(BenchmarkNode.tree(32, 3));
+
+        BenchmarkNode.walk(this.state.getProxy(), node -> {
+            if (node.getChildren().isEmpty()) node.setName("modified");
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        this.factory.close();
+    }
+
+    @Benchmark
+    public List<State<?>> collectFromRoot() {
+
+        return this.factory.getDirtyStates(this.state);
+    }
+
+    @Benchmark
+    public List<State<?>> collectFromFactory() {
+
+        return this.factory.getDirtyStates();
+    }
+
+    @Benchmark
+    public boolean anyInFactory() {
+
+        return this.factory.hasDirtyStates();
+    }
+
+}
@@ -0,0 +1,97 @@
+package fr.anisekai.proxy.benchmark;
+
+import fr.anisekai.proxy.ClassProxyFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a call going through a generated proxy compared with the same call on the raw instance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptionBenchmark {
+
+    @Param({"1", "3"})
+    private int depth;
+
+    private ClassProxyFactory factory;
+    private BenchmarkNode     raw;
+    private BenchmarkNode     proxy;
+    private int               counter;
+
+    @Setup
+    public void setup() {
+
+        this.factory = new ClassProxyFactory();
+        this.raw     = BenchmarkNode.tree(1, this.depth);
+        this.proxy   = this.factory.create(this.raw).getProxy();
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        this.factory.close();
+    }
+
+    @Benchmark
+    public String rawGetter() {
+
+        return this.raw.getName();
+    }
+
+    @Benchmark
+    public String proxyGetter() {
+
+        return this.proxy.getName();
+    }
+
+    @Benchmark
+    public void rawSetter() {
+
+        this.raw.setName(this.nextName());
+    }
+
+    @Benchmark
+    public void proxySetter() {
+
+        this.proxy.setName(this.nextName());
+    }
+
+    @Benchmark
+    public String rawNavigation() {
+
+        return navigate(this.raw).getName();
+    }
+
+    @Benchmark
+    public String proxyNavigation() {
+
+        return navigate(this.proxy).getName();
+    }
+
+    @Benchmark
+    public int proxyHashCode() {
+
+        return this.proxy.hashCode();
+    }
+
+    private String nextName() {
+
+        return (this.counter++ & 1) == 0 ? "even" : "odd";
+    }
+
+    private static BenchmarkNode navigate(BenchmarkNode node) {
+
+        BenchmarkNode current = node;
+        while (current.getChild() != null) {
+            current = current.getChild();
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,86 @@
+package fr.anisekai.proxy.benchmark;
+
+import fr.anisekai.proxy.ClassProxyFactory;
+import fr.anisekai.proxy.interfaces.State;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@link ClassProxyFactory#create(Object)}, both for a single object and for a whole graph whose
+ * nested proxies are created while navigating it, and compares creating the proxies of a batch of rows one by one with
+ * {@link ClassProxyFactory#createAll(java.util.Collection)}.
+ * <p>
+ * Each invocation uses its own {@link ClassProxyFactory}, as a factory only creates one proxy per instance. The cost of
+ * closing the factory is therefore included in the results.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyCreationBenchmark {
+
+    @Param({"2", "8"})
+    private int width;
+
+    @Param({"1", "3"})
+    private int depth;
+
+    private BenchmarkNode       root;
+    private List<BenchmarkNode> rows;
+
+    @Setup
+    public void setup() {
+
+        this.root = BenchmarkNode.tree(this.width, this.depth);
+        this.rows = new ArrayList<>();
+        BenchmarkNode.walk(this.root, this.rows::add);
+    }
+
+    @Benchmark
+    public State<BenchmarkNode> createRoot() {
+
+        try (ClassProxyFactory factory = new ClassProxyFactory()) {
+            return factory.create(this.root);
+        }
+    }
+
+    @Benchmark
+    public void createGraph(Blackhole blackhole) {
+
+        try (ClassProxyFactory factory = new ClassProxyFactory()) {
+            BenchmarkNode proxy = factory.create(this.root).getProxy();
+            BenchmarkNode.walk(proxy, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void createRowsOneByOne(Blackhole blackhole) {
+
+        try (ClassProxyFactory factory = new ClassProxyFactory()) {
+            for (BenchmarkNode row : this.rows) {
+                blackhole.consume(factory.create(row));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<State<BenchmarkNode>> createRowsInBulk() {
+
+        try (ClassProxyFactory factory = new ClassProxyFactory()) {
+            return factory.createAll(this.rows);
+        }
+    }
+
+    @Benchmark
+    public void walkRawGraph(Blackhole blackhole) {
+
+        BenchmarkNode.walk(this.root, blackhole::consume);
+    }
+
+}
@@ -0,0 +1,86 @@
+package fr.anisekai.proxy.benchmark;
+
+import fr.anisekai.proxy.ClassProxyFactory;
+import fr.anisekai.proxy.UnwrapMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ClassProxyFactory#unwrap(Object)} on a single proxy and on containers holding either proxies or raw
+ * instances, in every {@link UnwrapMode}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnwrapBenchmark {
+
+    @Param({"16", "1024"})
+    private int size;
+
+    @Param({"COPY", "VIEW"})
+    private UnwrapMode mode;
+
+    private ClassProxyFactory factory;
+
+    private BenchmarkNode              proxy;
+    private List<BenchmarkNode>        rawList;
+    private List<BenchmarkNode>        proxiedList;
+    private Map<String, BenchmarkNode> proxiedMap;
+
+    @Setup
+    public void setup() {
+
+        BenchmarkNode root = BenchmarkNode.tree(this.size, 1);
+
+        this.factory     = ClassProxyFactory.builder().unwrapMode(this.mode).build();
+        this.proxy       = this.factory.create(root).getProxy();
+        this.rawList     = root.getChildren();
+        this.proxiedList = new ArrayList<>();
+        this.proxiedMap  = new HashMap<>();
+
+        for (BenchmarkNode child : root.getChildren()) {
+            BenchmarkNode childProxy = this.factory.create(child).getProxy();
+            this.proxiedList.add(childProxy);
+            this.proxiedMap.put(child.getName(), childProxy);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        this.factory.close();
+    }
+
+    @Benchmark
+    public BenchmarkNode unwrapProxy() {
+
+        return this.factory.unwrap(this.proxy);
+    }
+
+    @Benchmark
+    public List<BenchmarkNode> unwrapRawList() {
+
+        return this.factory.unwrap(this.rawList);
+    }
+
+    @Benchmark
+    public List<BenchmarkNode> unwrapProxiedList() {
+
+        return this.factory.unwrap(this.proxiedList);
+    }
+
+    @Benchmark
+    public Map<String, BenchmarkNode> unwrapProxiedMap() {
+
+        return this.factory.unwrap(this.proxiedMap);
+    }
+
+}
@@ -0,0 +1,101 @@
+package fr.anisekai.proxy.benchmark;
+
+import fr.anisekai.proxy.ClassProxyFactory;
+import fr.anisekai.proxy.ThreadingMode;
+import fr.anisekai.proxy.interfaces.State;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of many virtual threads each driving their own unit of work (creating the proxy of a small
+ * graph, reading and writing through it, checking it for changes and releasing it), either on a factory shared by every
+ * thread, on a factory per thread, or on a factory per thread {@linkplain ThreadingMode#CONFINED confined} to it.
+ * <p>
+ * Each thread yields halfway through its unit of work, as a request would when waiting for I/O, so that threads are
+ * unmounted and remounted while the factory is in use. A monitor held on the path of the factory would pin the carrier
+ * threads and serialize the work.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    @Param({"10000"})
+    private int threads;
+
+    @Param({"SHARED", "PER_THREAD", "CONFINED"})
+    private String factory;
+
+    private List<BenchmarkNode> units;
+
+    @Setup
+    public void setup() {
+
+        this.units = new ArrayList<>(this.threads);
+        for (int i = 0; i < this.threads; i++) {
+            this.units.add(BenchmarkNode.tree(2, 2));
+        }
+    }
+
+    @Benchmark
+    public int unitsOfWork() throws Exception {
+
+        ClassProxyFactory shared = this.factory.equals("SHARED") ? new ClassProxyFactory() : null;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> results = new ArrayList<>(this.threads);
+            for (BenchmarkNode unit : this.units) {
+                results.add(executor.submit(() -> shared == null ? this.isolated(unit) : work(shared, unit)));
+            }
+
+            int dirty = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) dirty++;
+            }
+            return dirty;
+        } finally {
+            if (shared != null) shared.close();
+        }
+    }
+
+    private boolean isolated(BenchmarkNode unit) {
+
+        ThreadingMode mode = this.factory.equals("CONFINED") ? ThreadingMode.CONFINED : ThreadingMode.SHARED;
+
+        try (ClassProxyFactory factory = ClassProxyFactory.builder().threadingMode(mode).build()) {
+            return work(factory, unit);
+        }
+    }
+
+    private static boolean work(ClassProxyFactory factory, BenchmarkNode unit) {
+
+        State<BenchmarkNode> state = factory.create(unit);
+        BenchmarkNode        proxy = state.getProxy();
+
+        for (BenchmarkNode child : proxy.getChildren()) {
+            child.getName();
+            child.getTags();
+        }
+
+        Thread.yield();
+
+        BenchmarkNode child = proxy.getChild();
+        child.setName(child.getName() + "!");
+        boolean dirty = state.isDirty();
+
+        // Leave the graph as it was for the next invocation.
+        child.setName(child.getName().substring(0, child.getName().length() - 1));
+        state.close();
+        return dirty;
+    }
+
+}
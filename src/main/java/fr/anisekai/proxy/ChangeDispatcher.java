@@ -0,0 +1,169 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.changes.Change;
+import fr.anisekai.proxy.changes.ChangeListener;
+import fr.anisekai.proxy.changes.DeliveryMode;
+import fr.anisekai.proxy.reflection.Property;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Forwards the changes made through the proxies of a {@link ClassProxyFactory} to its {@link ChangeJournal} and to its
+ * {@link ChangeSubscription}s. States check {@link #isActive()} before describing a change, so that changes cost a
+ * single volatile read when nothing records them.
+ * <p>
+ * Subscriptions are kept in an array replaced on each registration, so that dispatching a change never locks.
+ */
+final class ChangeDispatcher {
+
+    private static final ChangeSubscription[] NONE = new ChangeSubscription[0];
+
+    private final    ChangeJournal        journal;
+    private final    AtomicLong           sequence      = new AtomicLong();
+    private final    ReentrantLock        lock          = new ReentrantLock();
+    private volatile ChangeSubscription[] subscriptions = NONE;
+
+    ChangeDispatcher(@Nullable ChangeJournal journal) {
+
+        this.journal = journal;
+    }
+
+    /**
+     * Retrieve the {@link ChangeJournal} changes are recorded in.
+     *
+     * @return The {@link ChangeJournal}, or {@code null} if the factory does not have one.
+     */
+    @Nullable
+    ChangeJournal getJournal() {
+
+        return this.journal;
+    }
+
+    /**
+     * Check if changes are recorded by a journal or received by listeners.
+     *
+     * @return {@code true} if changes must be {@linkplain #journal recorded}, {@code false} otherwise.
+     */
+    boolean isActive() {
+
+        return this.journal != null || this.subscriptions.length > 0;
+    }
+
+    /**
+     * Number a change and record it in the journal, if the factory has one. This must be called while the change is
+     * applied, under the write lock of the factory, so that changes are numbered in the order in which they were
+     * applied: replaying the journal then always ends on the latest value of each property.
+     *
+     * @param state
+     *         The state which has been modified.
+     * @param property
+     *         The property which has been written, or which holds the mutated container.
+     * @param key
+     *         The key or element touched by a container mutation, if known.
+     * @param oldValue
+     *         The raw value of the property before the write.
+     * @param newValue
+     *         The raw value written to the property.
+     *
+     * @return The sequence number of the change, to {@linkplain #dispatch dispatch} it with.
+     */
+    long journal(StateNode<?> state, Property property, Object key, Object oldValue, Object newValue) {
+
+        return this.journal != null ?
+                this.journal.record(state, property, key, oldValue, newValue) :
+                this.sequence.getAndIncrement();
+    }
+
+    /**
+     * Forward a change numbered by {@link #journal} to every subscription. This is called once the write lock of the
+     * factory has been released, so that synchronous listeners see the change applied without blocking the writes of
+     * other threads.
+     *
+     * @param sequence
+     *         The sequence number of the change.
+     * @param state
+     *         The state which has been modified.
+     * @param property
+     *         The property which has been written, or which holds the mutated container.
+     * @param key
+     *         The key or element touched by a container mutation, if known.
+     * @param oldValue
+     *         The raw value of the property before the write.
+     * @param newValue
+     *         The raw value written to the property.
+     */
+    void dispatch(long sequence, StateNode<?> state, Property property, Object key, Object oldValue, Object newValue) {
+
+        ChangeSubscription[] subscriptions = this.subscriptions;
+        if (subscriptions.length == 0) return;
+
+        Change change = new Change(sequence, state, property, key, oldValue, newValue);
+        for (ChangeSubscription subscription : subscriptions) subscription.offer(change);
+    }
+
+    /**
+     * Register a listener.
+     *
+     * @param listener
+     *         The {@link ChangeListener}.
+     * @param mode
+     *         The {@link DeliveryMode} of the listener.
+     * @param executor
+     *         The {@link Executor} delivering changes in {@link DeliveryMode#ASYNCHRONOUS} mode.
+     *
+     * @return The {@link ChangeSubscription} of the listener.
+     */
+    ChangeSubscription subscribe(ChangeListener listener, DeliveryMode mode, Executor executor) {
+
+        ChangeSubscription subscription = new ChangeSubscription(this, listener, mode, executor);
+
+        this.lock.lock();
+        try {
+            ChangeSubscription[] subscriptions = Arrays.copyOf(this.subscriptions, this.subscriptions.length + 1);
+            subscriptions[subscriptions.length - 1] = subscription;
+            this.subscriptions = subscriptions;
+        } finally {
+            this.lock.unlock();
+        }
+        return subscription;
+    }
+
+    /**
+     * Remove a subscription, which stops receiving changes.
+     *
+     * @param subscription
+     *         The {@link ChangeSubscription}.
+     */
+    void unsubscribe(ChangeSubscription subscription) {
+
+        this.lock.lock();
+        try {
+            this.subscriptions = Arrays.stream(this.subscriptions)
+                                       .filter(candidate -> candidate != subscription)
+                                       .toArray(ChangeSubscription[]::new);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Deliver the changes buffered by every {@link DeliveryMode#BATCHED} subscription.
+     */
+    void flush() {
+
+        for (ChangeSubscription subscription : this.subscriptions) subscription.flush();
+    }
+
+    /**
+     * Close every subscription, discarding the changes they have not delivered yet.
+     */
+    void closeAll() {
+
+        for (ChangeSubscription subscription : this.subscriptions) subscription.close();
+    }
+
+}
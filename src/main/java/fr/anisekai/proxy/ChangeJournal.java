@@ -0,0 +1,270 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.changes.Change;
+import fr.anisekai.proxy.reflection.Property;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * An append-only journal of the changes made through the proxies of a {@link ClassProxyFactory}, enabled with
+ * {@link ClassProxyFactory.Builder#journal(int)}.
+ * <p>
+ * Every intercepted setter and container mutation is recorded as a {@link Change}, numbered in the order in which it
+ * happened, into a ring buffer preallocated with the capacity of the journal: recording a change allocates nothing,
+ * and the oldest changes are overwritten once the buffer is full. Changes are read through {@link Cursor}s, each
+ * following the journal at its own pace and counting the changes it missed because they were overwritten before being
+ * read.
+ * <p>
+ * Changes are claimed with an atomic counter and published slot by slot, so the journal can be written by several
+ * threads at once and read by others while it is written. A writer only takes over its slot once the change it
+ * overwrites, numbered one capacity before its own, has been published, so that two writers never write the same slot
+ * at once. A cursor never skips a change which is still being written: it waits for it, so that changes are always
+ * read in order.
+ */
+public final class ChangeJournal {
+
+    // The sequence published in each slot, or WRITING while the slot is being written. Slots start with the sequence
+    // preceding their first change by a capacity, so that the first writer of a slot claims it like the others.
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long      WRITING   = Long.MIN_VALUE;
+    // How many times a writer spins on a slot still being written before yielding.
+    private static final int       SPINS     = 64;
+
+    private final int            capacity;
+    private final int            mask;
+    private final long[]         sequences;
+    private final StateNode<?>[] states;
+    private final Property[]     properties;
+    private final Object[]       keys;
+    private final Object[]       oldValues;
+    private final Object[]       newValues;
+    private final AtomicLong     next = new AtomicLong();
+
+    /**
+     * Create a journal keeping at least the provided number of changes, rounded up to a power of two.
+     *
+     * @param capacity
+     *         The minimum number of changes kept by the journal.
+     */
+    ChangeJournal(int capacity) {
+
+        this.capacity   = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.mask       = this.capacity - 1;
+        this.sequences  = new long[this.capacity];
+        this.states     = new StateNode<?>[this.capacity];
+        this.properties = new Property[this.capacity];
+        this.keys       = new Object[this.capacity];
+        this.oldValues  = new Object[this.capacity];
+        this.newValues  = new Object[this.capacity];
+        Arrays.setAll(this.sequences, slot -> slot - this.capacity);
+    }
+
+    /**
+     * Record a change.
+     *
+     * @param state
+     *         The state which has been modified.
+     * @param property
+     *         The property which has been written, or which holds the mutated container.
+     * @param key
+     *         The key or element touched by a container mutation, if known.
+     * @param oldValue
+     *         The raw value of the property before the write.
+     * @param newValue
+     *         The raw value written to the property.
+     *
+     * @return The sequence number of the change.
+     */
+    long record(StateNode<?> state, Property property, Object key, Object oldValue, Object newValue) {
+
+        long sequence = this.next.getAndIncrement();
+        int  slot     = (int) sequence & this.mask;
+
+        // The previous change of the slot may still be written by a writer claimed a capacity earlier, which may need
+        // the processor of this thread to finish.
+        long overwritten = sequence - this.capacity;
+        for (int spins = 0; !SEQUENCES.compareAndSet(this.sequences, slot, overwritten, WRITING); spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        VarHandle.storeStoreFence();
+        this.states[slot]     = state;
+        this.properties[slot] = property;
+        this.keys[slot]       = key;
+        this.oldValues[slot]  = oldValue;
+        this.newValues[slot]  = newValue;
+        SEQUENCES.setRelease(this.sequences, slot, sequence);
+        return sequence;
+    }
+
+    /**
+     * Retrieve the number of changes this journal keeps before overwriting the oldest ones.
+     *
+     * @return The capacity of the journal.
+     */
+    public int getCapacity() {
+
+        return this.capacity;
+    }
+
+    /**
+     * Retrieve the sequence number the next change will have, which is also the number of changes recorded so far.
+     *
+     * @return The next sequence number.
+     */
+    public long getNextSequence() {
+
+        return this.next.get();
+    }
+
+    /**
+     * Create a {@link Cursor} reading the changes recorded from now on.
+     *
+     * @return A new {@link Cursor}.
+     */
+    public Cursor cursor() {
+
+        return new Cursor(this.next.get());
+    }
+
+    /**
+     * Create a {@link Cursor} reading the changes starting from the provided sequence number. Changes which have already
+     * been overwritten are counted as {@linkplain Cursor#getMissed() missed}.
+     *
+     * @param sequence
+     *         The sequence number of the first change to read, such as {@code 0} to read every change still kept.
+     *
+     * @return A new {@link Cursor}.
+     */
+    public Cursor cursor(long sequence) {
+
+        if (sequence < 0) throw new IllegalArgumentException("The sequence cannot be negative");
+        return new Cursor(sequence);
+    }
+
+    private long publishedAt(long sequence) {
+
+        return (long) SEQUENCES.getAcquire(this.sequences, (int) sequence & this.mask);
+    }
+
+    /**
+     * Read the change with the provided sequence number, if its slot currently holds it.
+     */
+    @Nullable
+    private Change read(long sequence) {
+
+        int slot = (int) sequence & this.mask;
+        if ((long) SEQUENCES.getAcquire(this.sequences, slot) != sequence) return null;
+
+        Change change = new Change(
+                sequence,
+                this.states[slot],
+                this.properties[slot],
+                this.keys[slot],
+                this.oldValues[slot],
+                this.newValues[slot]
+        );
+
+        // The slot may have been overwritten while it was read.
+        VarHandle.loadLoadFence();
+        return (long) SEQUENCES.getAcquire(this.sequences, slot) == sequence ? change : null;
+    }
+
+    /**
+     * Reads the changes of a {@link ChangeJournal} in order. A cursor is meant to be used by a single thread.
+     */
+    public final class Cursor {
+
+        private long position;
+        private long missed;
+
+        private Cursor(long position) {
+
+            this.position = position;
+        }
+
+        /**
+         * Read the next change.
+         *
+         * @return The next {@link Change}, or {@code null} if it has not been recorded yet.
+         */
+        @Nullable
+        public Change poll() {
+
+            ChangeJournal journal = ChangeJournal.this;
+            while (true) {
+                long limit = journal.next.get();
+                if (this.position >= limit) return null;
+
+                if (limit - this.position > journal.capacity) {
+                    long skipped = limit - journal.capacity - this.position;
+                    this.missed   += skipped;
+                    this.position += skipped;
+                }
+
+                Change change = journal.read(this.position);
+                if (change != null) {
+                    this.position++;
+                    return change;
+                }
+
+                if (journal.publishedAt(this.position) > this.position) {
+                    // Overwritten by a newer change while it was read.
+                    this.missed++;
+                    this.position++;
+                } else if (journal.next.get() - this.position <= journal.capacity) {
+                    // Still being written.
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Read every change recorded so far, handing them to the provided consumer.
+         *
+         * @param consumer
+         *         The {@link Consumer} receiving each {@link Change}, in order.
+         *
+         * @return The number of changes read.
+         */
+        public int drain(Consumer<? super Change> consumer) {
+
+            int count = 0;
+            for (Change change = this.poll(); change != null; change = this.poll()) {
+                consumer.accept(change);
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Retrieve the sequence number of the next change this cursor will read.
+         *
+         * @return The position of this cursor.
+         */
+        public long getPosition() {
+
+            return this.position;
+        }
+
+        /**
+         * Retrieve the number of changes this cursor skipped because they had been overwritten before being read.
+         *
+         * @return The number of missed changes.
+         */
+        public long getMissed() {
+
+            return this.missed;
+        }
+
+    }
+
+}
@@ -0,0 +1,215 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.changes.Change;
+import fr.anisekai.proxy.changes.ChangeListener;
+import fr.anisekai.proxy.changes.DeliveryMode;
+import fr.anisekai.proxy.interfaces.State;
+import fr.anisekai.proxy.reflection.Property;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The registration of a {@link ChangeListener} on a {@link ClassProxyFactory}, returned by
+ * {@link ClassProxyFactory#addChangeListener(ChangeListener, DeliveryMode)}. Closing it unregisters the listener.
+ * <p>
+ * Unless the listener is {@linkplain DeliveryMode#SYNCHRONOUS synchronous}, changes are buffered until they are
+ * delivered. The buffer coalesces repeated changes of the same property of a state (or of the same key of a container)
+ * into a single change, holding the sequence number and the new value of the latest change and the old value of the
+ * first one, so that a property written many times between two deliveries is only delivered once.
+ */
+public final class ChangeSubscription implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeSubscription.class);
+
+    private final    ChangeDispatcher dispatcher;
+    private final    ChangeListener   listener;
+    private final    DeliveryMode     mode;
+    private final    Executor         executor;
+    private final    ReentrantLock    lock    = new ReentrantLock();
+    private final    Map<Key, Change> pending = new LinkedHashMap<>();
+    private          boolean          scheduled;
+    private volatile boolean          active  = true;
+
+    ChangeSubscription(ChangeDispatcher dispatcher, ChangeListener listener, DeliveryMode mode, Executor executor) {
+
+        this.dispatcher = dispatcher;
+        this.listener   = listener;
+        this.mode       = mode;
+        this.executor   = executor;
+    }
+
+    /**
+     * Receive a change, delivering it right away or buffering it depending on the {@link DeliveryMode}.
+     *
+     * @param change
+     *         The {@link Change}.
+     */
+    void offer(Change change) {
+
+        if (this.mode == DeliveryMode.SYNCHRONOUS) {
+            this.deliver(List.of(change));
+            return;
+        }
+
+        boolean schedule;
+        this.lock.lock();
+        try {
+            this.coalesce(change);
+            schedule = this.mode == DeliveryMode.ASYNCHRONOUS && !this.scheduled;
+            if (schedule) this.scheduled = true;
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (schedule) {
+            try {
+                this.executor.execute(this::deliverPending);
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Could not schedule the delivery of changes", e);
+                this.lock.lock();
+                try {
+                    this.scheduled = false;
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver the buffered changes if this subscription is {@linkplain DeliveryMode#BATCHED batched}.
+     */
+    void flush() {
+
+        if (this.mode != DeliveryMode.BATCHED) return;
+
+        List<Change> batch = this.drain();
+        if (!batch.isEmpty()) this.deliver(batch);
+    }
+
+    private void coalesce(Change change) {
+
+        Key    key      = new Key(change.state(), change.property(), change.key());
+        Change previous = this.pending.remove(key);
+        if (previous != null) {
+            change = new Change(
+                    change.sequence(),
+                    change.state(),
+                    change.property(),
+                    change.key(),
+                    previous.oldValue(),
+                    change.newValue()
+            );
+        }
+        // Re-inserted, so that the buffer stays ordered by the latest change of each key.
+        this.pending.put(key, change);
+    }
+
+    private List<Change> drain() {
+
+        this.lock.lock();
+        try {
+            List<Change> batch = new ArrayList<>(this.pending.values());
+            this.pending.clear();
+            // Threads may offer their changes in a slightly different order than they were numbered.
+            batch.sort(Comparator.comparingLong(Change::sequence));
+            return batch;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void deliverPending() {
+
+        while (true) {
+            List<Change> batch;
+            this.lock.lock();
+            try {
+                batch = this.drain();
+                if (batch.isEmpty()) {
+                    this.scheduled = false;
+                    return;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            this.deliver(batch);
+        }
+    }
+
+    private void deliver(List<Change> batch) {
+
+        if (!this.active) return;
+
+        try {
+            this.listener.onChanges(Collections.unmodifiableList(batch));
+        } catch (RuntimeException e) {
+            LOGGER.warn("A change listener failed to handle {} changes", batch.size(), e);
+        }
+    }
+
+    /**
+     * Retrieve the {@link DeliveryMode} of the listener.
+     *
+     * @return The {@link DeliveryMode}.
+     */
+    public DeliveryMode getDeliveryMode() {
+
+        return this.mode;
+    }
+
+    /**
+     * Check if the listener still receives changes.
+     *
+     * @return {@code true} if this subscription has not been closed, {@code false} otherwise.
+     */
+    public boolean isActive() {
+
+        return this.active;
+    }
+
+    /**
+     * Unregister the listener, discarding the changes it has not received yet.
+     */
+    @Override
+    public void close() {
+
+        this.active = false;
+        this.dispatcher.unsubscribe(this);
+
+        this.lock.lock();
+        try {
+            this.pending.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * The key under which changes are coalesced, comparing states by identity.
+     */
+    private record Key(State<?> state, Property property, Object key) {
+
+        @Override
+        public boolean equals(Object o) {
+
+            return o instanceof Key other
+                    && this.state == other.state
+                    && Objects.equals(this.property, other.property)
+                    && Objects.equals(this.key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return 31 * (31 * System.identityHashCode(this.state) + Objects.hashCode(this.property)) + Objects.hashCode(this.key);
+        }
+
+    }
+
+}
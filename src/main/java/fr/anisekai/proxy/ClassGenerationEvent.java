@@ -0,0 +1,27 @@
+package fr.anisekai.proxy;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event recorded when the proxy class of a class is resolved, either by generating it or by loading its
+ * pregenerated version (see {@link ProxyTemplate#of(Class)}).
+ */
+@Name("fr.anisekai.proxy.ClassGeneration")
+@Label("Proxy Class Generation")
+@Category("Deep Proxy")
+@Description("Resolution of the proxy class of a class")
+@StackTrace(false)
+final class ClassGenerationEvent extends Event {
+
+    @Label("Class")
+    String className;
+
+    @Label("Pregenerated")
+    @Description("Whether the proxy class has been generated ahead of time")
+    boolean pregenerated;
+
+    @Label("Bytecode Size")
+    @DataAmount
+    int bytes;
+
+}
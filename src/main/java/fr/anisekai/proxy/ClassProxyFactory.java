@@ -1,36 +1,47 @@
 package fr.anisekai.proxy;
 
+import fr.anisekai.proxy.cache.CacheStats;
+import fr.anisekai.proxy.cache.ClassCache;
+import fr.anisekai.proxy.changes.ChangeListener;
+import fr.anisekai.proxy.changes.DeliveryMode;
 import fr.anisekai.proxy.exceptions.ProxyAccessException;
 import fr.anisekai.proxy.exceptions.ProxyCreationException;
 import fr.anisekai.proxy.exceptions.ProxyException;
-import fr.anisekai.proxy.exceptions.ProxyInvocationException;
 import fr.anisekai.proxy.interfaces.Dirtyable;
+import fr.anisekai.proxy.interfaces.Interceptable;
 import fr.anisekai.proxy.interfaces.ProxyInterceptor;
 import fr.anisekai.proxy.interfaces.ProxyPolicy;
 import fr.anisekai.proxy.interfaces.State;
+import fr.anisekai.proxy.reflection.Properties;
 import fr.anisekai.proxy.reflection.Property;
-import net.bytebuddy.ByteBuddy;
-import net.bytebuddy.description.modifier.Visibility;
-import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
-import net.bytebuddy.implementation.MethodDelegation;
+import fr.anisekai.proxy.reflection.PropertyIndex;
+import net.bytebuddy.implementation.bind.annotation.FieldValue;
 import net.bytebuddy.implementation.bind.annotation.RuntimeType;
-import net.bytebuddy.implementation.bind.annotation.This;
-import net.bytebuddy.matcher.ElementMatchers;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Centralized factory and registry for state-aware proxies.
  * <p>
  * This factory manages the lifecycle of proxies, ensures that an object instance is only proxied once (referential
  * integrity), and provides utility methods for deep-wrapping and unwrapping object graphs.
+ * <p>
+ * The factory never enters an object monitor on its hot paths: the registry is read without locking and its writes
+ * only hold the {@link ReentrantLock} of one segment, so that virtual threads using a shared factory are never pinned
+ * to their carrier thread. Factories living within a single thread can drop synchronization entirely, while proxy
+ * graphs shared between threads require {@link ThreadingMode#CONCURRENT} (see {@link ThreadingMode}).
  */
 @SuppressWarnings("unchecked")
 public final class ClassProxyFactory implements AutoCloseable {
@@ -39,13 +50,55 @@ public final class ClassProxyFactory implements AutoCloseable {
 
     /**
      * A global, static cache for the generated proxy classes. This is the expensive part we want to do only once per
-     * original class across the entire application.
+     * original class across the entire application. Proxy classes are unloaded along with their original class.
+     */
+    private static final ClassCache<ProxyTemplate> PROXY_CLASS_CACHE = new ClassCache<>(ProxyTemplate::of);
+
+    /**
+     * The number of instances registered at once by {@link #createAll(Stream)}.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * The registry of every state managed by this factory, indexed both by proxy and by original instance.
+     */
+    private final IdentityMap<StateNode<?>>     registry;
+    /**
+     * The {@link PropertyPolicy} of each property, indexed by the {@link PropertyIndex} of their class.
+     */
+    private final IdentityMap<PropertyPolicy[]> policies;
+    /**
+     * The proxy classes already resolved by this factory, indexed by original class. Only used by factories confined
+     * to a thread, which then stop using the application-wide cache once a class has been resolved.
+     */
+    private final IdentityMap<ProxyTemplate>    templates;
+    private final ProxyPolicy                   policy;
+    private final SnapshotMode                  snapshotMode;
+    private final UnwrapMode                    unwrapMode;
+    private final ProxyMetrics                  metrics;
+    private final ChangeDispatcher              changes;
+    private final ThreadingMode                 threadingMode;
+    private final TraversalMode                 traversalMode;
+    private final Thread                        owner;
+    private final ReentrantLock                 writeLock;
+    /**
+     * The states holding a value which had no state yet when they were registered, indexed by value (see
+     * {@link #linkReferences(StateNode)}). Guarded by {@link #pendingLock}, unless the factory is confined to a thread.
      */
-    private static final Map<Class<?>, Class<?>> PROXY_CLASS_CACHE = new ConcurrentHashMap<>();
+    private final Map<Object, PendingLink>      pendingLinks = new IdentityHashMap<>();
+    private final ReentrantLock                 pendingLock;
+    // The walk reused by the graph operations of this factory, when it is not already in use (see GraphWalk).
+    private final AtomicReference<GraphWalk>    idleWalk = new AtomicReference<>();
+    // The number of links kept dormant because they would close a cycle, written along with the links themselves. Links
+    // are only checked for reactivation when there is any (see StateNode).
+    int                                         dormantLinks;
 
-    private final Map<Object, ProxyInterceptor<?>> proxyToInterceptor = Collections.synchronizedMap(new IdentityHashMap<>());
-    private final Map<Object, State<?>>            instanceToState    = Collections.synchronizedMap(new IdentityHashMap<>());
-    private final ProxyPolicy                      policy;
+    // Shared by every state of this factory, rather than allocating a callback per state.
+    private final Consumer<ClassProxyImpl<Object>> onProxyClose     = state -> {
+        this.unregister(state);
+        ((Interceptable) state.getProxy()).$setInterceptor(null);
+    };
+    private final Consumer<ContainerProxyHandler>  onContainerClose = this::unregister;
 
     public ClassProxyFactory() {
 
@@ -54,11 +107,195 @@ public final class ClassProxyFactory implements AutoCloseable {
 
     public ClassProxyFactory(ProxyPolicy policy) {
 
-        this.policy = policy;
+        this(builder().policy(policy));
+    }
+
+    private ClassProxyFactory(Builder builder) {
+
+        this.policy        = builder.policy;
+        this.snapshotMode  = builder.snapshotMode;
+        this.unwrapMode    = builder.unwrapMode;
+        this.metrics       = builder.metrics ? new ProxyMetrics() : null;
+        this.changes       = new ChangeDispatcher(builder.journalCapacity > 0 ? new ChangeJournal(builder.journalCapacity) : null);
+        this.registry      = IdentityMap.of(builder.threadingMode);
+        this.policies      = IdentityMap.of(builder.threadingMode);
+        this.threadingMode = builder.threadingMode;
+        this.traversalMode = builder.traversalMode;
+
+        boolean confined = this.threadingMode == ThreadingMode.CONFINED;
+        this.templates = confined ? new LocalIdentityMap<>() : null;
+        this.owner     = confined ? Thread.currentThread() : null;
+        this.writeLock = this.threadingMode == ThreadingMode.CONCURRENT ? new ReentrantLock() : null;
+        // Links are made under the write lock in concurrent mode, pending links are guarded by the same one.
+        this.pendingLock = switch (this.threadingMode) {
+            case CONFINED -> null;
+            case SHARED -> new ReentrantLock();
+            case CONCURRENT -> this.writeLock;
+        };
+    }
+
+    /**
+     * Create a new {@link Builder} allowing to configure a {@link ClassProxyFactory}.
+     *
+     * @return A new {@link Builder}.
+     */
+    public static Builder builder() {
+
+        return new Builder();
+    }
+
+    /**
+     * Generate the proxy classes and the {@link Properties} metadata of the provided classes in the background, on a
+     * pool of daemon threads bounded by the number of available processors. This allows to pay for bytecode generation
+     * at startup (for instance before reporting the application as ready) rather than on the first proxied request.
+     *
+     * @param classes
+     *         The classes to prewarm.
+     *
+     * @return A {@link CompletableFuture} completing once every class has been prewarmed, or completing exceptionally
+     *         with a {@link ProxyCreationException} if any of them could not be generated.
+     */
+    public static CompletableFuture<Void> prewarm(Collection<Class<?>> classes) {
+
+        return ProxyPrewarmer.prewarm(classes);
+    }
+
+    /**
+     * Generate the proxy classes and the {@link Properties} metadata of the provided classes in the background, using
+     * the provided {@link Executor}.
+     *
+     * @param classes
+     *         The classes to prewarm.
+     * @param executor
+     *         The {@link Executor} on which classes will be generated.
+     *
+     * @return A {@link CompletableFuture} completing once every class has been prewarmed, or completing exceptionally
+     *         with a {@link ProxyCreationException} if any of them could not be generated.
+     */
+    public static CompletableFuture<Void> prewarm(Collection<Class<?>> classes, Executor executor) {
+
+        return ProxyPrewarmer.prewarm(classes, executor);
+    }
+
+    /**
+     * Generate the proxy classes and the {@link Properties} metadata of every proxyable class of the provided package
+     * (and of its sub-packages) in the background. Classes are looked up in the context class loader of the current
+     * thread.
+     *
+     * @param packageName
+     *         The name of the package, such as {@code com.example.model}.
+     *
+     * @return A {@link CompletableFuture} completing once every class has been prewarmed, or completing exceptionally
+     *         with a {@link ProxyCreationException} if any of them could not be generated.
+     *
+     * @see ProxyClassGenerator#isProxyable(Class)
+     */
+    public static CompletableFuture<Void> prewarm(String packageName) {
+
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) loader = ClassProxyFactory.class.getClassLoader();
+
+        return ProxyPrewarmer.prewarm(ProxyPrewarmer.scan(packageName, loader));
+    }
+
+    /**
+     * Retrieve the statistics of the application-wide cache of proxy classes.
+     *
+     * @return The {@link CacheStats} of the proxy class cache.
+     */
+    public static CacheStats getProxyClassCacheStats() {
+
+        return PROXY_CLASS_CACHE.stats();
+    }
+
+    /**
+     * Retrieve the {@link ProxyMetrics} of this factory.
+     *
+     * @return The {@link ProxyMetrics}, or {@code null} if metrics are not enabled (see {@link Builder#metrics(boolean)}).
+     */
+    @Nullable
+    public ProxyMetrics getMetrics() {
+
+        return this.metrics;
+    }
+
+    /**
+     * Retrieve the {@link ChangeJournal} of this factory, recording every change made through its proxies.
+     *
+     * @return The {@link ChangeJournal}, or {@code null} if the journal has not been enabled with
+     *         {@link Builder#journal(int)}.
+     */
+    @Nullable
+    public ChangeJournal getJournal() {
+
+        return this.changes.getJournal();
+    }
+
+    /**
+     * Register a listener receiving the changes made through the proxies of this factory, as defined by the provided
+     * {@link DeliveryMode}. {@link DeliveryMode#ASYNCHRONOUS} listeners receive changes on virtual threads.
+     *
+     * @param listener
+     *         The {@link ChangeListener}. Use {@link ChangeListener#forState(State, ChangeListener)} to only receive the
+     *         changes of a single state.
+     * @param mode
+     *         The {@link DeliveryMode} of the listener.
+     *
+     * @return The {@link ChangeSubscription}, to be closed to unregister the listener.
+     */
+    public ChangeSubscription addChangeListener(ChangeListener listener, DeliveryMode mode) {
+
+        return this.changes.subscribe(
+                Objects.requireNonNull(listener, "listener"),
+                Objects.requireNonNull(mode, "mode"),
+                Thread::startVirtualThread
+        );
+    }
+
+    /**
+     * Register a listener receiving the changes made through the proxies of this factory in batches, delivered
+     * {@linkplain DeliveryMode#ASYNCHRONOUS asynchronously} by the provided {@link Executor}.
+     *
+     * @param listener
+     *         The {@link ChangeListener}.
+     * @param executor
+     *         The {@link Executor} delivering the batches.
+     *
+     * @return The {@link ChangeSubscription}, to be closed to unregister the listener.
+     */
+    public ChangeSubscription addChangeListener(ChangeListener listener, Executor executor) {
+
+        return this.changes.subscribe(
+                Objects.requireNonNull(listener, "listener"),
+                DeliveryMode.ASYNCHRONOUS,
+                Objects.requireNonNull(executor, "executor")
+        );
+    }
+
+    /**
+     * Deliver the changes buffered for the {@link DeliveryMode#BATCHED} listeners of this factory, from the calling
+     * thread. Changes which have not been flushed when the factory is closed are discarded.
+     */
+    public void flush() {
+
+        this.changes.flush();
+    }
+
+    /**
+     * Retrieve the {@link ChangeDispatcher} receiving the changes made through the proxies of this factory.
+     *
+     * @return The {@link ChangeDispatcher}.
+     */
+    ChangeDispatcher getChangeDispatcher() {
+
+        return this.changes;
     }
 
     /**
      * Creates or retrieves a proxy for the given instance.
+     * <p>
+     * The proxy is generated without holding any lock: if several threads create a proxy for the same instance at the
+     * same time, only the first registered one is kept and returned to every thread.
      *
      * @param instance
      *         The object to track.
@@ -69,9 +306,130 @@ public final class ClassProxyFactory implements AutoCloseable {
      */
     public <T> State<T> create(T instance) {
 
+        assert this.checkThread();
         if (instance == null) return null;
 
-        return (State<T>) this.instanceToState.computeIfAbsent(instance, this::generateProxy);
+        StateNode<?> existing = this.findNode(instance);
+        if (existing != null) return (State<T>) existing;
+
+        return (State<T>) this.register(this.generateProxy(instance));
+    }
+
+    /**
+     * Creates or retrieves the proxies of every provided instance.
+     * <p>
+     * This is equivalent to calling {@link #create(Object)} on each instance, but the proxy class and the properties of
+     * each class are resolved once for the whole batch, and the new states are registered in a single batched
+     * operation.
+     *
+     * @param instances
+     *         The objects to track. {@code null} elements are allowed, and yield {@code null} states.
+     * @param <T>
+     *         The type of the objects.
+     *
+     * @return The {@link State} of each instance, in the same order as the instances.
+     */
+    public <T> List<State<T>> createAll(Collection<? extends T> instances) {
+
+        assert this.checkThread();
+
+        List<State<T>>     states    = new ArrayList<>(instances.size());
+        List<Object>       created   = new ArrayList<>();
+        List<StateNode<?>> nodes     = new ArrayList<>();
+        List<Integer>      positions = new ArrayList<>();
+
+        // Instances appearing several times in the batch must share the same state.
+        Map<Object, StateNode<?>> pending = new IdentityHashMap<>();
+
+        Class<?>      lastClass    = null;
+        ProxyTemplate lastTemplate = null;
+
+        for (T instance : instances) {
+            StateNode<?> node = instance == null ? null : this.findNode(instance);
+
+            if (instance != null && node == null) {
+                node = pending.get(instance);
+                if (node == null) {
+                    if (instance.getClass() != lastClass) {
+                        lastClass    = instance.getClass();
+                        lastTemplate = this.templateOf(lastClass);
+                    }
+
+                    node = this.generateProxy(instance, lastTemplate);
+                    pending.put(instance, node);
+                    created.add(instance);
+                    nodes.add(node);
+                }
+                positions.add(states.size());
+            }
+
+            states.add((State<T>) node);
+        }
+
+        if (created.isEmpty()) return states;
+
+        // Keep the states registered by other threads in the meantime, then register the proxies of the new ones.
+        List<StateNode<?>> existing = this.registry.putAll(created, nodes, true);
+        List<Object>       proxies  = new ArrayList<>(nodes.size());
+        List<StateNode<?>> winners  = new ArrayList<>(nodes.size());
+
+        for (int i = 0; i < nodes.size(); i++) {
+            StateNode<?> node = existing.get(i);
+            if (node == null) {
+                proxies.add(nodes.get(i).getProxy());
+                winners.add(nodes.get(i));
+                if (this.metrics != null) this.metrics.recordLive(nodes.get(i), 1);
+            } else {
+                pending.put(created.get(i), node);
+            }
+        }
+        this.registry.putAll(proxies, winners, false);
+        winners.forEach(this::linkReferences);
+
+        for (int position : positions) {
+            states.set(position, (State<T>) pending.get(states.get(position).getInstance()));
+        }
+        return states;
+    }
+
+    /**
+     * Creates or retrieves the proxies of every instance of the provided {@link Stream}, lazily. Instances are consumed
+     * and registered by batches (see {@link #createAll(Collection)}), so that arbitrarily large streams of instances can
+     * be tracked without buffering them entirely.
+     *
+     * @param instances
+     *         The objects to track. {@code null} elements are allowed, and yield {@code null} states.
+     * @param <T>
+     *         The type of the objects.
+     *
+     * @return A {@link Stream} of the {@link State} of each instance, in the same order as the instances.
+     */
+    public <T> Stream<State<T>> createAll(Stream<? extends T> instances) {
+
+        Iterator<? extends T> source = instances.iterator();
+
+        Iterator<List<State<T>>> batches = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+
+                return source.hasNext();
+            }
+
+            @Override
+            public List<State<T>> next() {
+
+                List<T> batch = new ArrayList<>(BATCH_SIZE);
+                while (batch.size() < BATCH_SIZE && source.hasNext()) {
+                    batch.add(source.next());
+                }
+                return ClassProxyFactory.this.createAll(batch);
+            }
+        };
+
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .onClose(instances::close);
     }
 
     /**
@@ -92,11 +450,12 @@ public final class ClassProxyFactory implements AutoCloseable {
      */
     public <T> void refresh(T previousInstance, T nextInstance) {
 
+        assert this.checkThread();
         if (previousInstance == null || nextInstance == null) {
             throw new IllegalArgumentException("Instances cannot be null during refresh.");
         }
 
-        State<T> state = (State<T>) this.instanceToState.get(previousInstance);
+        State<T> state = (State<T>) this.registry.get(previousInstance);
         if (state == null) {
             throw new ProxyException("The provided instance is not managed by this factory.");
         }
@@ -105,9 +464,14 @@ public final class ClassProxyFactory implements AutoCloseable {
             throw new ProxyException("Refresh is only supported for standard object proxies.");
         }
 
-        this.instanceToState.remove(previousInstance);
+        // The new instance may be of another class, which is counted separately.
+        if (this.metrics != null) this.metrics.recordLive(interceptor, -1);
+        this.registry.remove(previousInstance, interceptor);
+        this.forgetReferences(interceptor);
         interceptor.refreshInstance(nextInstance);
-        this.instanceToState.put(nextInstance, interceptor);
+        this.registry.put(nextInstance, interceptor);
+        if (this.metrics != null) this.metrics.recordLive(interceptor, 1);
+        this.linkReferences(interceptor);
 
         LOGGER.debug(
                 "Refreshed proxy for {} -> {}",
@@ -129,24 +493,134 @@ public final class ClassProxyFactory implements AutoCloseable {
      */
     public <T> T wrapIfNecessary(Property property, T value) {
 
-        if (value == null) return null;
+        StateNode<?> node = this.wrapNode(property, value);
+        return node == null ? value : (T) node.getProxy();
+    }
 
-        State<?> existingState = this.getExistingState(value);
-        if (existingState != null) return (T) existingState.getProxy();
+    /**
+     * Same as {@link #wrapIfNecessary(Property, Object)}, but returns the state of the wrapped value so that the caller
+     * can link it to its own state.
+     *
+     * @param property
+     *         The property context.
+     * @param value
+     *         The value to potentially wrap.
+     *
+     * @return The state of the value, or {@code null} if the value does not need to be wrapped.
+     */
+    @Nullable
+    StateNode<?> wrapNode(Property property, Object value) {
+
+        return this.wrapNode(this.policyOf(property), value);
+    }
+
+    /**
+     * Same as {@link #wrapNode(Property, Object)}, using the cached decisions of a {@link PropertyPolicy}. Values of
+     * {@linkplain Property#isValueTyped() value-typed} properties are returned without looking them up at all.
+     *
+     * @param policy
+     *         The {@link PropertyPolicy} of the property.
+     * @param value
+     *         The value to potentially wrap.
+     *
+     * @return The state of the value, or {@code null} if the value does not need to be wrapped.
+     */
+    @Nullable
+    StateNode<?> wrapNode(PropertyPolicy policy, Object value) {
+
+        assert this.checkThread();
+        if (value == null || policy.getProperty().isValueTyped()) return null;
+
+        StateNode<?> existing = this.findNode(value);
+        if (existing != null) return existing;
+
+        return this.wrapNode(policy, value, policy.decide(value));
+    }
+
+    /**
+     * Same as {@link #wrapNode(PropertyPolicy, Object)}, for a value whose {@link PropertyPolicy.Decision} has already
+     * been taken, so that the policy is not evaluated twice.
+     *
+     * @param policy
+     *         The {@link PropertyPolicy} of the property.
+     * @param value
+     *         The value to potentially wrap, which must not be {@code null}.
+     * @param decision
+     *         The decision of the policy for the value.
+     *
+     * @return The state of the value, or {@code null} if the value does not need to be wrapped.
+     */
+    @Nullable
+    StateNode<?> wrapNode(PropertyPolicy policy, Object value, PropertyPolicy.Decision decision) {
 
-        if (this.policy.shouldProxy(property, value)) {
-            return this.create(value).getProxy();
+        StateNode<?> existing = this.findNode(value);
+        if (existing != null) return existing;
+
+        return switch (decision) {
+            case PROXY -> (StateNode<?>) this.create(value);
+            case CONTAINER -> this.createContainerProxy(policy, value);
+            case VALUE -> null;
+        };
+    }
+
+    /**
+     * Create a standalone {@link PropertyPolicy}, for a property which may not belong to a {@link PropertyIndex}.
+     *
+     * @param property
+     *         The {@link Property}.
+     *
+     * @return A new {@link PropertyPolicy}.
+     */
+    PropertyPolicy policyOf(Property property) {
+
+        return new PropertyPolicy(property, this.policy);
+    }
+
+    /**
+     * Retrieve the {@link PropertyPolicy} of every property of a {@link PropertyIndex}, shared by every proxy of this
+     * factory for the same class.
+     *
+     * @param index
+     *         The {@link PropertyIndex}.
+     *
+     * @return The {@link PropertyPolicy} of each property, indexed by ordinal.
+     */
+    PropertyPolicy[] policiesOf(PropertyIndex index) {
+
+        PropertyPolicy[] policies = this.policies.get(index);
+        if (policies != null) return policies;
+
+        policies = new PropertyPolicy[index.size()];
+        for (int ordinal = 0; ordinal < policies.length; ordinal++) {
+            policies[ordinal] = this.policyOf(index.get(ordinal));
         }
 
-        if (this.policy.shouldProxyContainer(value)) {
-            return this.createContainerProxy(property, value);
+        PropertyPolicy[] existing = this.policies.putIfAbsent(index, policies);
+        return existing == null ? policies : existing;
+    }
+
+    /**
+     * Retrieves the state of a value, which may either be a proxy or an original instance, without creating it.
+     *
+     * @param value
+     *         The proxy or the original instance.
+     *
+     * @return The state of the value, or {@code null} if it is not managed by this factory.
+     */
+    @Nullable
+    StateNode<?> findNode(Object value) {
+
+        if (value == null) return null;
+        if (value instanceof Interceptable interceptable && interceptable.$getInterceptor() instanceof StateNode<?> node) {
+            return node;
         }
 
-        return value;
+        return this.registry.get(value);
     }
 
     /**
-     * Unwraps a potential proxy back to its original instance. This works recursively for collections.
+     * Unwraps a potential proxy back to its original instance. This works recursively for collections, as defined by
+     * the {@link UnwrapMode} of this factory.
      *
      * @param value
      *         The value to unwrap.
@@ -158,11 +632,15 @@ public final class ClassProxyFactory implements AutoCloseable {
         return switch (value) {
             case null -> null;
             case State<?> s -> (T) s.getInstance();
+            case ProxyCollection<?> c -> (T) c.delegate;
+            case ProxyMap<?, ?> m -> (T) m.delegate;
+            case Object o when isContainerProxy(o) -> (T) ((ContainerProxyHandler) Proxy.getInvocationHandler(o)).getInstance();
+            case Object o when this.unwrapMode == UnwrapMode.VIEW -> this.holdsProxy(o) ? (T) UnwrapView.of(o, this) : value;
             case List<?> l -> (T) l.stream().map(this::unwrap).toList();
             case Set<?> s -> (T) s.stream().map(this::unwrap).collect(Collectors.toSet());
             case Map<?, ?> m -> {
                 Map<Object, Object> m2 = new HashMap<>();
-                m.forEach((k, v) -> m2.put(k, this.unwrap(v)));
+                m.forEach((k, v) -> m2.put(this.unwrap(k), this.unwrap(v)));
                 yield (T) m2;
             }
             default -> value;
@@ -170,28 +648,167 @@ public final class ClassProxyFactory implements AutoCloseable {
     }
 
     /**
-     * Entry point for ByteBuddy's static Master Interceptor.
+     * Unwraps a value about to be stored into an instance or a container. This behaves as {@link #unwrap(Object)},
+     * except that a container holding proxies is never exposed through a view in {@link UnwrapMode#VIEW} mode: it is
+     * copied with its elements unwrapped, so that instances only ever hold raw, self-contained values.
+     *
+     * @param value
+     *         The value to unwrap.
+     *
+     * @return The raw value.
      */
-    public Object intercept(Object self, Method method, Object[] args) {
+    <T> T detach(T value) {
 
-        ProxyInterceptor<?> interceptor = this.proxyToInterceptor.get(self);
-        if (interceptor == null) {
-            throw new ProxyAccessException("Orphan Proxy: No interceptor registered for this instance.");
+        return switch (value) {
+            case null -> null;
+            case State<?> s -> (T) s.getInstance();
+            case ProxyCollection<?> c -> (T) c.delegate;
+            case ProxyMap<?, ?> m -> (T) m.delegate;
+            case Object o when isContainerProxy(o) -> (T) ((ContainerProxyHandler) Proxy.getInvocationHandler(o)).getInstance();
+            case Object o when this.unwrapMode == UnwrapMode.VIEW -> this.holdsProxy(o) ? (T) this.copy(o) : value;
+            default -> this.unwrap(value);
+        };
+    }
+
+    /**
+     * Copy a {@link List}, {@link Set} or {@link Map} with its elements (or keys and values) detached, keeping its
+     * ordering: lists are copied into an {@link ArrayList} (or a {@link LinkedList} if they are not
+     * {@link RandomAccess}), sorted sets and maps into a {@link TreeSet} or {@link TreeMap} using the same comparator,
+     * and others into a {@link LinkedHashSet} or {@link LinkedHashMap}.
+     */
+    private Object copy(Object container) {
+
+        return switch (container) {
+            case List<?> list -> {
+                List<Object> copy = list instanceof RandomAccess ? new ArrayList<>(list.size()) : new LinkedList<>();
+                list.forEach(element -> copy.add(this.detach(element)));
+                yield copy;
+            }
+            case Set<?> set -> {
+                Set<Object> copy = set instanceof SortedSet<?> sorted
+                        ? new TreeSet<>((Comparator<Object>) sorted.comparator())
+                        : LinkedHashSet.newLinkedHashSet(set.size());
+                set.forEach(element -> copy.add(this.detach(element)));
+                yield copy;
+            }
+            case Map<?, ?> map -> {
+                Map<Object, Object> copy = map instanceof SortedMap<?, ?> sorted
+                        ? new TreeMap<>((Comparator<Object>) sorted.comparator())
+                        : LinkedHashMap.newLinkedHashMap(map.size());
+                map.forEach((key, value) -> copy.put(this.detach(key), this.detach(value)));
+                yield copy;
+            }
+            default -> container;
+        };
+    }
+
+    private static boolean isContainerProxy(Object value) {
+
+        // Checking the type first avoids the cost of isProxyClass() for every element of a container.
+        return (value instanceof Collection<?> || value instanceof Map<?, ?>)
+                && Proxy.isProxyClass(value.getClass())
+                && Proxy.getInvocationHandler(value) instanceof ContainerProxyHandler;
+    }
+
+    /**
+     * Check whether the provided container holds a value that {@link #unwrap(Object)} would change, either directly or
+     * in a nested container. Both keys and values are checked for maps.
+     */
+    private boolean holdsProxy(Object container) {
+
+        if (container instanceof List<?> || container instanceof Set<?>) {
+            for (Object element : (Collection<?>) container) {
+                if (this.isProxied(element)) return true;
+            }
+        } else if (container instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (this.isProxied(entry.getKey()) || this.isProxied(entry.getValue())) return true;
+            }
         }
+        return false;
+    }
 
-        try {
-            return interceptor.intercept(method, args);
-        } catch (Exception e) {
-            throw new ProxyInvocationException("Failed to intercept " + method.getName(), e);
+    private boolean isProxied(Object element) {
+
+        if (element instanceof State<?> || element instanceof ProxyCollection<?> || element instanceof ProxyMap<?, ?>) {
+            return true;
         }
+        // Plain instanceof checks first, this runs for every element of every unwrapped container.
+        return (element instanceof Collection<?> || element instanceof Map<?, ?>)
+                && (isContainerProxy(element) || this.holdsProxy(element));
     }
 
     @Override
     public void close() {
 
-        List.copyOf(this.proxyToInterceptor.values()).forEach(State::close);
-        this.proxyToInterceptor.clear();
-        this.instanceToState.clear();
+        assert this.checkThread();
+
+        FactoryCloseEvent event = new FactoryCloseEvent();
+        event.begin();
+
+        List<StateNode<?>> states = this.registry.values();
+        states.forEach(State::close);
+        this.registry.clear();
+
+        this.lockPending();
+        try {
+            this.pendingLinks.clear();
+        } finally {
+            this.unlockPending();
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.statesReleased = states.size();
+            event.commit();
+        }
+        this.changes.closeAll();
+        if (this.metrics != null) this.metrics.unregisterMBean();
+    }
+
+    /**
+     * Collect every state of this factory which has been modified itself, excluding the states which are only dirty
+     * because of the states they are linked to. The scan is split between threads if the factory uses
+     * {@link TraversalMode#PARALLEL}.
+     *
+     * @return The modified states, in no particular order.
+     */
+    public List<State<?>> getDirtyStates() {
+
+        assert this.checkThread();
+        return DirtyScan.collect(this.registry.values(), this.traversalMode, this.metrics);
+    }
+
+    /**
+     * Collect the modified states of the graph of the provided value: its own state if it has been modified itself, and
+     * the states reachable from it which have been modified themselves. Only the dirty parts of the graph are walked.
+     * The scan is split between threads if the factory uses {@link TraversalMode#PARALLEL}.
+     *
+     * @param root
+     *         A proxy, an original instance or a {@link State} of this factory.
+     *
+     * @return The modified states, in no particular order, or an empty list if the value is not managed by this
+     *         factory.
+     */
+    public List<State<?>> getDirtyStates(Object root) {
+
+        assert this.checkThread();
+        StateNode<?> node = root instanceof StateNode<?> state ? state : this.findNode(root);
+        if (node == null) return List.of();
+        return DirtyScan.collect(node, this.traversalMode, this.metrics);
+    }
+
+    /**
+     * Check if any state of this factory has been modified, stopping as soon as one is found. The scan is split between
+     * threads if the factory uses {@link TraversalMode#PARALLEL}, in which case every task stops once one of them has
+     * found a modified state.
+     *
+     * @return {@code true} if a state of this factory has been modified, {@code false} otherwise.
+     */
+    public boolean hasDirtyStates() {
+
+        assert this.checkThread();
+        return DirtyScan.any(this.registry.values(), this.traversalMode, this.metrics);
     }
 
     /**
@@ -200,59 +817,272 @@ public final class ClassProxyFactory implements AutoCloseable {
     @Nullable
     public <T> State<T> getExistingState(T instance) {
 
+        assert this.checkThread();
         if (instance == null) return null;
         if (instance instanceof State<?> state) return (State<T>) state;
-        return (State<T>) this.instanceToState.get(instance);
+        return (State<T>) this.registry.get(instance);
+    }
+
+    private StateNode<?> generateProxy(Object instance) {
+
+        return this.generateProxy(instance, this.templateOf(instance.getClass()));
+    }
+
+    private ProxyTemplate templateOf(Class<?> type) {
+
+        if (this.templates == null) return PROXY_CLASS_CACHE.get(type);
+
+        ProxyTemplate template = this.templates.get(type);
+        if (template == null) {
+            template = PROXY_CLASS_CACHE.get(type);
+            this.templates.put(type, template);
+        }
+        return template;
+    }
+
+    /**
+     * Retrieve the {@link ThreadingMode} of this factory.
+     *
+     * @return The {@link ThreadingMode}.
+     */
+    ThreadingMode getThreadingMode() {
+
+        return this.threadingMode;
+    }
+
+    /**
+     * Acquire the lock serializing the writes made through the proxies of this factory, if it is
+     * {@linkplain ThreadingMode#CONCURRENT concurrent}. Every call must be followed by {@link #unlockWrites()} in a
+     * {@code finally} block.
+     */
+    void lockWrites() {
+
+        if (this.writeLock != null) this.writeLock.lock();
+    }
+
+    /**
+     * Release the lock acquired by {@link #lockWrites()}.
+     */
+    void unlockWrites() {
+
+        if (this.writeLock != null) this.writeLock.unlock();
     }
 
-    private State<?> generateProxy(Object instance) {
+    /**
+     * Start a {@link GraphWalk} over the states of this factory, which must be closed once the walk is over.
+     *
+     * @return A {@link GraphWalk}.
+     */
+    GraphWalk startWalk() {
+
+        return GraphWalk.start(this.idleWalk);
+    }
+
+    /**
+     * Check that the current thread is allowed to use this factory, which is always the case unless the factory is
+     * {@linkplain ThreadingMode#CONFINED confined} to another thread. This is meant to be called from {@code assert}
+     * statements, so that it costs nothing when assertions are disabled.
+     *
+     * @return Always {@code true}.
+     *
+     * @throws ProxyAccessException
+     *         if the factory is confined to another thread.
+     */
+    boolean checkThread() {
+
+        Thread current = Thread.currentThread();
+        if (this.owner != null && this.owner != current) {
+            throw new ProxyAccessException(
+                    "This factory is confined to thread '" + this.owner.getName() + "' and cannot be used from '" + current.getName() + "'"
+            );
+        }
+        return true;
+    }
+
+    private StateNode<?> generateProxy(Object instance, ProxyTemplate template) {
 
         try {
-            Class<?> proxyClass = getOrGenerateByteBuddyClass(instance.getClass());
-            Object   proxy      = proxyClass.getDeclaredConstructor().newInstance();
+            ProxyCreationEvent event = new ProxyCreationEvent();
+            event.begin();
 
-            ProxyInterceptor<Object> interceptor = new ClassProxyImpl<>(
+            Object proxy = template.instantiate();
+
+            ClassProxyImpl<Object> interceptor = new ClassProxyImpl<>(
                     this,
                     instance,
                     proxy,
-                    p -> {
-                        this.proxyToInterceptor.remove(p.getProxy());
-                        this.instanceToState.remove(p.getInstance());
-                        StaticMasterInterceptor.PROXY_OWNER_REGISTRY.remove(p.getProxy());
-                    }
+                    this.snapshotMode,
+                    this.onProxyClose,
+                    template.getIndex()
             );
 
-            this.proxyToInterceptor.put(proxy, interceptor);
-            StaticMasterInterceptor.PROXY_OWNER_REGISTRY.put(proxy, this);
+            ((Interceptable) proxy).$setInterceptor(interceptor);
 
+            event.end();
+            if (event.shouldCommit()) {
+                event.className     = instance.getClass().getName();
+                event.propertyCount = template.getIndex().size();
+                event.commit();
+            }
             return interceptor;
+        } catch (ProxyCreationException e) {
+            throw e;
         } catch (Exception e) {
             throw new ProxyCreationException("Could not create proxy for " + instance.getClass(), e);
         }
     }
 
-    private <T> T createContainerProxy(Property property, T container) {
+    private ContainerProxyHandler createContainerProxy(PropertyPolicy policy, Object container) {
 
-        ContainerProxyHandler handler = new ContainerProxyHandler(
-                this, property, container, p -> {
-            this.proxyToInterceptor.remove(p.getProxy());
-            this.instanceToState.remove(p.getInstance());
-            StaticMasterInterceptor.PROXY_OWNER_REGISTRY.remove(p.getProxy());
+        Property              property = policy.getProperty();
+        ContainerProxyHandler handler  = new ContainerProxyHandler(this, policy, container, this.onContainerClose);
+
+        Object proxy = createContainerWrapper(property, container, handler);
+        if (proxy == null) {
+            proxy = Proxy.newProxyInstance(
+                    Dirtyable.class.getClassLoader(),
+                    this.deriveInterfaces(property, container),
+                    handler
+            );
         }
-        );
 
-        T proxy = (T) Proxy.newProxyInstance(
-                Dirtyable.class.getClassLoader(),
-                this.deriveInterfaces(property, container),
-                handler
-        );
+        handler.setProxy(proxy);
+        return (ContainerProxyHandler) this.register(handler);
+    }
 
-        this.proxyToInterceptor.put(proxy, handler);
-        this.instanceToState.put(container, handler);
+    /**
+     * Create the hand-written wrapper of a standard container, which is much cheaper to call than a
+     * {@link Proxy}. A wrapper is only usable when it implements every interface the {@link Proxy} would have
+     * implemented: containers exposing other interfaces (such as a {@link LinkedList} being a {@link Deque}) are left
+     * to a {@link Proxy}.
+     *
+     * @return The wrapper, or {@code null} if the container requires a {@link Proxy}.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object createContainerWrapper(Property property, Object container, ContainerProxyHandler handler) {
 
-        StaticMasterInterceptor.PROXY_OWNER_REGISTRY.put(proxy, this);
-        handler.setProxy(proxy);
-        return proxy;
+        Object wrapper = switch (container) {
+            case List<?> list -> ProxyList.of((List<Object>) list, handler);
+            case Set<?> set -> new ProxySet<>((Set<Object>) set, handler);
+            case Map<?, ?> map -> new ProxyMap<>((Map<Object, Object>) map, handler);
+            default -> null;
+        };
+        if (wrapper == null) return null;
+
+        for (Class<?> type : container.getClass().getInterfaces()) {
+            // Cloneable is only a marker, a Proxy could not be cloned either.
+            if (type != Cloneable.class && !type.isInstance(wrapper)) return null;
+        }
+
+        Class<?> returnType = property.getGetter().getReturnType();
+        if (returnType.isInstance(container) && !returnType.isInstance(wrapper)) return null;
+
+        return wrapper;
+    }
+
+    /**
+     * Register a newly created state under both its instance and its proxy, unless another thread registered a state
+     * for the same instance in the meantime.
+     *
+     * @param node
+     *         The newly created state.
+     *
+     * @return The registered state, which is either the provided one or the one registered by another thread.
+     */
+    private StateNode<?> register(StateNode<?> node) {
+
+        StateNode<?> existing = this.registry.putIfAbsent(node.getInstance(), node);
+        if (existing != null) return existing;
+
+        this.registry.put(node.getProxy(), node);
+        if (this.metrics != null) this.metrics.recordLive(node, 1);
+        this.linkReferences(node);
+        return node;
+    }
+
+    private void unregister(StateNode<?> node) {
+
+        this.registry.remove(node.getProxy(), node);
+        if (this.registry.remove(node.getInstance(), node) && this.metrics != null) {
+            this.metrics.recordLive(node, -1);
+        }
+        this.forgetReferences(node);
+    }
+
+    /**
+     * Link a newly registered state to the states of the values it holds, and link the states holding its instance to
+     * it, so that a state is linked to its children even when they were not read through it (for instance when both
+     * are created independently). Values without a state yet are kept as {@link PendingLink}s until one is registered.
+     * <p>
+     * As both the lookup of the children and the resolution of the pending links happen while holding
+     * {@link #pendingLock}, after the state has been registered, a parent and a child registered concurrently always
+     * see each other.
+     *
+     * @param node
+     *         The newly registered state.
+     */
+    private void linkReferences(StateNode<?> node) {
+
+        this.lockPending();
+        try {
+            // Parents are linked first, so that a cycle is closed by the link going back up, as when navigating.
+            PendingLink pending = this.pendingLinks.remove(node.getInstance());
+            for (; pending != null; pending = pending.next()) {
+                // The parent may have been closed, or refreshed to another instance, since then.
+                if (this.registry.get(pending.parent().getInstance()) == pending.parent()) {
+                    pending.parent().linkReference(pending.ordinal(), node);
+                }
+            }
+
+            node.forEachReference((value, ordinal) -> {
+                StateNode<?> child = this.findNode(value);
+                if (child != null) {
+                    node.linkReference(ordinal, child);
+                } else {
+                    this.pendingLinks.put(value, new PendingLink(node, ordinal, this.pendingLinks.get(value)));
+                }
+            });
+        } finally {
+            this.unlockPending();
+        }
+    }
+
+    /**
+     * Drop the {@link PendingLink}s of a state which is being unregistered. This is best-effort: values the state does
+     * not hold anymore are not visited, and their pending links are dropped once a state is registered for them.
+     *
+     * @param node
+     *         The state being unregistered.
+     */
+    private void forgetReferences(StateNode<?> node) {
+
+        this.lockPending();
+        try {
+            node.forEachReference((value, ordinal) -> {
+                PendingLink kept = null;
+                for (PendingLink pending = this.pendingLinks.get(value); pending != null; pending = pending.next()) {
+                    if (pending.parent() != node) kept = new PendingLink(pending.parent(), pending.ordinal(), kept);
+                }
+
+                if (kept == null) {
+                    this.pendingLinks.remove(value);
+                } else {
+                    this.pendingLinks.put(value, kept);
+                }
+            });
+        } finally {
+            this.unlockPending();
+        }
+    }
+
+    private void lockPending() {
+
+        if (this.pendingLock != null) this.pendingLock.lock();
+    }
+
+    private void unlockPending() {
+
+        if (this.pendingLock != null) this.pendingLock.unlock();
     }
 
     private Class<?>[] deriveInterfaces(Property property, Object container) {
@@ -266,22 +1096,24 @@ public final class ClassProxyFactory implements AutoCloseable {
         return interfaces.toArray(new Class<?>[0]);
     }
 
-    private static Class<?> getOrGenerateByteBuddyClass(Class<?> origin) {
+    static Class<?> getOrGenerateByteBuddyClass(Class<?> origin) {
 
-        return PROXY_CLASS_CACHE.computeIfAbsent(
-                origin, clazz -> new ByteBuddy()
-                        .subclass(clazz)
-                        .implement(State.class)
-                        .defineMethod("writeReplace", Object.class, Visibility.PRIVATE)
-                        .intercept(MethodDelegation.to(WriteReplaceInterceptor.class))
-                        .method(ElementMatchers.any())
-                        .intercept(MethodDelegation.to(StaticMasterInterceptor.class))
-                        .make()
-                        .load(clazz.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
-                        .getLoaded()
-        );
+        return PROXY_CLASS_CACHE.get(origin).getProxyClass();
     }
 
+    /**
+     * A state holding a value which had no state yet when it was registered, chained to the other states holding the
+     * same value.
+     *
+     * @param parent
+     *         The state holding the value.
+     * @param ordinal
+     *         The ordinal of the property holding the value, or {@code -1} for the elements of a container.
+     * @param next
+     *         The next {@link PendingLink} for the same value, or {@code null}.
+     */
+    private record PendingLink(StateNode<?> parent, int ordinal, PendingLink next) {}
+
     /**
      * Class responsible for allowing serialization of a proxy instance.
      */
@@ -290,20 +1122,154 @@ public final class ClassProxyFactory implements AutoCloseable {
         private WriteReplaceInterceptor() {}
 
         @RuntimeType
-        public static Object writeReplace(@This Object self) {
-            // Find the owner factory of the proxy being serialized.
-            ClassProxyFactory owner = StaticMasterInterceptor.PROXY_OWNER_REGISTRY.get(self);
-            if (owner == null) {
+        public static Object writeReplace(@FieldValue(Interceptable.INTERCEPTOR_FIELD) ProxyInterceptor<?> interceptor) {
+
+            if (interceptor == null) {
                 throw new IllegalStateException("Cannot serialize an orphan proxy.");
             }
 
-            // Get the state handler for this proxy and return its raw, underlying instance.
-            State<?> state = owner.proxyToInterceptor.get(self);
-            if (state != null) {
-                return state.getInstance();
+            // Return the raw, underlying instance of the state handling this proxy.
+            return interceptor.getInstance();
+        }
+
+    }
+
+    /**
+     * Builder allowing to configure a {@link ClassProxyFactory}.
+     */
+    public static final class Builder {
+
+        private ProxyPolicy   policy        = ProxyPolicy.DEFAULT;
+        private SnapshotMode  snapshotMode  = SnapshotMode.EAGER;
+        private UnwrapMode    unwrapMode    = UnwrapMode.COPY;
+        private boolean       metrics       = false;
+        private int           journalCapacity;
+        private ThreadingMode threadingMode = ThreadingMode.SHARED;
+        private TraversalMode traversalMode = TraversalMode.SEQUENTIAL;
+
+        private Builder() {}
+
+        /**
+         * Define the {@link ProxyPolicy} deciding which values are proxied. Defaults to {@link ProxyPolicy#DEFAULT}.
+         *
+         * @param policy
+         *         The {@link ProxyPolicy} to use.
+         *
+         * @return This {@link Builder}.
+         */
+        public Builder policy(ProxyPolicy policy) {
+
+            this.policy = Objects.requireNonNull(policy, "policy");
+            return this;
+        }
+
+        /**
+         * Define when proxies capture the original values of their properties. Defaults to {@link SnapshotMode#EAGER}.
+         *
+         * @param snapshotMode
+         *         The {@link SnapshotMode} to use.
+         *
+         * @return This {@link Builder}.
+         */
+        public Builder snapshotMode(SnapshotMode snapshotMode) {
+
+            this.snapshotMode = Objects.requireNonNull(snapshotMode, "snapshotMode");
+            return this;
+        }
+
+        /**
+         * Define how containers holding proxies are unwrapped. Defaults to {@link UnwrapMode#COPY}.
+         *
+         * @param unwrapMode
+         *         The {@link UnwrapMode} to use.
+         *
+         * @return This {@link Builder}.
+         */
+        public Builder unwrapMode(UnwrapMode unwrapMode) {
+
+            this.unwrapMode = Objects.requireNonNull(unwrapMode, "unwrapMode");
+            return this;
+        }
+
+        /**
+         * Define from which threads the factory and its proxies may be used. Defaults to {@link ThreadingMode#SHARED}.
+         *
+         * @param threadingMode
+         *         The {@link ThreadingMode} to use.
+         *
+         * @return This {@link Builder}.
+         */
+        public Builder threadingMode(ThreadingMode threadingMode) {
+
+            this.threadingMode = Objects.requireNonNull(threadingMode, "threadingMode");
+            return this;
+        }
+
+        /**
+         * Define how the factory walks its states when collecting the modified ones. Defaults to
+         * {@link TraversalMode#SEQUENTIAL}.
+         *
+         * @param traversalMode
+         *         The {@link TraversalMode} to use.
+         *
+         * @return This {@link Builder}.
+         */
+        public Builder traversalMode(TraversalMode traversalMode) {
+
+            this.traversalMode = Objects.requireNonNull(traversalMode, "traversalMode");
+            return this;
+        }
+
+        /**
+         * Define whether the factory records {@link ProxyMetrics}, available through
+         * {@link ClassProxyFactory#getMetrics()}. Defaults to {@code false}, in which case nothing is recorded on the
+         * hot path.
+         *
+         * @param metrics
+         *         {@code true} to record metrics, {@code false} otherwise.
+         *
+         * @return This {@link Builder}.
+         */
+        public Builder metrics(boolean metrics) {
+
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Define whether the factory records the changes made through its proxies in a {@link ChangeJournal},
+         * available through {@link ClassProxyFactory#getJournal()}. Defaults to {@code 0}, in which case changes are
+         * not recorded.
+         *
+         * @param capacity
+         *         The number of changes kept by the journal before the oldest ones are overwritten (rounded up to a
+         *         power of two), or {@code 0} to disable the journal.
+         *
+         * @return This {@link Builder}.
+         */
+        public Builder journal(int capacity) {
+
+            if (capacity < 0 || capacity > 1 << 30) {
+                throw new IllegalArgumentException("The journal capacity must be between 0 and 2^30");
             }
+            this.journalCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Create the {@link ClassProxyFactory} using the current configuration.
+         *
+         * @return A new {@link ClassProxyFactory}.
+         *
+         * @throws IllegalStateException
+         *         if the configuration combines {@link ThreadingMode#CONCURRENT} with {@link SnapshotMode#LAZY}.
+         */
+        public ClassProxyFactory build() {
 
-            throw new IllegalStateException("Cannot serialize proxy without a valid state.");
+            if (this.threadingMode == ThreadingMode.CONCURRENT && this.snapshotMode == SnapshotMode.LAZY) {
+                throw new IllegalStateException("The CONCURRENT threading mode requires the EAGER snapshot mode");
+            }
+            return new ClassProxyFactory(this);
         }
 
     }
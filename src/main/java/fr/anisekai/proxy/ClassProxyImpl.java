@@ -1,33 +1,70 @@
 package fr.anisekai.proxy;
 
-import fr.anisekai.proxy.interfaces.Dirtyable;
-import fr.anisekai.proxy.interfaces.ProxyInterceptor;
-import fr.anisekai.proxy.interfaces.State;
-import fr.anisekai.proxy.reflection.LinkedProperty;
 import fr.anisekai.proxy.reflection.Properties;
 import fr.anisekai.proxy.reflection.Property;
+import fr.anisekai.proxy.reflection.PropertyIndex;
 
 import java.lang.reflect.Method;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * A simplified implementation of a state-tracking interceptor. It uses a "Source vs Patches" strategy to manage object
  * state.
+ * <p>
+ * Depending on its {@link SnapshotMode}, the source is either captured entirely when the proxy is created, or property
+ * by property when each of them is first written through the proxy.
+ * <p>
+ * To keep the footprint of each proxy small, the state is stored in flat arrays indexed by the ordinal of each property
+ * (see {@link PropertyIndex}), along with bitsets telling which slots are captured or patched. Arrays only needed once
+ * the proxy is modified are allocated on the first write.
+ * <p>
+ * The proxy returned for the value of each property is memoized by the link to its state, so that reading the same
+ * child again (such as in {@code order.getCustomer().getAddress()}) does not look it up in the factory anymore. The memo
+ * is only used while the child is still linked to this state, and is dropped when the property is unlinked.
+ * <p>
+ * In {@link ThreadingMode#CONCURRENT} mode, every write (including the linking of a child read for the first time) is
+ * made under the write lock of the factory, and patches are replaced as a whole rather than modified in place, so that
+ * reads never lock and always see a consistent set of patches.
  *
  * @param <S>
  *         The type of the proxied instance.
  */
-public class ClassProxyImpl<S> implements ProxyInterceptor<S> {
+public class ClassProxyImpl<S> extends StateNode<S> {
+
+    private volatile S                           instance;
+    private final    S                           proxy;
+    private final    ClassProxyFactory           factory;
+    private final    SnapshotMode                snapshotMode;
+    private final    Consumer<ClassProxyImpl<S>> onClose;
+    private final    PropertyIndex               index;
+    private final    PropertyPolicy[]            policies;
+    private final    ProxyMetrics                metrics;
+    private final    ChangeDispatcher            changes;
+
+    private final    boolean  copyOnWrite;
+    private final    Object[] source;
+    private final    long[]   captured;
+    private volatile Patches  patches;
+    private volatile Link[]   links;
 
-    private       S                           instance;
-    private final S                           proxy;
-    private final ClassProxyFactory           factory;
-    private final Consumer<ClassProxyImpl<S>> onClose;
+    /**
+     * Creates a new ProxyObject.
+     *
+     * @param factory
+     *         The central factory managing the proxy lifecycle.
+     * @param instance
+     *         The real object.
+     * @param proxy
+     *         The generated proxy instance.
+     * @param onClose
+     *         Callback to unregister from the factory.
+     */
+    public ClassProxyImpl(ClassProxyFactory factory, S instance, S proxy, Consumer<ClassProxyImpl<S>> onClose) {
 
-    private final Map<Method, Property> methodLookup = new HashMap<>();
-    private final Map<Property, Object> source       = new HashMap<>();
-    private final Map<Property, Object> patches      = new HashMap<>();
+        this(factory, instance, proxy, SnapshotMode.EAGER, onClose);
+    }
 
     /**
      * Creates a new ProxyObject.
@@ -38,128 +75,366 @@ public class ClassProxyImpl<S> implements ProxyInterceptor<S> {
      *         The real object.
      * @param proxy
      *         The generated proxy instance.
+     * @param snapshotMode
+     *         Defines when the original values of the properties are captured.
      * @param onClose
      *         Callback to unregister from the factory.
      */
-    public ClassProxyImpl(ClassProxyFactory factory, S instance, S proxy, Consumer<ClassProxyImpl<S>> onClose) {
+    public ClassProxyImpl(ClassProxyFactory factory, S instance, S proxy, SnapshotMode snapshotMode, Consumer<ClassProxyImpl<S>> onClose) {
 
-        this.factory  = factory;
-        this.instance = instance;
-        this.proxy    = proxy;
-        this.onClose  = onClose;
+        this(factory, instance, proxy, snapshotMode, onClose, Properties.getIndexOf(instance.getClass()));
+    }
 
-        for (LinkedProperty prop : Properties.getPropertiesOf(instance)) {
-            try {
-                Object value = prop.getValue();
-                this.source.put(prop, value);
-                this.methodLookup.put(prop.getGetter(), prop);
-                this.methodLookup.put(prop.getSetter(), prop);
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to initialize proxy state", e);
-            }
+    ClassProxyImpl(ClassProxyFactory factory, S instance, S proxy, SnapshotMode snapshotMode, Consumer<ClassProxyImpl<S>> onClose, PropertyIndex index) {
+
+        this.factory      = factory;
+        this.instance     = instance;
+        this.proxy        = proxy;
+        this.snapshotMode = snapshotMode;
+        this.onClose      = onClose;
+        this.index        = index;
+        this.policies     = factory.policiesOf(index);
+        this.metrics      = factory.getMetrics();
+        this.changes      = factory.getChangeDispatcher();
+        this.copyOnWrite  = factory.getThreadingMode() == ThreadingMode.CONCURRENT;
+        this.source       = new Object[this.index.size()];
+        this.captured     = newBitSet(this.index.size());
+
+        if (snapshotMode == SnapshotMode.EAGER) {
+            this.captureAll("Failed to initialize proxy state");
         }
     }
 
+    private static long[] newBitSet(int size) {
+
+        return new long[(size + 63) >>> 6];
+    }
+
+    private static boolean isSet(long[] bits, int ordinal) {
+
+        int word = ordinal >>> 6;
+        return word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
     @Override
     public Object intercept(Method method, Object[] args) throws Exception {
 
+        assert this.factory.checkThread();
+
         if (this.isObjectOverride(method)) {
+            if (this.metrics != null) this.metrics.recordOther();
             return this.handleObjectMethod(method, args);
         }
 
         if (method.getDeclaringClass().isAssignableFrom(this.getClass())) {
+            if (this.metrics != null) this.metrics.recordOther();
             return method.invoke(this, args);
         }
 
-        Property property = this.methodLookup.get(method);
-        if (property != null) {
-            if (property.getGetter().equals(method)) {
-                return this.get(property);
-            }
-            if (property.getSetter().equals(method) && args != null && args.length == 1) {
-                this.set(property, args[0]);
-                return null;
-            }
+        int ordinal = this.index.getterOrdinal(method);
+        if (ordinal >= 0) {
+            if (this.metrics != null) this.metrics.recordGetter();
+            return this.get(ordinal);
         }
 
+        ordinal = this.index.setterOrdinal(method);
+        if (ordinal >= 0 && args != null && args.length == 1) {
+            if (this.metrics != null) this.metrics.recordSetter();
+            this.set(ordinal, args[0]);
+            return null;
+        }
+
+        if (this.metrics != null) this.metrics.recordOther();
         return method.invoke(this.instance, args);
     }
 
-    private Object get(Property property) {
+    private Object get(int ordinal) {
 
-        Object value = this.patches.getOrDefault(property, this.source.get(property));
-        return this.factory.wrapIfNecessary(property, value);
-    }
+        Patches patches = this.patches;
+        Object  value   = patches != null && patches.isSet(ordinal) ? patches.values[ordinal] : this.baseline(ordinal);
+        if (value == null) return null;
 
-    private void set(Property property, Object newValue) throws Exception {
+        Link[] links = this.links;
+        if (links != null) {
+            Link link = links[ordinal];
+            if (link != null && link.isActive()) {
+                StateNode<?> child = link.getChild();
+                if (child.getInstance() == value || child.getProxy() == value) return child.getProxy();
+            }
+        }
 
-        Object unproxiedValue = this.factory.unwrap(newValue);
-        Object oldValue       = this.source.get(property);
+        // Values which are never wrapped are returned without locking, reads only lock to link a child.
+        PropertyPolicy policy = this.policies[ordinal];
+        if (policy.getProperty().isValueTyped()) return value;
 
-        property.getSetter().invoke(this.instance, unproxiedValue);
+        StateNode<?>            existing = this.factory.findNode(value);
+        PropertyPolicy.Decision decision = existing == null ? policy.decide(value) : null;
+        if (decision == PropertyPolicy.Decision.VALUE) return value;
 
-        boolean isChanged;
-        if (unproxiedValue instanceof Collection || unproxiedValue instanceof Map) {
-            isChanged = (oldValue != unproxiedValue);
-        } else {
-            isChanged = !Objects.equals(oldValue, unproxiedValue);
-        }
+        this.factory.lockWrites();
+        try {
+            StateNode<?> child = existing != null ? existing : this.factory.wrapNode(policy, value, decision);
+            if (child == null) return value;
 
-        if (isChanged) {
-            this.patches.put(property, newValue);
-        } else {
-            this.patches.remove(property);
+            this.linkChild(ordinal, child);
+            return child.getProxy();
+        } finally {
+            this.factory.unlockWrites();
         }
     }
 
+    private void set(int ordinal, Object newValue) {
 
-    @Override
-    public boolean isDirty() {
+        Property property       = this.index.get(ordinal);
+        Object   unproxiedValue = this.factory.detach(newValue);
+        boolean  recording      = this.changes.isActive();
+        Object   previous;
+        long     sequence       = -1;
 
-        if (!this.patches.isEmpty()) {
-            return true;
-        }
+        this.factory.lockWrites();
+        try {
+            Object oldValue = this.capture(ordinal);
+            previous = recording ? this.factory.detach(this.currentValue(ordinal, oldValue)) : null;
 
-        for (Map.Entry<Property, Object> entry : this.source.entrySet()) {
-            Property property = entry.getKey();
-            if (this.patches.containsKey(property)) continue;
+            property.write(this.instance, unproxiedValue);
 
-            Object value = entry.getValue();
-            if (value == null) continue;
+            boolean isChanged;
+            if (unproxiedValue instanceof Collection || unproxiedValue instanceof Map) {
+                isChanged = (oldValue != unproxiedValue);
+            } else {
+                isChanged = !Objects.equals(oldValue, unproxiedValue);
+            }
 
-            State<?> childState = this.factory.getExistingState(value);
+            Patches patches = this.writablePatches();
+            if (isChanged) {
+                patches.patch(ordinal, newValue);
+            } else {
+                patches.unpatch(ordinal);
+            }
+            this.patches = patches;
 
-            if (childState != null && childState.isDirty()) {
-                return true;
+            if (isChanged) {
+                this.unlinkStale(ordinal, unproxiedValue);
+            } else {
+                this.relink(ordinal, unproxiedValue);
             }
+
+            this.setSelfDirty(patches.count > 0);
+
+            // Numbered under the lock, in the order in which writes are applied.
+            if (recording) sequence = this.changes.journal(this, property, null, previous, unproxiedValue);
+        } finally {
+            this.factory.unlockWrites();
         }
 
-        return false;
+        // Dispatched outside of the lock, so that synchronous listeners see the new value without blocking the writes
+        // of other threads.
+        if (recording) this.changes.dispatch(sequence, this, property, null, previous, unproxiedValue);
+    }
+
+    /**
+     * Retrieve the value of a property as seen through the proxy before a write: its patched value if it has been
+     * written already, its original value otherwise.
+     */
+    private Object currentValue(int ordinal, Object original) {
+
+        Patches patches = this.patches;
+        return patches != null && patches.isSet(ordinal) ? patches.values[ordinal] : original;
+    }
+
+    private boolean isPatched(int ordinal) {
+
+        Patches patches = this.patches;
+        return patches != null && patches.isSet(ordinal);
+    }
+
+    /**
+     * Retrieve the {@link Patches} to modify, which are copied in {@link ThreadingMode#CONCURRENT} mode. The caller must
+     * publish them by assigning {@link #patches} once modified.
+     */
+    private Patches writablePatches() {
+
+        Patches patches = this.patches;
+        if (patches == null) return new Patches(this.index.size());
+        return this.copyOnWrite ? new Patches(patches) : patches;
     }
 
     @Override
-    public void revert() {
+    public boolean isDirty() {
+
+        return this.recordDirtyCheck(this.metrics);
+    }
+
+    @Override
+    void revertSelf() {
+
+        Patches reverted = this.patches;
+        this.patches = null;
+
+        for (int ordinal = 0; ordinal < this.index.size(); ordinal++) {
+            if (!isSet(this.captured, ordinal)) continue;
 
-        this.patches.clear();
-        this.source.forEach((prop, originalValue) -> {
             try {
-                prop.getSetter().invoke(this.instance, originalValue);
+                this.index.get(ordinal).write(this.instance, this.source[ordinal]);
             } catch (Exception ignored) {
             }
-        });
+        }
+
+        for (int ordinal = 0; ordinal < this.index.size(); ordinal++) {
+            if (reverted != null && reverted.isSet(ordinal)) this.relink(ordinal, this.source[ordinal]);
+        }
+        this.setSelfDirty(false);
+    }
+
+    @Override
+    ClassProxyFactory getFactory() {
+
+        return this.factory;
     }
 
     @Override
     public void close() {
 
-        this.onClose.accept(this);
+        this.factory.lockWrites();
+        try {
+            this.detach();
+            this.unlinkAll();
+            this.onClose.accept(this);
+        } finally {
+            this.factory.unlockWrites();
+        }
     }
 
-    private Collection<Object> getCurrentStateValues() {
+    /**
+     * Link the state of the value held by a property, replacing the previous link of the property if it targets
+     * another state.
+     */
+    private void linkChild(int ordinal, StateNode<?> child) {
+
+        Link[] links = this.links;
+        if (links == null) {
+            links      = new Link[this.index.size()];
+            this.links = links;
+        }
 
-        Map<Property, Object> current = new HashMap<>(this.source);
-        current.putAll(this.patches);
-        return current.values();
+        Link current = links[ordinal];
+        if (current != null && current.getChild() == child) return;
+        if (current != null) current.unlink();
+
+        links[ordinal] = this.link(child);
+    }
+
+    /**
+     * Remove the link of a property if it does not target the state of its new value anymore. The state of the new
+     * value will be linked the next time the property is read through the proxy.
+     */
+    private void unlinkStale(int ordinal, Object value) {
+
+        if (this.links == null) return;
+
+        Link current = this.links[ordinal];
+        if (current != null && current.getChild().getInstance() != value) {
+            current.unlink();
+            this.forget(ordinal);
+        }
+    }
+
+    /**
+     * Link the state of the provided value (if it has one) to a property, which is used when a property goes back to
+     * its original value so that the dirtiness of its original child counts again.
+     */
+    private void relink(int ordinal, Object value) {
+
+        StateNode<?> child = this.factory.findNode(value);
+        if (child != null) {
+            this.linkChild(ordinal, child);
+        } else if (this.links != null && this.links[ordinal] != null) {
+            this.links[ordinal].unlink();
+            this.forget(ordinal);
+        }
+    }
+
+    private void forget(int ordinal) {
+
+        this.links[ordinal] = null;
+    }
+
+    @Override
+    void forEachChild(Consumer<StateNode<?>> action) {
+
+        Link[] links = this.links;
+        if (links == null) return;
+
+        for (Link link : links) {
+            if (link != null && link.isActive()) action.accept(link.getChild());
+        }
+    }
+
+    @Override
+    void forEachReference(ObjIntConsumer<Object> visitor) {
+
+        for (int ordinal = 0; ordinal < this.index.size(); ordinal++) {
+            if (this.policies[ordinal].getProperty().isValueTyped()) continue;
+
+            Object value = this.baseline(ordinal);
+            if (value != null) visitor.accept(value, ordinal);
+        }
+    }
+
+    @Override
+    void linkReference(int ordinal, StateNode<?> child) {
+
+        Object value = this.currentValue(ordinal, this.baseline(ordinal));
+        if (value == child.getInstance() || value == child.getProxy()) this.linkChild(ordinal, child);
+    }
+
+    private void unlinkAll() {
+
+        Link[] links = this.links;
+        if (links == null) return;
+
+        for (Link link : links) {
+            if (link != null) link.unlink();
+        }
+        Arrays.fill(links, null);
+    }
+
+    /**
+     * Retrieve the value of a property before any write made through the proxy. In {@link SnapshotMode#LAZY} mode, a
+     * property that has not been captured yet still holds its original value in the instance.
+     */
+    private Object baseline(int ordinal) {
+
+        if (isSet(this.captured, ordinal)) {
+            return this.source[ordinal];
+        }
+        return this.index.get(ordinal).read(this.instance);
+    }
+
+    /**
+     * Retrieve the original value of a property, capturing it from the instance if it has not been captured yet.
+     */
+    private Object capture(int ordinal) {
+
+        if (isSet(this.captured, ordinal)) {
+            return this.source[ordinal];
+        }
+
+        Object value = this.index.get(ordinal).read(this.instance);
+        this.source[ordinal] = value;
+        this.captured[ordinal >>> 6] |= 1L << ordinal;
+        return value;
+    }
+
+    private void captureAll(String failureMessage) {
+
+        for (int ordinal = 0; ordinal < this.index.size(); ordinal++) {
+            try {
+                this.capture(ordinal);
+            } catch (Exception e) {
+                throw new RuntimeException(failureMessage, e);
+            }
+        }
     }
 
     private boolean isObjectOverride(Method method) {
@@ -199,44 +474,128 @@ public class ClassProxyImpl<S> implements ProxyInterceptor<S> {
     @Override
     public Map<Property, Object> getOriginalState() {
 
-        return Collections.unmodifiableMap(this.source);
+        this.captureAll("Failed to capture proxy state");
+        return new SlotView(this.index, ordinal -> true, ordinal -> this.source[ordinal]);
     }
 
     @Override
     public Map<Property, Object> getDifferentialState() {
 
-        Map<Property, Object> diff = new HashMap<>(this.patches);
+        DirtyScanEvent event = new DirtyScanEvent();
+        if (event.isEnabled()) this.recordDifferentialScan(event);
 
-        for (Map.Entry<Property, Object> entry : this.source.entrySet()) {
-            Property property = entry.getKey();
-            if (diff.containsKey(property)) continue;
-
-            Object value = entry.getValue();
-            if (value == null) continue;
-
-            State<?> childState = this.factory.getExistingState(value);
+        return new SlotView(this.index, this::isDifferent, this::differentialValue);
+    }
 
-            if (childState != null && childState.isDirty()) {
-                diff.put(property, childState.getProxy());
+    /**
+     * The differential state is a lazy view, so the scan it implies is only performed here while a recording is
+     * interested in {@link DirtyScanEvent}s.
+     */
+    private void recordDifferentialScan(DirtyScanEvent event) {
+
+        event.begin();
+        int visited = 1;
+        for (int ordinal = 0; ordinal < this.index.size(); ordinal++) {
+            if (!this.isPatched(ordinal) && this.links != null && this.links[ordinal] != null) {
+                this.isDifferent(ordinal);
+                visited++;
             }
         }
+        event.end();
 
-        return Collections.unmodifiableMap(diff);
+        if (event.shouldCommit()) {
+            event.operation    = "getDifferentialState";
+            event.className    = this.instance.getClass().getName();
+            event.nodesVisited = visited;
+            event.commit();
+        }
+    }
+
+    private boolean isDifferent(int ordinal) {
+
+        if (this.isPatched(ordinal)) return true;
+
+        Link[] links = this.links;
+        if (links == null) return false;
+
+        Link link = links[ordinal];
+        return link != null && link.isActive() && link.getChild().isMarkedDirty();
+    }
+
+    private Object differentialValue(int ordinal) {
+
+        Patches patches = this.patches;
+        if (patches != null && patches.isSet(ordinal)) return patches.values[ordinal];
+
+        Link link = this.links[ordinal];
+        return link == null ? null : link.getChild().getProxy();
     }
 
     void refreshInstance(S newInstance) {
 
-        this.instance = newInstance;
-        this.patches.clear();
-        this.source.clear();
+        this.factory.lockWrites();
+        try {
+            this.instance = newInstance;
+            this.unlinkAll();
+            Arrays.fill(this.source, null);
+            Arrays.fill(this.captured, 0L);
+            this.patches = null;
+            this.setSelfDirty(false);
+
+            if (this.snapshotMode == SnapshotMode.EAGER) {
+                this.captureAll("Failed to re-baseline proxy state during refresh");
+            }
+        } finally {
+            this.factory.unlockWrites();
+        }
+    }
+
+    /**
+     * The values written through the proxy, along with a bitset telling which slots are patched. Both are kept in the
+     * same object so that they can be replaced at once.
+     */
+    private static final class Patches {
+
+        private final Object[] values;
+        private final long[]   bits;
+        private       int      count;
 
-        for (LinkedProperty prop : Properties.getPropertiesOf(newInstance)) {
-            try {
-                this.source.put(prop, prop.getValue());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to re-baseline proxy state during refresh", e);
+        private Patches(int size) {
+
+            this.values = new Object[size];
+            this.bits   = newBitSet(size);
+        }
+
+        private Patches(Patches other) {
+
+            this.values = other.values.clone();
+            this.bits   = other.bits.clone();
+            this.count  = other.count;
+        }
+
+        private boolean isSet(int ordinal) {
+
+            return ClassProxyImpl.isSet(this.bits, ordinal);
+        }
+
+        private void patch(int ordinal, Object value) {
+
+            if (!this.isSet(ordinal)) {
+                this.bits[ordinal >>> 6] |= 1L << ordinal;
+                this.count++;
             }
+            this.values[ordinal] = value;
         }
+
+        private void unpatch(int ordinal) {
+
+            if (!this.isSet(ordinal)) return;
+
+            this.bits[ordinal >>> 6] &= ~(1L << ordinal);
+            this.values[ordinal] = null;
+            this.count--;
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,347 @@
+package fr.anisekai.proxy;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent {@link IdentityMap}, used as the registries of a {@link ClassProxyFactory} shared between threads.
+ * <p>
+ * The map is split into segments selected from the identity hash of the key. Each segment is an open addressing table
+ * (linear probing, keys and values stored side by side like in {@link IdentityHashMap}) which is read without any lock,
+ * while writes only lock the segment they target. Writes publish the value before the key, so a reader finding a key
+ * always sees its value.
+ * <p>
+ * Removed keys are replaced by a tombstone to keep probe sequences intact. Tombstones are only reclaimed when tables are
+ * rebuilt, once they become too crowded, so that a slot never holds another key within the same table: a reader finding
+ * a key then reads either its value or {@code null} if it has been removed. A reader still holding the previous table
+ * of a segment sees the state of the segment at the time it started reading.
+ *
+ * @param <V>
+ *         The type of the values.
+ */
+final class ConcurrentIdentityMap<V> implements IdentityMap<V> {
+
+    private static final VarHandle SLOTS            = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final Object    TOMBSTONE        = new Object();
+    private static final int       SEGMENTS         = 16;
+    private static final int       SEGMENT_SHIFT    = Integer.numberOfLeadingZeros(SEGMENTS - 1);
+    private static final int       INITIAL_CAPACITY = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    ConcurrentIdentityMap() {
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment();
+        }
+    }
+
+    private static int hash(Object key) {
+
+        // Fibonacci hashing spreads the identity hash over the whole int range.
+        return System.identityHashCode(key) * 0x9E3779B9;
+    }
+
+    private Segment segmentFor(int hash) {
+
+        return this.segments[hash >>> SEGMENT_SHIFT];
+    }
+
+    /**
+     * Retrieve the value associated to the provided key, without locking.
+     *
+     * @param key
+     *         The key, compared by identity.
+     *
+     * @return The value, or {@code null} if the key is not present.
+     */
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+
+        int hash = hash(key);
+        return (V) this.segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Associate a value to the provided key, replacing any previous value.
+     *
+     * @param key
+     *         The key, compared by identity.
+     * @param value
+     *         The value.
+     */
+    @Override
+    public void put(Object key, V value) {
+
+        int hash = hash(key);
+        this.segmentFor(hash).put(key, hash, Objects.requireNonNull(value), false);
+    }
+
+    /**
+     * Associate a value to the provided key, unless the key is already present.
+     *
+     * @param key
+     *         The key, compared by identity.
+     * @param value
+     *         The value.
+     *
+     * @return The value already associated to the key, or {@code null} if the provided value has been inserted.
+     */
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(Object key, V value) {
+
+        int hash = hash(key);
+        return (V) this.segmentFor(hash).put(key, hash, Objects.requireNonNull(value), true);
+    }
+
+    /**
+     * Associate each key to the value at the same position, locking each segment only once for the whole batch.
+     *
+     * @param keys
+     *         The keys, compared by identity.
+     * @param values
+     *         The values, in the same order as the keys.
+     * @param onlyIfAbsent
+     *         Whether keys already present should keep their current value.
+     *
+     * @return The values previously associated to each key (or {@code null} for keys that were absent), in the same
+     *         order as the keys.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<V> putAll(List<?> keys, List<? extends V> values, boolean onlyIfAbsent) {
+
+        int size = keys.size();
+        if (values.size() != size) {
+            throw new IllegalArgumentException("Keys and values must have the same size");
+        }
+
+        // Group the positions by segment (counting sort), so that each segment is locked once.
+        int[] hashes = new int[size];
+        int[] starts = new int[SEGMENTS + 1];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = hash(keys.get(i));
+            starts[(hashes[i] >>> SEGMENT_SHIFT) + 1]++;
+        }
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            starts[segment + 1] += starts[segment];
+        }
+
+        int[] cursors   = Arrays.copyOf(starts, SEGMENTS);
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[cursors[hashes[i] >>> SEGMENT_SHIFT]++] = i;
+        }
+
+        Object[] previous = new Object[size];
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            if (starts[segment] == starts[segment + 1]) continue;
+
+            Segment target = this.segments[segment];
+            target.lock();
+            try {
+                for (int i = starts[segment]; i < starts[segment + 1]; i++) {
+                    int position = positions[i];
+                    previous[position] = target.putLocked(
+                            keys.get(position),
+                            hashes[position],
+                            Objects.requireNonNull(values.get(position)),
+                            onlyIfAbsent
+                    );
+                }
+            } finally {
+                target.unlock();
+            }
+        }
+
+        return (List<V>) Arrays.asList(previous);
+    }
+
+    /**
+     * Remove the provided key, but only if it is still associated to the provided value.
+     *
+     * @param key
+     *         The key, compared by identity.
+     * @param value
+     *         The value expected to be associated to the key, compared by identity.
+     *
+     * @return {@code true} if the key has been removed, {@code false} otherwise.
+     */
+    @Override
+    public boolean remove(Object key, V value) {
+
+        int hash = hash(key);
+        return this.segmentFor(hash).remove(key, hash, value);
+    }
+
+    /**
+     * Retrieve a snapshot of the distinct values of this map. A value registered under several keys is only returned
+     * once.
+     *
+     * @return The values.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+
+        Set<Object> values = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Segment segment : this.segments) {
+            Object[] table = segment.table;
+            for (int i = 0; i < table.length; i += 2) {
+                Object key   = SLOTS.getAcquire(table, i);
+                Object value = SLOTS.getAcquire(table, i + 1);
+                if (key != null && key != TOMBSTONE && value != null) values.add(value);
+            }
+        }
+        return (List<V>) List.copyOf(values);
+    }
+
+    /**
+     * Remove every entry of this map.
+     */
+    @Override
+    public void clear() {
+
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * A segment of the map, locked for writes only.
+     */
+    private static final class Segment extends ReentrantLock {
+
+        private volatile Object[] table = new Object[INITIAL_CAPACITY * 2];
+        private          int      size;
+        private          int      used;
+
+        private static int indexFor(int hash, int length) {
+
+            // The lowest bits select the slot, the highest ones already selected the segment.
+            return (hash & ((length >> 1) - 1)) << 1;
+        }
+
+        Object get(Object key, int hash) {
+
+            Object[] table = this.table;
+            int      index = indexFor(hash, table.length);
+
+            while (true) {
+                Object candidate = SLOTS.getAcquire(table, index);
+                if (candidate == key) return SLOTS.getAcquire(table, index + 1);
+                if (candidate == null) return null;
+                index = (index + 2) & (table.length - 1);
+            }
+        }
+
+        Object put(Object key, int hash, Object value, boolean onlyIfAbsent) {
+
+            this.lock();
+            try {
+                return this.putLocked(key, hash, value, onlyIfAbsent);
+            } finally {
+                this.unlock();
+            }
+        }
+
+        Object putLocked(Object key, int hash, Object value, boolean onlyIfAbsent) {
+
+            if ((this.used + 1) * 3 >= this.table.length) {
+                this.rebuild();
+            }
+
+            Object[] table = this.table;
+            int      index = indexFor(hash, table.length);
+
+            while (true) {
+                Object candidate = table[index];
+                if (candidate == key) {
+                    Object previous = table[index + 1];
+                    if (!onlyIfAbsent) SLOTS.setRelease(table, index + 1, value);
+                    return previous;
+                }
+                if (candidate == null) break;
+                index = (index + 2) & (table.length - 1);
+            }
+
+            // Tombstones are never reused: a reader which found a key in a slot could otherwise read the value of
+            // another key reusing the slot in the meantime. They are dropped when the table is rebuilt.
+            SLOTS.setRelease(table, index + 1, value);
+            SLOTS.setRelease(table, index, key);
+            this.used++;
+            this.size++;
+            return null;
+        }
+
+        boolean remove(Object key, int hash, Object value) {
+
+            this.lock();
+            try {
+                Object[] table = this.table;
+                int      index = indexFor(hash, table.length);
+
+                while (true) {
+                    Object candidate = table[index];
+                    if (candidate == null) return false;
+                    if (candidate == key) {
+                        if (table[index + 1] != value) return false;
+
+                        SLOTS.setRelease(table, index, TOMBSTONE);
+                        SLOTS.setRelease(table, index + 1, null);
+                        this.size--;
+                        return true;
+                    }
+                    index = (index + 2) & (table.length - 1);
+                }
+            } finally {
+                this.unlock();
+            }
+        }
+
+        void clear() {
+
+            this.lock();
+            try {
+                this.table = new Object[INITIAL_CAPACITY * 2];
+                this.size  = 0;
+                this.used  = 0;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        private void rebuild() {
+
+            // Grow only when live entries fill the table, otherwise rebuilding at the same size drops the tombstones.
+            Object[] previous = this.table;
+            int      length   = (this.size + 1) * 3 >= previous.length ? previous.length * 2 : previous.length;
+            Object[] table    = new Object[length];
+
+            for (int i = 0; i < previous.length; i += 2) {
+                Object key = previous[i];
+                if (key == null || key == TOMBSTONE) continue;
+
+                int index = indexFor(hash(key), length);
+                while (table[index] != null) {
+                    index = (index + 2) & (length - 1);
+                }
+                table[index]     = key;
+                table[index + 1] = previous[i + 1];
+            }
+
+            this.used  = this.size;
+            this.table = table;
+        }
+
+    }
+
+}
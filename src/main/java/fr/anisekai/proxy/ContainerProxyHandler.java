@@ -1,21 +1,36 @@
 package fr.anisekai.proxy;
 
-import fr.anisekai.proxy.interfaces.ProxyInterceptor;
-import fr.anisekai.proxy.interfaces.State;
+import fr.anisekai.proxy.diff.ContainerDiff;
+import fr.anisekai.proxy.interfaces.ContainerState;
 import fr.anisekai.proxy.reflection.Property;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
- * A simplified invocation handler for collections and maps.
+ * The state of a proxied collection or map.
  * <p>
  * This handler delegates the "heavy lifting" (proxy creation and memoization) to the {@link ClassProxyFactory},
  * focusing only on structural mutation tracking and recursive dirty checks.
+ * <p>
+ * Standard {@link List}, {@link Set} and {@link Map} containers are exposed through hand-written wrappers
+ * ({@link ProxyList}, {@link ProxySet}, {@link ProxyMap}) calling the container directly and reporting their mutations
+ * to this handler. Containers exposing other interfaces fall back to a {@link java.lang.reflect.Proxy} using this
+ * handler as its {@link InvocationHandler}.
+ * <p>
+ * Mutations are recorded by a {@link ContainerTracker}, which exposes the net changes through {@link #getChanges()}
+ * and allows to {@link #revert()} them. The container is marked as dirty once a mutator has changed it (as told by the
+ * result of the mutator, when it has one), even if its changes end up cancelling each other out: {@link #getChanges()}
+ * is the exact view, and marks the container as clean again when it finds no net change.
+ * <p>
+ * Only the elements of collections and the values of maps are wrapped. Keys are never wrapped, as a key proxy could be
+ * mutated while its map relies on its hash code, but keys provided to the container are unwrapped like values.
  */
-public class ContainerProxyHandler implements InvocationHandler, State<Object>, ProxyInterceptor<Object> {
+public class ContainerProxyHandler extends StateNode<Object> implements InvocationHandler, ContainerState<Object> {
 
     /**
      * A set of method names that are known to mutate the state of a {@link Collection} or {@link Map}. When a method
@@ -24,17 +39,21 @@ public class ContainerProxyHandler implements InvocationHandler, State<Object>,
     private static final Set<String> MUTATORS = Set.of(
             "add", "addAll", "remove", "removeAll", "retainAll", "clear",
             "set", "put", "putAll", "removeIf", "replaceAll", "merge",
-            "compute", "computeIfAbsent", "computeIfPresent"
+            "compute", "computeIfAbsent", "computeIfPresent", "putIfAbsent",
+            "replace", "addFirst", "addLast", "removeFirst", "removeLast", "sort"
     );
 
     private final ClassProxyFactory               factory;
-    private final Property                        property;
+    private final PropertyPolicy                  policy;
+    private final boolean                         valueTypedElements;
     private final Object                          originalContainer;
     private final Consumer<ContainerProxyHandler> onClose;
+    private final ContainerTracker                tracker;
+    private final ProxyMetrics                    metrics;
+    private final ChangeDispatcher                changes;
+    private final Map<StateNode<?>, Link>         links;
     private       Object                          proxy;
 
-    private boolean structurallyDirty = false;
-
     /**
      * Creates a new container proxy handler.
      *
@@ -47,10 +66,23 @@ public class ContainerProxyHandler implements InvocationHandler, State<Object>,
      */
     public ContainerProxyHandler(ClassProxyFactory factory, Property property, Object originalContainer, Consumer<ContainerProxyHandler> onClose) {
 
-        this.factory           = factory;
-        this.property          = property;
-        this.originalContainer = originalContainer;
-        this.onClose           = onClose;
+        this(factory, factory.policyOf(property), originalContainer, onClose);
+    }
+
+    ContainerProxyHandler(ClassProxyFactory factory, PropertyPolicy policy, Object originalContainer, Consumer<ContainerProxyHandler> onClose) {
+
+        this.factory            = factory;
+        this.policy             = policy;
+        this.valueTypedElements = policy.getProperty().hasValueTypedElements();
+        this.originalContainer  = originalContainer;
+        this.onClose            = onClose;
+        this.tracker            = ContainerTracker.of(originalContainer);
+        this.metrics            = factory.getMetrics();
+        this.changes            = factory.getChangeDispatcher();
+        // States compare by identity, and a concurrent map allows reading elements without locking.
+        this.links              = factory.getThreadingMode() == ThreadingMode.CONCURRENT ?
+                new ConcurrentHashMap<>() :
+                new IdentityHashMap<>();
     }
 
     @Override
@@ -76,22 +108,59 @@ public class ContainerProxyHandler implements InvocationHandler, State<Object>,
             return this.originalContainer.equals(this.factory.unwrap(args[0]));
         }
 
-        if (MUTATORS.contains(name)) {
-            this.structurallyDirty = true;
-        }
-
         Object[] unwrappedArgs = null;
         if (args != null) {
             unwrappedArgs = new Object[args.length];
             for (int i = 0; i < args.length; i++) {
-                unwrappedArgs[i] = this.factory.unwrap(args[i]);
+                unwrappedArgs[i] = this.factory.detach(args[i]);
+            }
+        }
+
+        boolean mutator = MUTATORS.contains(name);
+        if (mutator) {
+            this.factory.lockWrites();
+            try {
+                this.track(name, unwrappedArgs);
+            } finally {
+                this.factory.unlockWrites();
             }
         }
 
         Object result = method.invoke(this.originalContainer, unwrappedArgs);
+        // Only boolean results tell whether the container changed.
+        if (mutator && !Boolean.FALSE.equals(result)) this.mutated(null);
         return this.wrapResult(result);
     }
 
+    /**
+     * Tell the tracker which keys or elements the mutator is about to touch.
+     */
+    private void track(String name, Object[] args) {
+
+        boolean single = args != null && args.length == 1;
+
+        if (this.originalContainer instanceof Map<?, ?>) {
+            switch (name) {
+                case "putAll" -> ((Map<?, ?>) args[0]).keySet().forEach(this.tracker::touch);
+                case "clear", "replaceAll" -> this.tracker.touchAll();
+                default -> this.tracker.touch(args[0]);
+            }
+            return;
+        }
+
+        switch (name) {
+            case "add", "remove" -> {
+                if (single) {
+                    this.tracker.touch(args[0]);
+                } else {
+                    this.tracker.touchAll();
+                }
+            }
+            case "addAll", "removeAll" -> ((Collection<?>) args[args.length - 1]).forEach(this.tracker::touch);
+            default -> this.tracker.touchAll();
+        }
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 
@@ -118,49 +187,191 @@ public class ContainerProxyHandler implements InvocationHandler, State<Object>,
     @Override
     public Map<Property, Object> getOriginalState() {
 
-        // Unsupported for containers, for now.
+        // Containers have no properties, see getChanges().
         return Map.of();
     }
 
     @Override
     public Map<Property, Object> getDifferentialState() {
 
-        // Unsupported for containers, for now.
+        // Containers have no properties, see getChanges().
         return Map.of();
     }
 
     @Override
-    public void revert() {
+    public boolean isDirty() {
+
+        return this.recordDirtyCheck(this.metrics);
+    }
+
+    @Override
+    public ContainerDiff getChanges() {
+
+        this.factory.lockWrites();
+        try {
+            ContainerDiff diff = this.tracker.diff();
+            // Changes cancelling each other out are only noticed here, once the net changes are known.
+            if (diff.isEmpty()) this.setSelfDirty(false);
+            return diff;
+        } finally {
+            this.factory.unlockWrites();
+        }
+    }
+
+    @Override
+    void revertSelf() {
 
-        // Unsupported for containers, for now.
+        this.tracker.revert();
+        this.setSelfDirty(false);
+    }
+
+    @Override
+    ClassProxyFactory getFactory() {
+
+        return this.factory;
     }
 
     @Override
     public void close() {
 
-        this.onClose.accept(this);
+        this.factory.lockWrites();
+        try {
+            this.detach();
+            this.links.values().forEach(Link::unlink);
+            this.links.clear();
+            this.onClose.accept(this);
+        } finally {
+            this.factory.unlockWrites();
+        }
     }
 
     @Override
-    public boolean isDirty() {
+    void forEachChild(Consumer<StateNode<?>> action) {
 
-        if (this.structurallyDirty) {
-            return true;
+        for (Link link : this.links.values()) {
+            if (link.isActive()) action.accept(link.getChild());
         }
+    }
 
-        if (this.originalContainer instanceof Iterable<?> iterable) {
-            for (Object element : iterable) {
-                State<?> state = this.factory.getExistingState(element);
-                if (state != null && state.isDirty()) return true;
-            }
-        } else if (this.originalContainer instanceof Map<?, ?> map) {
-            for (Object value : map.values()) {
-                State<?> state = this.factory.getExistingState(value);
-                if (state != null && state.isDirty()) return true;
+    @Override
+    void forEachReference(ObjIntConsumer<Object> visitor) {
+
+        if (this.valueTypedElements) return;
+
+        // Keys are never wrapped, only the values of a map may have a state.
+        Iterable<?> elements = this.originalContainer instanceof Map<?, ?> map ?
+                map.values() :
+                (Iterable<?>) this.originalContainer;
+        for (Object element : elements) {
+            if (element != null) visitor.accept(element, -1);
+        }
+    }
+
+    @Override
+    void linkReference(int ordinal, StateNode<?> child) {
+
+        // Like elements read through the container, elements removed since then stay linked.
+        if (this.links.get(child) == null) this.links.put(child, this.link(child));
+    }
+
+    /**
+     * Record the original state of the key (for maps) or element (for collections) a mutation is about to touch. The
+     * mutation must be reported to {@link #mutated(Object)} once applied, if it changed the container.
+     *
+     * @param target
+     *         The raw key or element.
+     */
+    void mutate(Object target) {
+
+        assert this.factory.checkThread();
+        this.factory.lockWrites();
+        try {
+            this.tracker.touch(target);
+        } finally {
+            this.factory.unlockWrites();
+        }
+    }
+
+    /**
+     * Record the original state of the whole container before a mutation whose effects are not limited to known keys
+     * or elements. The mutation must be reported to {@link #mutated(Object)} once applied, if it changed the
+     * container.
+     */
+    void mutateAll() {
+
+        assert this.factory.checkThread();
+        this.factory.lockWrites();
+        try {
+            this.tracker.touchAll();
+        } finally {
+            this.factory.unlockWrites();
+        }
+    }
+
+    /**
+     * Report a mutation which changed the container, once applied: the container is marked as dirty, and the change is
+     * recorded in the journal of the factory and sent to its listeners, if it has any. Mutations failing with an
+     * exception or leaving the container unchanged are never reported. The change is numbered under the write lock, but
+     * listeners are notified outside of it, so that synchronous listeners see the mutated container without blocking
+     * the writes of other threads.
+     *
+     * @param target
+     *         The raw key or element touched by the mutation, or {@code null} if it may touch any of them.
+     */
+    void mutated(Object target) {
+
+        boolean recording = this.changes.isActive();
+        long    sequence  = -1;
+
+        this.factory.lockWrites();
+        try {
+            this.setSelfDirty(true);
+            if (recording) sequence = this.changes.journal(this, this.policy.getProperty(), target, null, null);
+        } finally {
+            this.factory.unlockWrites();
+        }
+
+        if (recording) this.changes.dispatch(sequence, this, this.policy.getProperty(), target, null, null);
+    }
+
+    /**
+     * Wrap a raw element of the container in its proxy if the policy requires it, linking its state to this one.
+     *
+     * @param element
+     *         The raw element.
+     *
+     * @return The proxy of the element, or the element itself.
+     */
+    Object wrapElement(Object element) {
+
+        if (element == null || this.valueTypedElements) return element;
+
+        StateNode<?> child = this.factory.wrapNode(this.policy, element);
+        if (child == null) return element;
+
+        // Elements removed from the container stay linked: removing them already made the container dirty.
+        if (this.links.get(child) == null) {
+            this.factory.lockWrites();
+            try {
+                if (this.links.get(child) == null) this.links.put(child, this.link(child));
+            } finally {
+                this.factory.unlockWrites();
             }
         }
+        return child.getProxy();
+    }
+
+    /**
+     * Unwrap a value provided to the container, so that only raw values are stored in it.
+     *
+     * @param value
+     *         The value, which may be a proxy.
+     *
+     * @return The raw value.
+     */
+    Object unwrapElement(Object value) {
 
-        return false;
+        return this.factory.detach(value);
     }
 
     private Object wrapResult(Object result) {
@@ -169,23 +380,30 @@ public class ContainerProxyHandler implements InvocationHandler, State<Object>,
             return this.wrapIterator(it);
         }
         // General wrapping (for .get(i), .next(), etc.)
-        return this.factory.wrapIfNecessary(this.property, result);
+        return this.wrapElement(result);
     }
 
     private Iterator<Object> wrapIterator(Iterator<?> original) {
 
         return new Iterator<>() {
+            private Object last;
+
             @Override
             public boolean hasNext() {return original.hasNext();}
 
             @Override
-            public Object next() {return ContainerProxyHandler.this.wrapResult(original.next());}
+            public Object next() {
+
+                this.last = original.next();
+                return ContainerProxyHandler.this.wrapResult(this.last);
+            }
 
             @Override
             public void remove() {
 
-                ContainerProxyHandler.this.structurallyDirty = true;
+                ContainerProxyHandler.this.mutate(this.last);
                 original.remove();
+                ContainerProxyHandler.this.mutated(this.last);
             }
         };
     }
@@ -0,0 +1,413 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.diff.CollectionDiff;
+import fr.anisekai.proxy.diff.ContainerDiff;
+import fr.anisekai.proxy.diff.ListDiff;
+import fr.anisekai.proxy.diff.MapDiff;
+
+import java.util.*;
+
+/**
+ * Records the original content of a container as it gets modified, allowing to compute the net changes made to it and
+ * to revert them.
+ * <p>
+ * Before each mutation, the proxy of the container tells the tracker which keys (for maps) or elements (for sets) are
+ * about to be touched, and the tracker remembers their original state the first time they are touched. Lists (and
+ * other collections) are instead copied on their first mutation, as positional operations shift every following
+ * element.
+ */
+abstract sealed class ContainerTracker {
+
+    /**
+     * Create the {@link ContainerTracker} suited to the provided container.
+     *
+     * @param container
+     *         A {@link Collection} or a {@link Map}.
+     *
+     * @return A {@link ContainerTracker}.
+     */
+    static ContainerTracker of(Object container) {
+
+        return switch (container) {
+            case Map<?, ?> map -> new MapTracker(map);
+            case Set<?> set -> new SetTracker(set);
+            case Collection<?> collection -> new SnapshotTracker(collection);
+            default -> throw new IllegalArgumentException("Unsupported container " + container.getClass());
+        };
+    }
+
+    /**
+     * Record the original state of a key or an element about to be touched by a mutation.
+     *
+     * @param target
+     *         The key (for maps) or the element (for collections).
+     */
+    abstract void touch(Object target);
+
+    /**
+     * Record the original state of the whole container, before a mutation whose effects are not limited to known keys
+     * or elements (such as {@code clear()} or {@code removeIf()}).
+     */
+    abstract void touchAll();
+
+    /**
+     * Compute the net changes made to the container since the tracking started.
+     *
+     * @return A {@link ContainerDiff}.
+     */
+    abstract ContainerDiff diff();
+
+    /**
+     * Restore the original content of the container, touching only what changed, and start tracking again.
+     */
+    abstract void revert();
+
+    /**
+     * Forget everything recorded so far, considering the current content of the container as its original content.
+     */
+    abstract void reset();
+
+    @SuppressWarnings("unchecked")
+    private static final class MapTracker extends ContainerTracker {
+
+        private static final Object ABSENT = new Object();
+
+        private final Map<Object, Object> map;
+        private final Map<Object, Object> originals = new LinkedHashMap<>();
+
+        private MapTracker(Map<?, ?> map) {
+
+            this.map = (Map<Object, Object>) map;
+        }
+
+        @Override
+        void touch(Object key) {
+
+            if (this.originals.containsKey(key)) return;
+            this.originals.put(key, this.map.containsKey(key) ? this.map.get(key) : ABSENT);
+        }
+
+        @Override
+        void touchAll() {
+
+            this.map.keySet().forEach(this::touch);
+        }
+
+        @Override
+        ContainerDiff diff() {
+
+            Map<Object, Object> put     = new LinkedHashMap<>();
+            Map<Object, Object> removed = new LinkedHashMap<>();
+
+            this.originals.forEach((key, original) -> {
+                boolean present = this.map.containsKey(key);
+
+                if (original == ABSENT) {
+                    if (present) put.put(key, this.map.get(key));
+                } else if (!present) {
+                    removed.put(key, original);
+                } else if (!Objects.equals(original, this.map.get(key))) {
+                    put.put(key, this.map.get(key));
+                }
+            });
+
+            return new MapDiff<>(put, removed);
+        }
+
+        @Override
+        void revert() {
+
+            this.originals.forEach((key, original) -> {
+                if (original == ABSENT) {
+                    this.map.remove(key);
+                } else if (!this.map.containsKey(key) || this.map.get(key) != original) {
+                    this.map.put(key, original);
+                }
+            });
+            this.reset();
+        }
+
+        @Override
+        void reset() {
+
+            this.originals.clear();
+        }
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static final class SetTracker extends ContainerTracker {
+
+        private final Set<Object>          set;
+        private final Map<Object, Boolean> originals = new LinkedHashMap<>();
+
+        private SetTracker(Set<?> set) {
+
+            this.set = (Set<Object>) set;
+        }
+
+        @Override
+        void touch(Object element) {
+
+            this.originals.computeIfAbsent(element, this.set::contains);
+        }
+
+        @Override
+        void touchAll() {
+
+            this.set.forEach(element -> this.originals.putIfAbsent(element, true));
+        }
+
+        @Override
+        ContainerDiff diff() {
+
+            List<Object> added   = new ArrayList<>();
+            List<Object> removed = new ArrayList<>();
+
+            this.originals.forEach((element, wasPresent) -> {
+                boolean present = this.set.contains(element);
+                if (present && !wasPresent) added.add(element);
+                if (!present && wasPresent) removed.add(element);
+            });
+
+            return new CollectionDiff<>(added, removed);
+        }
+
+        @Override
+        void revert() {
+
+            this.originals.forEach((element, wasPresent) -> {
+                if (wasPresent) {
+                    this.set.add(element);
+                } else {
+                    this.set.remove(element);
+                }
+            });
+            this.reset();
+        }
+
+        @Override
+        void reset() {
+
+            this.originals.clear();
+        }
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static final class SnapshotTracker extends ContainerTracker {
+
+        /**
+         * The maximum number of insertions and deletions looked for when splitting the changes of a list into windows,
+         * which bounds the cost of a diff to {@code O((n + m) * MAX_EDITS)}.
+         */
+        private static final int MAX_EDITS = 512;
+
+        private final Collection<Object> collection;
+        private       List<Object>       snapshot;
+
+        private SnapshotTracker(Collection<?> collection) {
+
+            this.collection = (Collection<Object>) collection;
+        }
+
+        @Override
+        void touch(Object target) {
+
+            this.touchAll();
+        }
+
+        @Override
+        void touchAll() {
+
+            if (this.snapshot == null) {
+                this.snapshot = new ArrayList<>(this.collection);
+            }
+        }
+
+        @Override
+        ContainerDiff diff() {
+
+            List<Object> original = this.snapshot == null ? List.of() : this.snapshot;
+            List<Object> current  = this.snapshot == null ? List.of() : new ArrayList<>(this.collection);
+
+            if (!(this.collection instanceof List)) {
+                return this.unorderedDiff(original, current);
+            }
+
+            return listDiff(original, current);
+        }
+
+        /**
+         * Compute the windows of the changes made to a list. The unchanged prefix and suffix are skipped, and the
+         * remaining region is split into windows using the shortest edit script between the original and the current
+         * elements (see Myers, "An O(ND) Difference Algorithm and Its Variations"). Regions requiring more than
+         * {@link #MAX_EDITS} insertions and deletions are reported as a single window, bounding the cost of a diff.
+         */
+        private static ListDiff<Object> listDiff(List<Object> original, List<Object> current) {
+
+            int prefix = 0;
+            int limit  = Math.min(original.size(), current.size());
+            while (prefix < limit && Objects.equals(original.get(prefix), current.get(prefix))) {
+                prefix++;
+            }
+
+            int suffix = 0;
+            while (suffix < limit - prefix && Objects.equals(
+                    original.get(original.size() - 1 - suffix),
+                    current.get(current.size() - 1 - suffix)
+            )) {
+                suffix++;
+            }
+
+            List<Object> removed = original.subList(prefix, original.size() - suffix);
+            List<Object> added   = current.subList(prefix, current.size() - suffix);
+
+            List<ListDiff.Window<Object>> windows = new ArrayList<>();
+            if (!removed.isEmpty() || !added.isEmpty()) {
+                addWindows(windows, prefix, removed, added);
+            }
+            return new ListDiff<>(windows);
+        }
+
+        private static void addWindows(List<ListDiff.Window<Object>> windows, int offset, List<Object> original, List<Object> current) {
+
+            int n   = original.size();
+            int m   = current.size();
+            int max = Math.min(n + m, MAX_EDITS);
+
+            // The furthest position reached on each diagonal k = x - y, stored at k + max + 1.
+            int[]       furthest = new int[2 * max + 3];
+            List<int[]> trace    = new ArrayList<>();
+
+            for (int d = 0; d <= max; d++) {
+                trace.add(Arrays.copyOfRange(furthest, max - d, max + d + 3));
+
+                for (int k = -d; k <= d; k += 2) {
+                    boolean down = k == -d || (k != d && furthest[max + k] < furthest[max + k + 2]);
+                    int     x    = down ? furthest[max + k + 2] : furthest[max + k] + 1;
+                    int     y    = x - k;
+
+                    while (x < n && y < m && Objects.equals(original.get(x), current.get(y))) {
+                        x++;
+                        y++;
+                    }
+                    furthest[max + k + 1] = x;
+
+                    if (x >= n && y >= m) {
+                        splitWindows(windows, offset, original, current, trace, d);
+                        return;
+                    }
+                }
+            }
+
+            windows.add(new ListDiff.Window<>(offset, original, current));
+        }
+
+        /**
+         * Walk the edits found by {@link #addWindows(List, int, List, List)} back from the end of both lists, then
+         * group the consecutive ones into windows.
+         */
+        private static void splitWindows(List<ListDiff.Window<Object>> windows, int offset, List<Object> original, List<Object> current, List<int[]> trace, int edits) {
+
+            boolean[] removed = new boolean[original.size()];
+            boolean[] added   = new boolean[current.size()];
+
+            int x = original.size();
+            int y = current.size();
+            for (int d = edits; d > 0; d--) {
+                // The furthest positions before the d-th edit, stored at k + d + 1.
+                int[]   previous = trace.get(d);
+                int     k        = x - y;
+                boolean down     = k == -d || (k != d && previous[k + d] < previous[k + d + 2]);
+                int     fromK    = down ? k + 1 : k - 1;
+                int     fromX    = previous[fromK + d + 1];
+                int     fromY    = fromX - fromK;
+
+                if (down) {
+                    added[fromY] = true;
+                } else {
+                    removed[fromX] = true;
+                }
+                x = fromX;
+                y = fromY;
+            }
+
+            int i = 0;
+            int j = 0;
+            while (i < original.size() || j < current.size()) {
+                if (i < original.size() && j < current.size() && !removed[i] && !added[j]) {
+                    i++;
+                    j++;
+                    continue;
+                }
+
+                int          from          = offset + j;
+                List<Object> windowRemoved = new ArrayList<>();
+                List<Object> windowAdded   = new ArrayList<>();
+                while ((i < original.size() && removed[i]) || (j < current.size() && added[j])) {
+                    if (i < original.size() && removed[i]) {
+                        windowRemoved.add(original.get(i++));
+                    } else {
+                        windowAdded.add(current.get(j++));
+                    }
+                }
+                windows.add(new ListDiff.Window<>(from, windowRemoved, windowAdded));
+            }
+        }
+
+        private ContainerDiff unorderedDiff(List<Object> original, List<Object> current) {
+
+            // Multiset difference: each occurrence of an element cancels one occurrence on the other side.
+            Map<Object, Integer> counts = new HashMap<>();
+            original.forEach(element -> counts.merge(element, 1, Integer::sum));
+
+            List<Object> added = new ArrayList<>();
+            for (Object element : current) {
+                Integer count = counts.get(element);
+                if (count == null || count == 0) {
+                    added.add(element);
+                } else {
+                    counts.put(element, count - 1);
+                }
+            }
+
+            List<Object> removed = new ArrayList<>();
+            for (Object element : original) {
+                Integer count = counts.get(element);
+                if (count != null && count > 0) {
+                    removed.add(element);
+                    counts.put(element, count - 1);
+                }
+            }
+
+            return new CollectionDiff<>(added, removed);
+        }
+
+        @Override
+        void revert() {
+
+            if (this.snapshot == null) return;
+
+            if (this.collection instanceof List<Object> list && this.diff() instanceof ListDiff<?> diff) {
+                // Only rewrite the windows that changed, from the last one so that the positions of the others hold.
+                for (ListDiff.Window<?> window : diff.windows().reversed()) {
+                    list.subList(window.from(), window.from() + window.added().size()).clear();
+                    list.addAll(window.from(), window.removed());
+                }
+            } else {
+                this.collection.clear();
+                this.collection.addAll(this.snapshot);
+            }
+            this.reset();
+        }
+
+        @Override
+        void reset() {
+
+            this.snapshot = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,246 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.interfaces.State;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Scans looking for the states which have been modified themselves, either among every state of a
+ * {@link ClassProxyFactory} or among the states reachable from a root state.
+ * <p>
+ * As dirtiness is propagated upward, a graph scan only descends into dirty children: clean subgraphs are pruned without
+ * being visited. In {@link TraversalMode#PARALLEL} mode, scans are split into {@link RecursiveTask}s run by the common
+ * {@link ForkJoinPool}: the states of a factory are split in ranges of at most {@link #THRESHOLD} states, and a graph
+ * scan forks half of its pending states (child properties and container elements) whenever it holds more than
+ * {@link #THRESHOLD} of them.
+ */
+final class DirtyScan {
+
+    /**
+     * The number of states below which a scan is not split.
+     */
+    static final int THRESHOLD = 2048;
+
+    private final boolean   parallel;
+    private final boolean   stopOnFirst;
+    private final LongAdder visited = new LongAdder();
+    private volatile boolean found;
+
+    private DirtyScan(boolean parallel, boolean stopOnFirst) {
+
+        this.parallel    = parallel;
+        this.stopOnFirst = stopOnFirst;
+    }
+
+    /**
+     * Collect the states which have been modified themselves among the provided states.
+     *
+     * @param states
+     *         The states, without duplicates.
+     * @param mode
+     *         The {@link TraversalMode} of the factory.
+     * @param metrics
+     *         The {@link ProxyMetrics} of the factory, or {@code null} if metrics are not enabled.
+     *
+     * @return The dirty states, in no particular order.
+     */
+    static List<State<?>> collect(List<StateNode<?>> states, TraversalMode mode, ProxyMetrics metrics) {
+
+        DirtyScan scan = new DirtyScan(mode == TraversalMode.PARALLEL && states.size() > THRESHOLD, false);
+        return scan.record("getDirtyStates", null, metrics, () -> scan.run(new RangeTask(scan, states, 0, states.size())));
+    }
+
+    /**
+     * Check if any of the provided states has been modified itself, stopping the scan as soon as one is found.
+     *
+     * @param states
+     *         The states, without duplicates.
+     * @param mode
+     *         The {@link TraversalMode} of the factory.
+     * @param metrics
+     *         The {@link ProxyMetrics} of the factory, or {@code null} if metrics are not enabled.
+     *
+     * @return {@code true} if a dirty state has been found, {@code false} otherwise.
+     */
+    static boolean any(List<StateNode<?>> states, TraversalMode mode, ProxyMetrics metrics) {
+
+        DirtyScan scan = new DirtyScan(mode == TraversalMode.PARALLEL && states.size() > THRESHOLD, true);
+        return !scan.record("hasDirtyStates", null, metrics, () -> scan.run(new RangeTask(scan, states, 0, states.size())))
+                    .isEmpty();
+    }
+
+    /**
+     * Collect the states which have been modified themselves among the provided state and the states reachable from
+     * it through active links.
+     *
+     * @param root
+     *         The state to start from.
+     * @param mode
+     *         The {@link TraversalMode} of the factory.
+     * @param metrics
+     *         The {@link ProxyMetrics} of the factory, or {@code null} if metrics are not enabled.
+     *
+     * @return The dirty states, in no particular order.
+     */
+    static List<State<?>> collect(StateNode<?> root, TraversalMode mode, ProxyMetrics metrics) {
+
+        if (!root.isMarkedDirty()) return List.of();
+
+        DirtyScan scan      = new DirtyScan(mode == TraversalMode.PARALLEL, false);
+        String    className = root.getInstance().getClass().getName();
+        if (!scan.parallel) return scan.record("getDirtyStates", className, metrics, () -> scan.walk(root));
+
+        // The size of the graph is unknown: graph tasks only fork once they hold enough pending states.
+        IdentityMap<StateNode<?>> seen    = new ConcurrentIdentityMap<>();
+        Deque<StateNode<?>>       pending = new ArrayDeque<>();
+        seen.put(root, root);
+        pending.push(root);
+        return scan.record("getDirtyStates", className, metrics, () -> scan.run(new GraphTask(scan, pending, seen)));
+    }
+
+    private List<StateNode<?>> walk(StateNode<?> root) {
+
+        List<StateNode<?>> dirty = new ArrayList<>();
+        try (GraphWalk walk = root.getFactory().startWalk()) {
+            walk.push(root);
+            for (StateNode<?> node = walk.poll(); node != null; node = walk.poll()) {
+                if (node.isSelfDirty()) dirty.add(node);
+                walk.pushDirtyChildren(node);
+            }
+            this.visited.add(walk.visitedCount());
+        }
+        return dirty;
+    }
+
+    private List<StateNode<?>> run(RecursiveTask<List<StateNode<?>>> task) {
+
+        return this.parallel ? ForkJoinPool.commonPool().invoke(task) : task.invoke();
+    }
+
+    private List<State<?>> record(String operation, String className, ProxyMetrics metrics, Supplier<List<StateNode<?>>> body) {
+
+        DirtyScanEvent event = new DirtyScanEvent();
+        event.begin();
+        List<StateNode<?>> dirty = body.get();
+        event.end();
+
+        int visited = (int) Math.min(this.visited.sum(), Integer.MAX_VALUE);
+        if (metrics != null) metrics.recordDirtyCheck(visited);
+        if (event.shouldCommit()) {
+            event.operation    = operation;
+            event.className    = className;
+            event.nodesVisited = visited;
+            event.commit();
+        }
+        return Collections.unmodifiableList(dirty);
+    }
+
+    /**
+     * Scans a range of a list of states, splitting it in halves while it is larger than {@link #THRESHOLD}.
+     */
+    private static final class RangeTask extends RecursiveTask<List<StateNode<?>>> {
+
+        private final DirtyScan          scan;
+        private final List<StateNode<?>> states;
+        private final int                from;
+        private final int                to;
+
+        private RangeTask(DirtyScan scan, List<StateNode<?>> states, int from, int to) {
+
+            this.scan   = scan;
+            this.states = states;
+            this.from   = from;
+            this.to     = to;
+        }
+
+        @Override
+        protected List<StateNode<?>> compute() {
+
+            if (this.scan.parallel && this.to - this.from > THRESHOLD) {
+                int       middle = (this.from + this.to) >>> 1;
+                RangeTask left   = new RangeTask(this.scan, this.states, this.from, middle);
+                left.fork();
+
+                List<StateNode<?>> dirty = new ArrayList<>(new RangeTask(this.scan, this.states, middle, this.to).compute());
+                dirty.addAll(left.join());
+                return dirty;
+            }
+
+            List<StateNode<?>> dirty = new ArrayList<>();
+            int                index = this.from;
+            while (index < this.to && !this.scan.found) {
+                StateNode<?> node = this.states.get(index++);
+                if (node.isSelfDirty()) {
+                    dirty.add(node);
+                    if (this.scan.stopOnFirst) this.scan.found = true;
+                }
+            }
+            this.scan.visited.add(index - this.from);
+            return dirty;
+        }
+
+    }
+
+    /**
+     * Walks the states reachable from its pending states in parallel, only descending into dirty children, and forking
+     * half of its pending states whenever it holds more than {@link #THRESHOLD} of them. Sequential walks use a
+     * {@link GraphWalk} instead.
+     */
+    private static final class GraphTask extends RecursiveTask<List<StateNode<?>>> implements Consumer<StateNode<?>> {
+
+        private final DirtyScan                 scan;
+        private final Deque<StateNode<?>>       pending;
+        private final IdentityMap<StateNode<?>> seen;
+
+        private GraphTask(DirtyScan scan, Deque<StateNode<?>> pending, IdentityMap<StateNode<?>> seen) {
+
+            this.scan    = scan;
+            this.pending = pending;
+            this.seen    = seen;
+        }
+
+        @Override
+        protected List<StateNode<?>> compute() {
+
+            List<StateNode<?>> dirty   = new ArrayList<>();
+            List<GraphTask>    forks   = new ArrayList<>();
+            int                visited = 0;
+
+            while (!this.pending.isEmpty()) {
+                if (this.pending.size() > THRESHOLD) {
+                    Deque<StateNode<?>> half = new ArrayDeque<>();
+                    for (int i = this.pending.size() / 2; i > 0; i--) half.push(this.pending.pollLast());
+
+                    GraphTask fork = new GraphTask(this.scan, half, this.seen);
+                    fork.fork();
+                    forks.add(fork);
+                }
+
+                StateNode<?> node = this.pending.pop();
+                visited++;
+                if (node.isSelfDirty()) dirty.add(node);
+                node.forEachChild(this);
+            }
+            this.scan.visited.add(visited);
+
+            for (GraphTask fork : forks) dirty.addAll(fork.join());
+            return dirty;
+        }
+
+        @Override
+        public void accept(StateNode<?> child) {
+
+            // Clean children have no dirty descendant, and each state is only visited once.
+            if (child.isMarkedDirty() && this.seen.putIfAbsent(child, child) == null) {
+                this.pending.push(child);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,30 @@
+package fr.anisekai.proxy;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event recorded when a state is checked for modifications, either through
+ * {@link fr.anisekai.proxy.interfaces.State#isDirty()} or
+ * {@link fr.anisekai.proxy.interfaces.State#getDifferentialState()}, or when the modified states of a factory are
+ * collected (see {@link ClassProxyFactory#getDirtyStates()}). Only scans lasting longer than the threshold are
+ * recorded by default.
+ */
+@Name("fr.anisekai.proxy.DirtyScan")
+@Label("Dirty Scan")
+@Category("Deep Proxy")
+@Description("Check of the modifications of a state")
+@Threshold("1 ms")
+@StackTrace(false)
+final class DirtyScanEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Class")
+    String className;
+
+    @Label("Nodes Visited")
+    @Description("The number of states whose dirtiness has been checked")
+    int nodesVisited;
+
+}
@@ -0,0 +1,18 @@
+package fr.anisekai.proxy;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event recorded when a {@link ClassProxyFactory} is closed, releasing every state it manages.
+ */
+@Name("fr.anisekai.proxy.FactoryClose")
+@Label("Proxy Factory Close")
+@Category("Deep Proxy")
+@Description("Release of every state managed by a factory")
+@StackTrace(false)
+final class FactoryCloseEvent extends Event {
+
+    @Label("States Released")
+    int statesReleased;
+
+}
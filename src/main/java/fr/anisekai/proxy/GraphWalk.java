@@ -0,0 +1,135 @@
+package fr.anisekai.proxy;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * An iterative walk over the states of a proxy graph, using an explicit stack of pending states and a set of the states
+ * already visited (compared by identity), so that walks use a bounded amount of call stack whatever the depth of the
+ * graph, and visit each state once even if the graph has cycles.
+ * <p>
+ * Walks are obtained from their {@link ClassProxyFactory} and returned to it when closed, so that walking a graph does
+ * not allocate once the stack and the set have grown: each factory keeps one idle walk, and a walk started while it is
+ * in use (by another thread, or within another walk) is allocated. Sets which have grown past {@link #MAX_RETAINED}
+ * states are dropped rather than kept for the next, probably smaller, walk.
+ *
+ * <pre>{@code
+ * try (GraphWalk walk = factory.startWalk()) {
+ *     walk.push(root);
+ *     for (StateNode<?> node = walk.poll(); node != null; node = walk.poll()) {
+ *         walk.pushDirtyChildren(node);
+ *     }
+ * }
+ * }</pre>
+ */
+final class GraphWalk implements AutoCloseable {
+
+    private static final int MAX_RETAINED = 4096;
+
+    private final AtomicReference<GraphWalk> idle;
+    private final Deque<StateNode<?>>        pending     = new ArrayDeque<>();
+    private final Consumer<StateNode<?>>     pushAny     = this::push;
+    private final Consumer<StateNode<?>>     pushIfDirty = child -> {
+        if (child.isMarkedDirty()) this.push(child);
+    };
+    private       Set<StateNode<?>>          visited     = newVisitedSet();
+
+    private GraphWalk(AtomicReference<GraphWalk> idle) {
+
+        this.idle = idle;
+    }
+
+    /**
+     * Start a walk, reusing the idle walk of a factory if there is one.
+     *
+     * @param idle
+     *         The idle walk of the factory, which is taken until the returned walk is closed.
+     *
+     * @return A {@link GraphWalk}, without any pending or visited state.
+     */
+    static GraphWalk start(AtomicReference<GraphWalk> idle) {
+
+        GraphWalk walk = idle.getAndSet(null);
+        return walk == null ? new GraphWalk(idle) : walk;
+    }
+
+    private static Set<StateNode<?>> newVisitedSet() {
+
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Schedule a state to be visited, unless it has already been scheduled by this walk.
+     *
+     * @param node
+     *         The state.
+     *
+     * @return {@code true} if the state has been scheduled, {@code false} if it already was.
+     */
+    boolean push(StateNode<?> node) {
+
+        if (!this.visited.add(node)) return false;
+        this.pending.push(node);
+        return true;
+    }
+
+    /**
+     * Schedule the children of a state to be visited (see {@link StateNode#forEachChild(Consumer)}).
+     *
+     * @param node
+     *         The state.
+     */
+    void pushChildren(StateNode<?> node) {
+
+        node.forEachChild(this.pushAny);
+    }
+
+    /**
+     * Schedule the dirty children of a state to be visited (see {@link StateNode#forEachChild(Consumer)}). As
+     * dirtiness is propagated upward, clean children have no dirty descendant either.
+     *
+     * @param node
+     *         The state.
+     */
+    void pushDirtyChildren(StateNode<?> node) {
+
+        node.forEachChild(this.pushIfDirty);
+    }
+
+    /**
+     * Retrieve the next state to visit, depth-first.
+     *
+     * @return The state, or {@code null} if the walk is over.
+     */
+    StateNode<?> poll() {
+
+        return this.pending.poll();
+    }
+
+    /**
+     * Retrieve the number of states scheduled by this walk so far.
+     *
+     * @return The number of states.
+     */
+    int visitedCount() {
+
+        return this.visited.size();
+    }
+
+    /**
+     * Return this walk to its factory, forgetting every state it holds.
+     */
+    @Override
+    public void close() {
+
+        this.pending.clear();
+        if (this.visited.size() > MAX_RETAINED) {
+            this.visited = newVisitedSet();
+        } else {
+            this.visited.clear();
+        }
+        this.idle.set(this);
+    }
+
+}
@@ -0,0 +1,108 @@
+package fr.anisekai.proxy;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A map comparing its keys by identity, used as the registries of a {@link ClassProxyFactory}. Its implementation
+ * depends on the {@link ThreadingMode} of the factory.
+ *
+ * @param <V>
+ *         The type of the values.
+ *
+ * @see ConcurrentIdentityMap
+ * @see LocalIdentityMap
+ */
+interface IdentityMap<V> {
+
+    /**
+     * Create the {@link IdentityMap} suited to the provided {@link ThreadingMode}.
+     *
+     * @param mode
+     *         The {@link ThreadingMode} of the factory.
+     * @param <V>
+     *         The type of the values.
+     *
+     * @return A new {@link IdentityMap}.
+     */
+    static <V> IdentityMap<V> of(ThreadingMode mode) {
+
+        return mode == ThreadingMode.CONFINED ? new LocalIdentityMap<>() : new ConcurrentIdentityMap<>();
+    }
+
+    /**
+     * Retrieve the value associated to the provided key.
+     *
+     * @param key
+     *         The key, compared by identity.
+     *
+     * @return The value, or {@code null} if the key is not present.
+     */
+    @Nullable
+    V get(Object key);
+
+    /**
+     * Associate a value to the provided key, replacing any previous value.
+     *
+     * @param key
+     *         The key, compared by identity.
+     * @param value
+     *         The value.
+     */
+    void put(Object key, V value);
+
+    /**
+     * Associate a value to the provided key, unless the key is already present.
+     *
+     * @param key
+     *         The key, compared by identity.
+     * @param value
+     *         The value.
+     *
+     * @return The value already associated to the key, or {@code null} if the provided value has been inserted.
+     */
+    @Nullable
+    V putIfAbsent(Object key, V value);
+
+    /**
+     * Associate each key to the value at the same position.
+     *
+     * @param keys
+     *         The keys, compared by identity.
+     * @param values
+     *         The values, in the same order as the keys.
+     * @param onlyIfAbsent
+     *         Whether keys already present should keep their current value.
+     *
+     * @return The values previously associated to each key (or {@code null} for keys that were absent), in the same
+     *         order as the keys.
+     */
+    List<V> putAll(List<?> keys, List<? extends V> values, boolean onlyIfAbsent);
+
+    /**
+     * Remove the provided key, but only if it is still associated to the provided value.
+     *
+     * @param key
+     *         The key, compared by identity.
+     * @param value
+     *         The value expected to be associated to the key, compared by identity.
+     *
+     * @return {@code true} if the key has been removed, {@code false} otherwise.
+     */
+    boolean remove(Object key, V value);
+
+    /**
+     * Retrieve a snapshot of the distinct values of this map. A value registered under several keys is only returned
+     * once.
+     *
+     * @return The values.
+     */
+    List<V> values();
+
+    /**
+     * Remove every entry of this map.
+     */
+    void clear();
+
+}
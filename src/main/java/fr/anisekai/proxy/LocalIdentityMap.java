@@ -0,0 +1,77 @@
+package fr.anisekai.proxy;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * An {@link IdentityMap} without any synchronization, used as the registries of a {@link ClassProxyFactory} confined
+ * to a single thread (see {@link ThreadingMode#CONFINED}).
+ *
+ * @param <V>
+ *         The type of the values.
+ */
+final class LocalIdentityMap<V> implements IdentityMap<V> {
+
+    private final IdentityHashMap<Object, V> map = new IdentityHashMap<>();
+
+    @Override
+    @Nullable
+    public V get(Object key) {
+
+        return this.map.get(key);
+    }
+
+    @Override
+    public void put(Object key, V value) {
+
+        this.map.put(key, Objects.requireNonNull(value));
+    }
+
+    @Override
+    @Nullable
+    public V putIfAbsent(Object key, V value) {
+
+        return this.map.putIfAbsent(key, Objects.requireNonNull(value));
+    }
+
+    @Override
+    public List<V> putAll(List<?> keys, List<? extends V> values, boolean onlyIfAbsent) {
+
+        int size = keys.size();
+        if (values.size() != size) {
+            throw new IllegalArgumentException("Keys and values must have the same size");
+        }
+
+        List<V> previous = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            V value = Objects.requireNonNull(values.get(i));
+            previous.add(onlyIfAbsent ? this.map.putIfAbsent(keys.get(i), value) : this.map.put(keys.get(i), value));
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object key, V value) {
+
+        // IdentityHashMap.remove(key, value) would compare the values with equals().
+        if (this.map.get(key) != value) return false;
+        this.map.remove(key);
+        return true;
+    }
+
+    @Override
+    public List<V> values() {
+
+        Set<V> values = Collections.newSetFromMap(new IdentityHashMap<>());
+        values.addAll(this.map.values());
+        return List.copyOf(values);
+    }
+
+    @Override
+    public void clear() {
+
+        this.map.clear();
+    }
+
+}
@@ -0,0 +1,112 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.interfaces.ProxyPolicy;
+import fr.anisekai.proxy.reflection.Property;
+
+import java.util.Arrays;
+
+/**
+ * The decisions of the {@link ProxyPolicy} of a {@link ClassProxyFactory} for a single {@link Property}, shared by
+ * every proxy of the factory and by the containers held by the property.
+ * <p>
+ * When the policy is {@linkplain ProxyPolicy#isClassBased() class based}, each decision is cached per class of value,
+ * so that reading a property whose values always have the same few classes does not evaluate the policy anymore. The
+ * cache is an immutable array replaced on each new class (lost updates between threads only cost an evaluation), and
+ * is bounded: classes seen once it is full are evaluated every time.
+ */
+final class PropertyPolicy {
+
+    private static final int   MAX_TYPES = 8;
+    private static final Cache EMPTY     = new Cache(new Class<?>[0], new Decision[0]);
+
+    private final    Property    property;
+    private final    ProxyPolicy policy;
+    private final    boolean     cacheable;
+    private volatile Cache       cache = EMPTY;
+
+    PropertyPolicy(Property property, ProxyPolicy policy) {
+
+        this.property  = property;
+        this.policy    = policy;
+        this.cacheable = policy.isClassBased();
+    }
+
+    /**
+     * Retrieve the {@link Property} of this {@link PropertyPolicy}.
+     *
+     * @return A {@link Property}.
+     */
+    Property getProperty() {
+
+        return this.property;
+    }
+
+    /**
+     * Decide how a value read from the property (or from one of its containers) must be wrapped.
+     *
+     * @param value
+     *         The value, which must not be {@code null}.
+     *
+     * @return The {@link Decision}.
+     */
+    Decision decide(Object value) {
+
+        Class<?> type  = value.getClass();
+        Cache    cache = this.cache;
+
+        Class<?>[] types = cache.types();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) return cache.decisions()[i];
+        }
+
+        Decision decision = this.evaluate(value);
+        if (this.cacheable && types.length < MAX_TYPES) {
+            this.cache = cache.with(type, decision);
+        }
+        return decision;
+    }
+
+    private Decision evaluate(Object value) {
+
+        if (this.policy.shouldProxy(this.property, value)) return Decision.PROXY;
+        if (this.policy.shouldProxyContainer(value)) return Decision.CONTAINER;
+        return Decision.VALUE;
+    }
+
+    /**
+     * How a value must be wrapped.
+     */
+    enum Decision {
+
+        /**
+         * The value is returned as is.
+         */
+        VALUE,
+
+        /**
+         * The value is wrapped in a class proxy.
+         */
+        PROXY,
+
+        /**
+         * The value is wrapped in a container proxy.
+         */
+        CONTAINER
+
+    }
+
+    private record Cache(Class<?>[] types, Decision[] decisions) {
+
+        Cache with(Class<?> type, Decision decision) {
+
+            Class<?>[] types     = Arrays.copyOf(this.types, this.types.length + 1);
+            Decision[] decisions = Arrays.copyOf(this.decisions, this.decisions.length + 1);
+
+            types[types.length - 1]         = type;
+            decisions[decisions.length - 1] = decision;
+            return new Cache(types, decisions);
+        }
+
+    }
+
+}
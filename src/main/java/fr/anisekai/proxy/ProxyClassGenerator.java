@@ -0,0 +1,185 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.interfaces.Interceptable;
+import fr.anisekai.proxy.interfaces.ProxyInterceptor;
+import fr.anisekai.proxy.interfaces.State;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.FieldAccessor;
+import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.matcher.ElementMatchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Generates the ByteBuddy subclasses used as proxies, either at runtime or ahead of time.
+ * <p>
+ * Proxy classes generated ahead of time (typically by the {@code fr.anisekai.deep-proxy} Gradle plugin) are named after
+ * their original class using {@link #getPregeneratedName(Class)} and packaged next to it. At runtime,
+ * {@link #findPregenerated(Class)} looks them up in the class loader of the original class, allowing to skip bytecode
+ * generation entirely.
+ */
+public final class ProxyClassGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyClassGenerator.class);
+
+    /**
+     * The suffix appended to the name of a class to obtain the name of its pregenerated proxy class.
+     */
+    public static final String PREGENERATED_SUFFIX = "$DeepProxy";
+
+    private ProxyClassGenerator() {}
+
+    /**
+     * Retrieve the name under which the pregenerated proxy class of the provided class is expected to be found.
+     *
+     * @param origin
+     *         The class being proxied.
+     *
+     * @return The binary name of the pregenerated proxy class.
+     */
+    public static String getPregeneratedName(Class<?> origin) {
+
+        return origin.getName() + PREGENERATED_SUFFIX;
+    }
+
+    /**
+     * Check if a proxy class can be generated for the provided class. This requires a concrete, non-final class that
+     * is not an inner or local class and which exposes a non-private no-args constructor.
+     *
+     * @param type
+     *         The class to check.
+     *
+     * @return {@code true} if the class can be proxied, {@code false} otherwise.
+     */
+    public static boolean isProxyable(Class<?> type) {
+
+        int modifiers = type.getModifiers();
+
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum() || type.isRecord()) return false;
+        if (type.isAnonymousClass() || type.isLocalClass() || type.isSynthetic()) return false;
+        if (type.isMemberClass() && !Modifier.isStatic(modifiers)) return false;
+        if (Modifier.isFinal(modifiers) || Modifier.isAbstract(modifiers) || Modifier.isPrivate(modifiers)) return false;
+        if (Interceptable.class.isAssignableFrom(type)) return false;
+
+        return Arrays.stream(type.getDeclaredConstructors())
+                     .filter(constructor -> constructor.getParameterCount() == 0)
+                     .map(Constructor::getModifiers)
+                     .anyMatch(constructorModifiers -> !Modifier.isPrivate(constructorModifiers));
+    }
+
+    /**
+     * Find the pregenerated proxy class of the provided class, if one has been packaged alongside it.
+     *
+     * @param origin
+     *         The class being proxied.
+     *
+     * @return An {@link Optional} containing the pregenerated proxy class, or an empty {@link Optional} if none could
+     *         be found or if the one found is not compatible with this version of the library.
+     */
+    public static Optional<Class<?>> findPregenerated(Class<?> origin) {
+
+        ClassLoader loader = origin.getClassLoader();
+        if (loader == null) return Optional.empty();
+
+        try {
+            Class<?> candidate = Class.forName(getPregeneratedName(origin), false, loader);
+            if (candidate.getSuperclass() == origin && Interceptable.class.isAssignableFrom(candidate)) {
+                LOGGER.debug("Using pregenerated proxy class for {}", origin.getName());
+                return Optional.of(candidate);
+            }
+            LOGGER.warn("Ignoring incompatible pregenerated proxy class {}", candidate.getName());
+        } catch (ClassNotFoundException | LinkageError ignored) {
+            // No pregenerated class, it will be generated at runtime.
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Generate and load the proxy class of the provided class in its class loader.
+     *
+     * @param origin
+     *         The class being proxied.
+     *
+     * @return The generated proxy class.
+     */
+    public static Class<?> generate(Class<?> origin) {
+
+        try (DynamicType.Unloaded<?> unloaded = make(origin)) {
+            return load(origin, unloaded);
+        }
+    }
+
+    /**
+     * Generate the proxy class of the provided class, without loading it.
+     *
+     * @param origin
+     *         The class being proxied.
+     *
+     * @return The unloaded proxy class, giving access to its bytecode.
+     */
+    static DynamicType.Unloaded<?> make(Class<?> origin) {
+
+        return builder(origin).make();
+    }
+
+    /**
+     * Load a proxy class generated by {@link #make(Class)} in the class loader of its original class.
+     *
+     * @param origin
+     *         The class being proxied.
+     * @param unloaded
+     *         The unloaded proxy class.
+     *
+     * @return The loaded proxy class.
+     */
+    static Class<?> load(Class<?> origin, DynamicType.Unloaded<?> unloaded) {
+
+        return unloaded.load(origin.getClassLoader(), ClassLoadingStrategy.Default.INJECTION).getLoaded();
+    }
+
+    /**
+     * Generate the proxy class of the provided class under its pregenerated name (see
+     * {@link #getPregeneratedName(Class)}) and write it as a class file in the provided directory.
+     *
+     * @param origin
+     *         The class being proxied.
+     * @param directory
+     *         The root directory of the class files, in which the package directories will be created.
+     *
+     * @throws IOException
+     *         If the class file could not be written.
+     */
+    public static void pregenerate(Class<?> origin, File directory) throws IOException {
+
+        try (DynamicType.Unloaded<?> unloaded = builder(origin).name(getPregeneratedName(origin)).make()) {
+            unloaded.saveIn(directory);
+        }
+    }
+
+    private static DynamicType.Builder<?> builder(Class<?> origin) {
+
+        // Registration order matters: ByteBuddy gives precedence to the latest matching registration, so the accessors
+        // of the interceptor field and writeReplace must come after the catch-all delegation.
+        return new ByteBuddy()
+                .subclass(origin)
+                .implement(State.class)
+                .method(ElementMatchers.not(ElementMatchers.isDeclaredBy(Interceptable.class)))
+                .intercept(MethodDelegation.to(StaticMasterInterceptor.class))
+                .defineField(Interceptable.INTERCEPTOR_FIELD, ProxyInterceptor.class, Visibility.PRIVATE)
+                .implement(Interceptable.class)
+                .intercept(FieldAccessor.ofField(Interceptable.INTERCEPTOR_FIELD))
+                .defineMethod("writeReplace", Object.class, Visibility.PRIVATE)
+                .intercept(MethodDelegation.to(ClassProxyFactory.WriteReplaceInterceptor.class));
+    }
+
+}
@@ -0,0 +1,302 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.interfaces.Dirtyable;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Collection} proxy calling the proxied collection directly, instead of going through a
+ * {@link java.lang.reflect.Proxy} and reflective invocations.
+ * <p>
+ * Elements read from the collection are wrapped by the {@link ContainerProxyHandler} holding its state, and values
+ * provided to the collection are unwrapped before being stored. Mutators report the elements they are about to touch
+ * to the handler before calling the collection, so that their original state is recorded, and report them again once
+ * the collection has applied the mutation, if its result tells that the collection changed: only then is the
+ * container marked as dirty (a single field write once it is already dirty) and the change published.
+ * <p>
+ * This class is also used as a view over a part of a proxied container (such as the values of a map), sharing the
+ * handler of the container: {@link #touch(Object)}, {@link #touched(Object)}, {@link #wrap(Object)} and
+ * {@link #unwrap(Object)} can be overridden to adapt how elements of the view map to the container.
+ *
+ * @param <E>
+ *         The type of the elements.
+ */
+class ProxyCollection<E> implements Collection<E>, Dirtyable, Serializable {
+
+    final Collection<E>         delegate;
+    final ContainerProxyHandler handler;
+
+    ProxyCollection(Collection<E> delegate, ContainerProxyHandler handler) {
+
+        this.delegate = delegate;
+        this.handler  = handler;
+    }
+
+    /**
+     * Record a mutation about to add or remove the provided raw element.
+     *
+     * @param element
+     *         The raw element.
+     */
+    void touch(Object element) {
+
+        this.handler.mutate(element);
+    }
+
+    /**
+     * Report a mutation which added or removed the provided raw element, once applied and only if it changed the
+     * collection.
+     *
+     * @param element
+     *         The raw element.
+     */
+    void touched(Object element) {
+
+        this.handler.mutated(element);
+    }
+
+    /**
+     * Wrap a raw element read from the collection.
+     *
+     * @param element
+     *         The raw element.
+     *
+     * @return The element to expose.
+     */
+    @SuppressWarnings("unchecked")
+    E wrap(Object element) {
+
+        return (E) this.handler.wrapElement(element);
+    }
+
+    /**
+     * Unwrap a value provided to the collection.
+     *
+     * @param value
+     *         The value, which may be a proxy.
+     *
+     * @return The raw value.
+     */
+    Object unwrap(Object value) {
+
+        return this.handler.unwrapElement(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    final Collection<E> unwrapAll(Collection<?> values) {
+
+        List<Object> raw = new ArrayList<>(values.size());
+        for (Object value : values) {
+            raw.add(this.unwrap(value));
+        }
+        return (Collection<E>) raw;
+    }
+
+    @Override
+    public boolean isDirty() {
+
+        return this.handler.isDirty();
+    }
+
+    @Override
+    public int size() {
+
+        return this.delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return this.delegate.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+
+        return this.delegate.contains(this.unwrap(o));
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+
+        return this.delegate.containsAll(this.unwrapAll(c));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+
+        return new ProxyIterator<>(this, this.delegate.iterator());
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+
+        this.delegate.forEach(element -> action.accept(this.wrap(element)));
+    }
+
+    @Override
+    public Object[] toArray() {
+
+        Object[] elements = this.delegate.toArray();
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = this.wrap(elements[i]);
+        }
+        return elements;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+
+        Object[] elements = this.toArray();
+        if (a.length < elements.length) {
+            return (T[]) Arrays.copyOf(elements, elements.length, a.getClass());
+        }
+
+        System.arraycopy(elements, 0, a, 0, elements.length);
+        if (a.length > elements.length) a[elements.length] = null;
+        return a;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean add(E e) {
+
+        E raw = (E) this.unwrap(e);
+        this.touch(raw);
+        boolean added = this.delegate.add(raw);
+        if (added) this.touched(raw);
+        return added;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+
+        Object raw = this.unwrap(o);
+        this.touch(raw);
+        boolean removed = this.delegate.remove(raw);
+        if (removed) this.touched(raw);
+        return removed;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+
+        Collection<E> raw = this.unwrapAll(c);
+        raw.forEach(this::touch);
+        boolean added = this.delegate.addAll(raw);
+        if (added) raw.forEach(this::touched);
+        return added;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+
+        Collection<E> raw = this.unwrapAll(c);
+        raw.forEach(this::touch);
+        boolean removed = this.delegate.removeAll(raw);
+        if (removed) raw.forEach(this::touched);
+        return removed;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+
+        Collection<E> raw = this.unwrapAll(c);
+        this.handler.mutateAll();
+        boolean removed = this.delegate.retainAll(raw);
+        if (removed) this.handler.mutated(null);
+        return removed;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+
+        this.handler.mutateAll();
+        boolean removed = this.delegate.removeIf(element -> filter.test(this.wrap(element)));
+        if (removed) this.handler.mutated(null);
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+
+        boolean empty = this.delegate.isEmpty();
+        this.handler.mutateAll();
+        this.delegate.clear();
+        if (!empty) this.handler.mutated(null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (o == this) return true;
+        Object other = o instanceof ProxyCollection<?> proxy ? proxy.delegate : this.unwrap(o);
+        return this.delegate.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return this.delegate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return "[Proxy] " + this.delegate;
+    }
+
+    @Serial
+    private Object writeReplace() {
+
+        // Serialize the raw collection, like class proxies do.
+        return this.delegate;
+    }
+
+    /**
+     * An {@link Iterator} wrapping the elements of a {@link ProxyCollection}, and reporting removals to it.
+     *
+     * @param <E>
+     *         The type of the elements.
+     */
+    static class ProxyIterator<E> implements Iterator<E> {
+
+        final ProxyCollection<E> owner;
+        final Iterator<E>        delegate;
+        Object                   last;
+
+        ProxyIterator(ProxyCollection<E> owner, Iterator<E> delegate) {
+
+            this.owner    = owner;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            return this.delegate.hasNext();
+        }
+
+        @Override
+        public E next() {
+
+            this.last = this.delegate.next();
+            return this.owner.wrap(this.last);
+        }
+
+        @Override
+        public void remove() {
+
+            this.owner.touch(this.last);
+            this.delegate.remove();
+            this.owner.touched(this.last);
+        }
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package fr.anisekai.proxy;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event recorded when a {@link ClassProxyFactory} creates the proxy of an instance. Only creations lasting longer
+ * than the threshold are recorded by default, as proxies are typically created by the thousands.
+ */
+@Name("fr.anisekai.proxy.ProxyCreation")
+@Label("Proxy Creation")
+@Category("Deep Proxy")
+@Description("Creation of the proxy of an instance")
+@Threshold("100 us")
+@StackTrace(false)
+final class ProxyCreationEvent extends Event {
+
+    @Label("Class")
+    String className;
+
+    @Label("Property Count")
+    int propertyCount;
+
+}
@@ -0,0 +1,219 @@
+package fr.anisekai.proxy;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link List} proxy calling the proxied list directly. See {@link ProxyCollection}.
+ * <p>
+ * Sub-lists are proxied by a {@link ProxyList} sharing the handler of the whole list, so that their mutations are
+ * tracked as mutations of the list.
+ *
+ * @param <E>
+ *         The type of the elements.
+ */
+class ProxyList<E> extends ProxyCollection<E> implements List<E> {
+
+    private final List<E> list;
+
+    ProxyList(List<E> delegate, ContainerProxyHandler handler) {
+
+        super(delegate, handler);
+        this.list = delegate;
+    }
+
+    /**
+     * Create the {@link ProxyList} of the provided list, preserving its {@link RandomAccess} marker.
+     *
+     * @param delegate
+     *         The proxied list.
+     * @param handler
+     *         The {@link ContainerProxyHandler} holding the state of the list.
+     * @param <E>
+     *         The type of the elements.
+     *
+     * @return A {@link ProxyList}.
+     */
+    static <E> ProxyList<E> of(List<E> delegate, ContainerProxyHandler handler) {
+
+        return delegate instanceof RandomAccess ?
+                new RandomAccessList<>(delegate, handler) :
+                new ProxyList<>(delegate, handler);
+    }
+
+    @Override
+    public E get(int index) {
+
+        return this.wrap(this.list.get(index));
+    }
+
+    @Override
+    public int indexOf(Object o) {
+
+        return this.list.indexOf(this.unwrap(o));
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+
+        return this.list.lastIndexOf(this.unwrap(o));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+
+        E raw = (E) this.unwrap(element);
+        this.handler.mutateAll();
+        E previous = this.list.set(index, raw);
+        if (!Objects.equals(previous, raw)) this.handler.mutated(null);
+        return this.wrap(previous);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void add(int index, E element) {
+
+        E raw = (E) this.unwrap(element);
+        this.handler.mutateAll();
+        this.list.add(index, raw);
+        this.handler.mutated(null);
+    }
+
+    @Override
+    public E remove(int index) {
+
+        this.handler.mutateAll();
+        E removed = this.list.remove(index);
+        this.handler.mutated(null);
+        return this.wrap(removed);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> c) {
+
+        Collection<E> raw = this.unwrapAll(c);
+        this.handler.mutateAll();
+        boolean added = this.list.addAll(index, raw);
+        if (added) this.handler.mutated(null);
+        return added;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(UnaryOperator<E> operator) {
+
+        this.handler.mutateAll();
+        this.list.replaceAll(element -> (E) this.unwrap(operator.apply(this.wrap(element))));
+        this.handler.mutated(null);
+    }
+
+    @Override
+    public void sort(Comparator<? super E> c) {
+
+        this.handler.mutateAll();
+        this.list.sort(c == null ? null : (a, b) -> c.compare(this.wrap(a), this.wrap(b)));
+        this.handler.mutated(null);
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+
+        return this.listIterator(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+
+        return new ProxyListIterator<>(this, this.list.listIterator(index));
+    }
+
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+
+        return of(this.list.subList(fromIndex, toIndex), this.handler);
+    }
+
+    /**
+     * A {@link ProxyList} of a {@link RandomAccess} list.
+     *
+     * @param <E>
+     *         The type of the elements.
+     */
+    static final class RandomAccessList<E> extends ProxyList<E> implements RandomAccess {
+
+        RandomAccessList(List<E> delegate, ContainerProxyHandler handler) {
+
+            super(delegate, handler);
+        }
+
+    }
+
+    /**
+     * A {@link ListIterator} wrapping the elements of a {@link ProxyList}, and reporting mutations to it.
+     *
+     * @param <E>
+     *         The type of the elements.
+     */
+    private static final class ProxyListIterator<E> extends ProxyIterator<E> implements ListIterator<E> {
+
+        private final ListIterator<E> iterator;
+
+        private ProxyListIterator(ProxyList<E> owner, ListIterator<E> delegate) {
+
+            super(owner, delegate);
+            this.iterator = delegate;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+
+            return this.iterator.hasPrevious();
+        }
+
+        @Override
+        public E previous() {
+
+            this.last = this.iterator.previous();
+            return this.owner.wrap(this.last);
+        }
+
+        @Override
+        public int nextIndex() {
+
+            return this.iterator.nextIndex();
+        }
+
+        @Override
+        public int previousIndex() {
+
+            return this.iterator.previousIndex();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void set(E e) {
+
+            E raw = (E) this.owner.unwrap(e);
+            this.owner.handler.mutateAll();
+            this.iterator.set(raw);
+
+            // The element being replaced is the last one returned.
+            Object replaced = this.last;
+            this.last = raw;
+            if (!Objects.equals(replaced, raw)) this.owner.handler.mutated(null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void add(E e) {
+
+            E raw = (E) this.owner.unwrap(e);
+            this.owner.handler.mutateAll();
+            this.iterator.add(raw);
+            this.owner.handler.mutated(null);
+        }
+
+    }
+
+}
@@ -0,0 +1,404 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.interfaces.Dirtyable;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A {@link Map} proxy calling the proxied map directly, instead of going through a {@link java.lang.reflect.Proxy} and
+ * reflective invocations.
+ * <p>
+ * Values read from the map are wrapped by the {@link ContainerProxyHandler} holding its state, while keys are never
+ * wrapped: a key proxy could be mutated while the map relies on its hash code. Keys and values provided to the map are
+ * unwrapped before being stored. Mutators report the keys they are about to touch to the handler before calling the
+ * map, and once the map has applied the mutation if its result tells that the map changed. The {@link #keySet()},
+ * {@link #values()} and {@link #entrySet()} views share the handler of the map, so that mutations made through them
+ * (including {@link Map.Entry#setValue(Object)}) are tracked as well.
+ *
+ * @param <K>
+ *         The type of the keys.
+ * @param <V>
+ *         The type of the values.
+ */
+class ProxyMap<K, V> implements Map<K, V>, Dirtyable, Serializable {
+
+    final Map<K, V>             delegate;
+    final ContainerProxyHandler handler;
+
+    ProxyMap(Map<K, V> delegate, ContainerProxyHandler handler) {
+
+        this.delegate = delegate;
+        this.handler  = handler;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T wrap(Object value) {
+
+        return (T) this.handler.wrapElement(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T unwrap(Object value) {
+
+        return (T) this.handler.unwrapElement(value);
+    }
+
+    @Override
+    public boolean isDirty() {
+
+        return this.handler.isDirty();
+    }
+
+    @Override
+    public int size() {
+
+        return this.delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return this.delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+
+        return this.delegate.containsKey(this.unwrap(key));
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+
+        return this.delegate.containsValue(this.unwrap(value));
+    }
+
+    @Override
+    public V get(Object key) {
+
+        return this.wrap(this.delegate.get(this.unwrap(key)));
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+
+        Object raw = this.unwrap(key);
+        return this.delegate.containsKey(raw) ? this.wrap(this.delegate.get(raw)) : defaultValue;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+
+        this.delegate.forEach((key, value) -> action.accept(key, this.wrap(value)));
+    }
+
+    @Override
+    public V put(K key, V value) {
+
+        return this.wrap(this.putRaw(this.unwrap(key), this.unwrap(value)));
+    }
+
+    /**
+     * Put a raw value, reporting the key only if its value changed.
+     *
+     * @return The raw previous value.
+     */
+    private V putRaw(K raw, V rawValue) {
+
+        this.handler.mutate(raw);
+        V previous = this.delegate.put(raw, rawValue);
+        // A null previous value may also be an absent key.
+        if (previous == null || !previous.equals(rawValue)) this.handler.mutated(raw);
+        return previous;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+
+        K raw = this.unwrap(key);
+        this.handler.mutate(raw);
+        V previous = this.delegate.putIfAbsent(raw, this.unwrap(value));
+        if (previous == null) this.handler.mutated(raw);
+        return this.wrap(previous);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+
+        // Put one by one, so that only the keys whose value changed are reported.
+        m.forEach((key, value) -> this.putRaw(this.unwrap(key), this.unwrap(value)));
+    }
+
+    @Override
+    public V remove(Object key) {
+
+        Object raw = this.unwrap(key);
+        this.handler.mutate(raw);
+        // A null previous value does not tell whether the key was present.
+        boolean present  = this.delegate.containsKey(raw);
+        V       previous = this.delegate.remove(raw);
+        if (present) this.handler.mutated(raw);
+        return this.wrap(previous);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+
+        Object raw = this.unwrap(key);
+        this.handler.mutate(raw);
+        boolean removed = this.delegate.remove(raw, this.unwrap(value));
+        if (removed) this.handler.mutated(raw);
+        return removed;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+
+        K raw      = this.unwrap(key);
+        V rawValue = this.unwrap(value);
+        this.handler.mutate(raw);
+        V previous = this.delegate.replace(raw, rawValue);
+        // A null previous value is either an absent key, left absent, or a null value which has been replaced.
+        boolean changed = previous == null ?
+                rawValue != null && this.delegate.containsKey(raw) :
+                !previous.equals(rawValue);
+        if (changed) this.handler.mutated(raw);
+        return this.wrap(previous);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+
+        K raw = this.unwrap(key);
+        this.handler.mutate(raw);
+        boolean replaced = this.delegate.replace(raw, this.unwrap(oldValue), this.unwrap(newValue));
+        if (replaced) this.handler.mutated(raw);
+        return replaced;
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+
+        boolean empty = this.delegate.isEmpty();
+        this.handler.mutateAll();
+        this.delegate.replaceAll((key, value) -> this.unwrap(function.apply(key, this.wrap(value))));
+        if (!empty) this.handler.mutated(null);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+
+        K raw = this.unwrap(key);
+        this.handler.mutate(raw);
+        V previous = this.delegate.get(raw);
+        V result   = this.delegate.computeIfAbsent(raw, k -> this.unwrap(mappingFunction.apply(key)));
+        if (previous == null && result != null) this.handler.mutated(raw);
+        return this.wrap(result);
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+
+        K raw = this.unwrap(key);
+        this.handler.mutate(raw);
+        V previous = this.delegate.get(raw);
+        V result   = this.delegate.computeIfPresent(
+                raw,
+                (k, value) -> this.unwrap(remappingFunction.apply(key, this.wrap(value)))
+        );
+        if (previous != null && !previous.equals(result)) this.handler.mutated(raw);
+        return this.wrap(result);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+
+        K raw = this.unwrap(key);
+        this.handler.mutate(raw);
+        V       previous = this.delegate.get(raw);
+        boolean present  = previous != null || this.delegate.containsKey(raw);
+        V       result   = this.delegate.compute(
+                raw,
+                (k, value) -> this.unwrap(remappingFunction.apply(key, this.wrap(value)))
+        );
+        // A null result removes the key.
+        boolean changed = result == null ? present : !present || !result.equals(previous);
+        if (changed) this.handler.mutated(raw);
+        return this.wrap(result);
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+
+        K raw = this.unwrap(key);
+        this.handler.mutate(raw);
+        V previous = this.delegate.get(raw);
+        V result   = this.delegate.merge(
+                raw,
+                this.unwrap(value),
+                (current, provided) -> this.unwrap(remappingFunction.apply(this.wrap(current), this.wrap(provided)))
+        );
+        // The provided value is never null, so a null result means the key has been removed.
+        if (!Objects.equals(previous, result)) this.handler.mutated(raw);
+        return this.wrap(result);
+    }
+
+    @Override
+    public void clear() {
+
+        boolean empty = this.delegate.isEmpty();
+        this.handler.mutateAll();
+        this.delegate.clear();
+        if (!empty) this.handler.mutated(null);
+    }
+
+    @Override
+    public Set<K> keySet() {
+
+        return new ProxySet<>(this.delegate.keySet(), this.handler) {
+            @Override
+            @SuppressWarnings("unchecked")
+            K wrap(Object element) {
+
+                return (K) element;
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+
+        return new ProxyCollection<>(this.delegate.values(), this.handler) {
+            @Override
+            void touch(Object element) {
+
+                // Values do not tell which keys are being removed.
+                this.handler.mutateAll();
+            }
+
+            @Override
+            void touched(Object element) {
+
+                this.handler.mutated(null);
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+
+        return new ProxySet<>(this.delegate.entrySet(), this.handler) {
+            @Override
+            void touch(Object element) {
+
+                if (element instanceof Entry<?, ?> entry) this.handler.mutate(entry.getKey());
+            }
+
+            @Override
+            void touched(Object element) {
+
+                if (element instanceof Entry<?, ?> entry) this.handler.mutated(entry.getKey());
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            Entry<K, V> wrap(Object element) {
+
+                return new ProxyEntry((Entry<K, V>) element);
+            }
+
+            @Override
+            Object unwrap(Object value) {
+
+                return value instanceof ProxyMap<?, ?>.ProxyEntry entry ? entry.entry : value;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (o == this) return true;
+        Object other = o instanceof ProxyMap<?, ?> proxy ? proxy.delegate : this.unwrap(o);
+        return this.delegate.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return this.delegate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return "[Proxy] " + this.delegate;
+    }
+
+    @Serial
+    private Object writeReplace() {
+
+        // Serialize the raw map, like class proxies do.
+        return this.delegate;
+    }
+
+    /**
+     * An entry of the {@link #entrySet()} view, wrapping its value and reporting {@link #setValue(Object)}.
+     */
+    private final class ProxyEntry implements Entry<K, V> {
+
+        private final Entry<K, V> entry;
+
+        private ProxyEntry(Entry<K, V> entry) {
+
+            this.entry = entry;
+        }
+
+        @Override
+        public K getKey() {
+
+            return this.entry.getKey();
+        }
+
+        @Override
+        public V getValue() {
+
+            return ProxyMap.this.wrap(this.entry.getValue());
+        }
+
+        @Override
+        public V setValue(V value) {
+
+            ProxyMap.this.handler.mutate(this.entry.getKey());
+            V raw      = ProxyMap.this.unwrap(value);
+            V previous = this.entry.setValue(raw);
+            if (!Objects.equals(previous, raw)) ProxyMap.this.handler.mutated(this.entry.getKey());
+            return ProxyMap.this.wrap(previous);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            return this.entry.equals(o instanceof ProxyMap<?, ?>.ProxyEntry other ? other.entry : o);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return this.entry.hashCode();
+        }
+
+        @Override
+        public String toString() {
+
+            return this.entry.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,301 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.exceptions.ProxyException;
+import fr.anisekai.proxy.metrics.MetricsSink;
+import fr.anisekai.proxy.metrics.MetricsSnapshot;
+import fr.anisekai.proxy.metrics.ProxyMetricsMXBean;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The metrics of a {@link ClassProxyFactory}, enabled with {@link ClassProxyFactory.Builder#metrics(boolean)}.
+ * <p>
+ * Every counter is a {@link LongAdder}, which spreads concurrent updates over several cells instead of contending on a
+ * single field: recording an intercept costs an uncontended increment, and the cells are only summed when the metrics
+ * are read. Metrics can be read as a {@link MetricsSnapshot}, published to a {@link MetricsSink}, or exposed as a JMX
+ * MBean with {@link #registerMBean(String)}.
+ */
+public final class ProxyMetrics implements ProxyMetricsMXBean {
+
+    /**
+     * The JMX domain under which metrics are registered.
+     */
+    public static final String JMX_DOMAIN = "fr.anisekai.proxy";
+
+    // Proxy classes are shared by every factory, so are their generation metrics.
+    private static final LongAdder       GENERATIONS     = new LongAdder();
+    private static final LongAdder       GENERATION_TIME = new LongAdder();
+    private static final LongAccumulator GENERATION_MAX  = new LongAccumulator(Math::max, 0);
+
+    private final Map<String, LongAdder> liveProxies    = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> liveContainers = new ConcurrentHashMap<>();
+    private final LongAdder              getters        = new LongAdder();
+    private final LongAdder              setters        = new LongAdder();
+    private final LongAdder              others         = new LongAdder();
+    private final LongAdder              dirtyChecks    = new LongAdder();
+    private final LongAdder              dirtyNodes     = new LongAdder();
+
+    private final    ReentrantLock lock = new ReentrantLock();
+    private volatile ObjectName    objectName;
+
+    ProxyMetrics() {}
+
+    /**
+     * Record the time spent resolving a proxy class.
+     *
+     * @param nanos
+     *         The resolution time, in nanoseconds.
+     */
+    static void recordClassGeneration(long nanos) {
+
+        GENERATIONS.increment();
+        GENERATION_TIME.add(nanos);
+        GENERATION_MAX.accumulate(nanos);
+    }
+
+    void recordGetter() {
+
+        this.getters.increment();
+    }
+
+    void recordSetter() {
+
+        this.setters.increment();
+    }
+
+    void recordOther() {
+
+        this.others.increment();
+    }
+
+    /**
+     * Record a dirty check.
+     *
+     * @param nodesVisited
+     *         The number of states visited by the check.
+     */
+    void recordDirtyCheck(int nodesVisited) {
+
+        this.dirtyChecks.increment();
+        this.dirtyNodes.add(nodesVisited);
+    }
+
+    /**
+     * Record the registration or the removal of a state of the factory.
+     *
+     * @param node
+     *         The state.
+     * @param delta
+     *         {@code 1} when the state is registered, {@code -1} when it is removed.
+     */
+    void recordLive(StateNode<?> node, int delta) {
+
+        Map<String, LongAdder> live = node instanceof ContainerProxyHandler ? this.liveContainers : this.liveProxies;
+        String                 name = node.getInstance().getClass().getName();
+
+        // Unlike computeIfAbsent(), get() never enters the monitor of a bin.
+        LongAdder adder = live.get(name);
+        if (adder == null) {
+            LongAdder created = new LongAdder();
+            adder = live.putIfAbsent(name, created);
+            if (adder == null) adder = created;
+        }
+        adder.add(delta);
+    }
+
+    /**
+     * Take a snapshot of the current value of every metric.
+     *
+     * @return A {@link MetricsSnapshot}.
+     */
+    public MetricsSnapshot snapshot() {
+
+        return new MetricsSnapshot(
+                this.getLiveProxiesPerClass(),
+                this.getLiveContainersPerClass(),
+                this.getGetterIntercepts(),
+                this.getSetterIntercepts(),
+                this.getOtherIntercepts(),
+                this.getDirtyChecks(),
+                this.getDirtyNodesVisited(),
+                this.getClassGenerations(),
+                this.getClassGenerationNanos(),
+                this.getClassGenerationMaxNanos()
+        );
+    }
+
+    /**
+     * Publish the current value of every metric to the provided {@link MetricsSink}. This is typically called
+     * periodically by the monitoring library the sink bridges to.
+     *
+     * @param sink
+     *         The {@link MetricsSink}.
+     */
+    public void publishTo(MetricsSink sink) {
+
+        this.snapshot().publishTo(sink);
+    }
+
+    /**
+     * Register these metrics as an MBean of the platform MBean server, under {@code fr.anisekai.proxy:type=ProxyMetrics}
+     * with the provided name. The MBean is unregistered when the factory is closed.
+     *
+     * @param name
+     *         The name distinguishing the factory from the others, such as {@code orders}.
+     *
+     * @return The {@link ObjectName} of the MBean.
+     *
+     * @throws ProxyException
+     *         if the MBean could not be registered, for instance because the name is already used.
+     */
+    public ObjectName registerMBean(String name) {
+
+        this.lock.lock();
+        try {
+            if (this.objectName != null) {
+                throw new ProxyException("The metrics are already registered as " + this.objectName);
+            }
+
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=ProxyMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new ProxyException("Could not register the metrics as an MBean", e);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Unregister the MBean registered by {@link #registerMBean(String)}, if any.
+     */
+    public void unregisterMBean() {
+
+        if (this.objectName == null) return;
+
+        this.lock.lock();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (this.objectName != null && server.isRegistered(this.objectName)) {
+                server.unregisterMBean(this.objectName);
+            }
+        } catch (JMException e) {
+            throw new ProxyException("Could not unregister the metrics MBean", e);
+        } finally {
+            this.objectName = null;
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieve the {@link ObjectName} under which these metrics are registered.
+     *
+     * @return The {@link ObjectName}, or {@code null} if these metrics are not registered as an MBean.
+     */
+    @Nullable
+    public ObjectName getObjectName() {
+
+        return this.objectName;
+    }
+
+    @Override
+    public long getLiveProxies() {
+
+        return sum(this.liveProxies);
+    }
+
+    @Override
+    public Map<String, Long> getLiveProxiesPerClass() {
+
+        return counts(this.liveProxies);
+    }
+
+    @Override
+    public long getLiveContainers() {
+
+        return sum(this.liveContainers);
+    }
+
+    @Override
+    public Map<String, Long> getLiveContainersPerClass() {
+
+        return counts(this.liveContainers);
+    }
+
+    @Override
+    public long getGetterIntercepts() {
+
+        return this.getters.sum();
+    }
+
+    @Override
+    public long getSetterIntercepts() {
+
+        return this.setters.sum();
+    }
+
+    @Override
+    public long getOtherIntercepts() {
+
+        return this.others.sum();
+    }
+
+    @Override
+    public long getDirtyChecks() {
+
+        return this.dirtyChecks.sum();
+    }
+
+    @Override
+    public long getDirtyNodesVisited() {
+
+        return this.dirtyNodes.sum();
+    }
+
+    @Override
+    public long getClassGenerations() {
+
+        return GENERATIONS.sum();
+    }
+
+    @Override
+    public long getClassGenerationNanos() {
+
+        return GENERATION_TIME.sum();
+    }
+
+    @Override
+    public long getClassGenerationMaxNanos() {
+
+        return GENERATION_MAX.get();
+    }
+
+    private static long sum(Map<String, LongAdder> live) {
+
+        long total = 0;
+        for (LongAdder adder : live.values()) total += adder.sum();
+        return total;
+    }
+
+    private static Map<String, Long> counts(Map<String, LongAdder> live) {
+
+        Map<String, Long> counts = new HashMap<>();
+        live.forEach((type, adder) -> {
+            long count = adder.sum();
+            if (count != 0) counts.put(type, count);
+        });
+        return counts;
+    }
+
+}
@@ -0,0 +1,170 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.exceptions.ProxyCreationException;
+import fr.anisekai.proxy.reflection.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Generates proxy classes and their {@link Properties} metadata ahead of their first use, so that no request thread has
+ * to pay for bytecode generation.
+ *
+ * @see ClassProxyFactory#prewarm(Collection)
+ * @see ClassProxyFactory#prewarm(String)
+ */
+final class ProxyPrewarmer {
+
+    private static final Logger        LOGGER         = LoggerFactory.getLogger(ProxyPrewarmer.class);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private ProxyPrewarmer() {}
+
+    /**
+     * Prewarm the provided classes on a dedicated pool of daemon threads, bounded by the number of available
+     * processors, which is shut down once every class has been processed.
+     *
+     * @param classes
+     *         The classes to prewarm.
+     *
+     * @return A {@link CompletableFuture} completing once every class has been prewarmed.
+     */
+    static CompletableFuture<Void> prewarm(Collection<Class<?>> classes) {
+
+        if (classes.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        int             threads  = Math.min(classes.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "deep-proxy-prewarm-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        return prewarm(classes, executor).whenComplete((ignored, throwable) -> executor.shutdown());
+    }
+
+    /**
+     * Prewarm the provided classes using the provided {@link Executor}, one task per class.
+     *
+     * @param classes
+     *         The classes to prewarm.
+     * @param executor
+     *         The {@link Executor} on which classes will be generated.
+     *
+     * @return A {@link CompletableFuture} completing once every class has been prewarmed, or completing exceptionally
+     *         with a {@link ProxyCreationException} if any of them could not be generated.
+     */
+    static CompletableFuture<Void> prewarm(Collection<Class<?>> classes, Executor executor) {
+
+        CompletableFuture<?>[] tasks = classes
+                .stream()
+                .distinct()
+                .map(type -> CompletableFuture.runAsync(() -> prewarm(type), executor))
+                .toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(tasks);
+    }
+
+    private static void prewarm(Class<?> type) {
+
+        try {
+            ClassProxyFactory.getOrGenerateByteBuddyClass(type);
+            Properties.getPropertiesOf(type);
+            LOGGER.debug("Prewarmed proxy class for {}", type.getName());
+        } catch (RuntimeException e) {
+            throw new ProxyCreationException("Could not prewarm proxy class for " + type, e);
+        }
+    }
+
+    /**
+     * Find every proxyable class (see {@link ProxyClassGenerator#isProxyable(Class)}) of the provided package and its
+     * sub-packages, looking both in directories and in jar files of the provided {@link ClassLoader}.
+     *
+     * @param packageName
+     *         The name of the package, such as {@code com.example.model}.
+     * @param loader
+     *         The {@link ClassLoader} in which the package is looked up.
+     *
+     * @return The proxyable classes.
+     */
+    static Set<Class<?>> scan(String packageName, ClassLoader loader) {
+
+        String      path  = packageName.replace('.', '/');
+        Set<String> names = new LinkedHashSet<>();
+
+        try {
+            for (URL url : Collections.list(loader.getResources(path))) {
+                switch (url.getProtocol()) {
+                    case "file" -> scanDirectory(Path.of(url.toURI()), packageName, names);
+                    case "jar" -> scanJar(url, path, names);
+                    default -> LOGGER.warn("Unable to scan {}: unsupported protocol", url);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to scan package " + packageName, e);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Unable to scan package " + packageName, e);
+        }
+
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (String name : names) {
+            try {
+                Class<?> type = Class.forName(name, false, loader);
+                if (ProxyClassGenerator.isProxyable(type)) classes.add(type);
+            } catch (ClassNotFoundException | LinkageError e) {
+                LOGGER.debug("Skipping {}: {}", name, e.toString());
+            }
+        }
+        return classes;
+    }
+
+    private static void scanDirectory(Path directory, String packageName, Set<String> names) throws IOException {
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                String relative = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), ".");
+                addClassName(packageName + "." + relative, names);
+            });
+        }
+    }
+
+    private static void scanJar(URL url, String path, Set<String> names) throws IOException {
+
+        JarURLConnection connection = (JarURLConnection) url.openConnection();
+        connection.setUseCaches(false);
+
+        try (JarFile jar = connection.getJarFile()) {
+            for (JarEntry entry : Collections.list(jar.entries())) {
+                if (!entry.isDirectory() && entry.getName().startsWith(path + "/")) {
+                    addClassName(entry.getName().replace('/', '.'), names);
+                }
+            }
+        }
+    }
+
+    private static void addClassName(String fileName, Set<String> names) {
+
+        if (!fileName.endsWith(".class")) return;
+
+        String name = fileName.substring(0, fileName.length() - ".class".length());
+        if (name.endsWith("package-info") || name.endsWith("module-info")) return;
+        names.add(name);
+    }
+
+}
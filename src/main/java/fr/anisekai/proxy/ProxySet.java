@@ -0,0 +1,18 @@
+package fr.anisekai.proxy;
+
+import java.util.Set;
+
+/**
+ * A {@link Set} proxy calling the proxied set directly. See {@link ProxyCollection}.
+ *
+ * @param <E>
+ *         The type of the elements.
+ */
+class ProxySet<E> extends ProxyCollection<E> implements Set<E> {
+
+    ProxySet(Set<E> delegate, ContainerProxyHandler handler) {
+
+        super(delegate, handler);
+    }
+
+}
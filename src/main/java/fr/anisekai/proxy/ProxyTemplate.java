@@ -0,0 +1,135 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.exceptions.ProxyCreationException;
+import fr.anisekai.proxy.reflection.Properties;
+import fr.anisekai.proxy.reflection.PropertyIndex;
+import net.bytebuddy.dynamic.DynamicType;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
+import java.util.function.Supplier;
+
+/**
+ * Everything needed to create proxies of a given class, resolved once per class: the proxy class, a compiled
+ * instantiator replacing {@link Constructor#newInstance(Object...)}, and the {@link PropertyIndex} of the class.
+ */
+final class ProxyTemplate {
+
+    private final Class<?>         proxyClass;
+    private final Supplier<Object> instantiator;
+    private final PropertyIndex    index;
+
+    private ProxyTemplate(Class<?> proxyClass, Supplier<Object> instantiator, PropertyIndex index) {
+
+        this.proxyClass   = proxyClass;
+        this.instantiator = instantiator;
+        this.index        = index;
+    }
+
+    /**
+     * Resolve the {@link ProxyTemplate} of the provided class, using its pregenerated proxy class if available, or
+     * generating one otherwise. The time spent is recorded by {@link ProxyMetrics}, and as a
+     * {@link ClassGenerationEvent}.
+     *
+     * @param origin
+     *         The class being proxied.
+     *
+     * @return A {@link ProxyTemplate}.
+     */
+    static ProxyTemplate of(Class<?> origin) {
+
+        ClassGenerationEvent event = new ClassGenerationEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        Class<?> proxyClass   = ProxyClassGenerator.findPregenerated(origin).orElse(null);
+        boolean  pregenerated = proxyClass != null;
+        int      bytes        = 0;
+        if (!pregenerated) {
+            try (DynamicType.Unloaded<?> unloaded = ProxyClassGenerator.make(origin)) {
+                bytes      = unloaded.getBytes().length;
+                proxyClass = ProxyClassGenerator.load(origin, unloaded);
+            }
+        }
+
+        ProxyTemplate template = new ProxyTemplate(proxyClass, instantiator(proxyClass), Properties.getIndexOf(origin));
+        ProxyMetrics.recordClassGeneration(System.nanoTime() - start);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.className    = origin.getName();
+            event.pregenerated = pregenerated;
+            event.bytes        = bytes;
+            event.commit();
+        }
+        return template;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> instantiator(Class<?> proxyClass) {
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(proxyClass, MethodHandles.lookup());
+            MethodHandle         handle = lookup.findConstructor(proxyClass, MethodType.methodType(void.class));
+
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    handle,
+                    MethodType.methodType(proxyClass)
+            );
+
+            return (Supplier<Object>) site.getTarget().invoke();
+        } catch (Throwable ignored) {
+            // Not accessible with full privileges, fall back to reflection.
+        }
+
+        try {
+            Constructor<?> constructor = proxyClass.getDeclaredConstructor();
+            constructor.trySetAccessible();
+
+            return () -> {
+                try {
+                    return constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new ProxyCreationException("Could not instantiate " + proxyClass, e);
+                }
+            };
+        } catch (NoSuchMethodException e) {
+            throw new ProxyCreationException("No default constructor found on " + proxyClass, e);
+        }
+    }
+
+    /**
+     * Retrieve the proxy class.
+     *
+     * @return The proxy class.
+     */
+    Class<?> getProxyClass() {
+
+        return this.proxyClass;
+    }
+
+    /**
+     * Retrieve the {@link PropertyIndex} of the class being proxied.
+     *
+     * @return A {@link PropertyIndex}.
+     */
+    PropertyIndex getIndex() {
+
+        return this.index;
+    }
+
+    /**
+     * Create a new, not yet bound, proxy instance.
+     *
+     * @return The proxy instance.
+     */
+    Object instantiate() {
+
+        return this.instantiator.get();
+    }
+
+}
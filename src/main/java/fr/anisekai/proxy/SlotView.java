@@ -0,0 +1,105 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.reflection.Property;
+import fr.anisekai.proxy.reflection.PropertyIndex;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * An unmodifiable {@link Map} view over per-property slots, allowing states storing their data in flat arrays indexed
+ * by property ordinal to expose it as a {@link Map} keyed by {@link Property} without copying anything.
+ * <p>
+ * The view is live: it reflects the slots at the time it is read, not at the time it was created.
+ */
+final class SlotView extends AbstractMap<Property, Object> {
+
+    private final PropertyIndex       index;
+    private final IntPredicate        present;
+    private final IntFunction<Object> value;
+
+    /**
+     * Create a new {@link SlotView}.
+     *
+     * @param index
+     *         The {@link PropertyIndex} giving the {@link Property} of each slot.
+     * @param present
+     *         Tells whether the slot of an ordinal is part of the view.
+     * @param value
+     *         Retrieve the value of the slot of an ordinal.
+     */
+    SlotView(PropertyIndex index, IntPredicate present, IntFunction<Object> value) {
+
+        this.index   = index;
+        this.present = present;
+        this.value   = value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+
+        int ordinal = this.index.ordinalOf(key);
+        return ordinal >= 0 && this.present.test(ordinal);
+    }
+
+    @Override
+    public Object get(Object key) {
+
+        int ordinal = this.index.ordinalOf(key);
+        return ordinal >= 0 && this.present.test(ordinal) ? this.value.apply(ordinal) : null;
+    }
+
+    @Override
+    public Set<Entry<Property, Object>> entrySet() {
+
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Property, Object>> iterator() {
+
+                return new Iterator<>() {
+                    private int next = this.seek(0);
+
+                    private int seek(int from) {
+
+                        int ordinal = from;
+                        while (ordinal < SlotView.this.index.size() && !SlotView.this.present.test(ordinal)) {
+                            ordinal++;
+                        }
+                        return ordinal;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+
+                        return this.next < SlotView.this.index.size();
+                    }
+
+                    @Override
+                    public Entry<Property, Object> next() {
+
+                        if (!this.hasNext()) throw new NoSuchElementException();
+
+                        int ordinal = this.next;
+                        this.next = this.seek(ordinal + 1);
+                        return new SimpleImmutableEntry<>(
+                                SlotView.this.index.get(ordinal),
+                                SlotView.this.value.apply(ordinal)
+                        );
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+
+                int size = 0;
+                for (int ordinal = 0; ordinal < SlotView.this.index.size(); ordinal++) {
+                    if (SlotView.this.present.test(ordinal)) size++;
+                }
+                return size;
+            }
+        };
+    }
+
+}
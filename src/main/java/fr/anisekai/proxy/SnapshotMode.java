@@ -0,0 +1,24 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.interfaces.State;
+
+/**
+ * Defines when a {@link ClassProxyImpl} captures the original values of the properties of its instance.
+ */
+public enum SnapshotMode {
+
+    /**
+     * Every property is read when the proxy is created. The original state reflects the instance exactly as it was when
+     * it started being tracked.
+     */
+    EAGER,
+
+    /**
+     * A property is only read the first time its setter is intercepted, or when the original state is requested (see
+     * {@link State#getOriginalState()}). This makes proxy creation nearly free and avoids calling getters of properties
+     * that are never modified, but changes made directly on the instance before the first intercepted write of a
+     * property become part of its original value.
+     */
+    LAZY
+
+}
@@ -0,0 +1,375 @@
+package fr.anisekai.proxy;
+
+import fr.anisekai.proxy.interfaces.ProxyInterceptor;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Base class of every state tracked by a {@link ClassProxyFactory}, keeping track of the links between the states of a
+ * proxy graph so that dirtiness can be propagated upward instead of being computed by walking the graph.
+ * <p>
+ * A state is linked to the states of the values it wraps (see {@link ClassProxyFactory#wrapIfNecessary}): the parent
+ * keeps a {@link Link} per child, and each child knows the links pointing to it. Each state maintains a dirty counter
+ * equal to the number of dirty children it is linked to, plus one when the state itself has been modified. Whenever
+ * this counter goes from zero to non-zero (or back), the change is forwarded to the parents, making
+ * {@link #isDirty()} a single field read.
+ * <p>
+ * Children are linked when they are read through their parent, but also when a parent and the state of one of its
+ * values are registered independently (see {@link #forEachReference(ObjIntConsumer)}), so that a child proxied on its
+ * own still makes its parent dirty.
+ * <p>
+ * Links that would close a cycle (a child which is already an ancestor of its parent) are kept dormant: the
+ * dirtiness of the ancestor is not propagated back down to its descendants, which would otherwise keep each other dirty
+ * forever. Whenever an active link is removed, the dormant links below it which do not close a cycle anymore are
+ * activated.
+ *
+ * @param <T>
+ *         The type of the proxied instance.
+ */
+abstract class StateNode<T> implements ProxyInterceptor<T> {
+
+    private List<Link>   parents;
+    // The links of this state, as a parent, which are dormant because they would close a cycle.
+    private List<Link>   dormant;
+    // Only written under the write lock of the factory in concurrent mode, but read without it.
+    private volatile int dirtyCount;
+    private boolean      selfDirty;
+
+    @Override
+    public boolean isDirty() {
+
+        return this.isMarkedDirty();
+    }
+
+    /**
+     * Implementation of {@link #isDirty()} recording the check in the provided {@link ProxyMetrics} and as a
+     * {@link DirtyScanEvent}. As dirtiness is propagated upward, a check only ever visits this state.
+     *
+     * @param metrics
+     *         The {@link ProxyMetrics} of the factory, or {@code null} if metrics are not enabled.
+     *
+     * @return {@code true} if this state or one of the states it is linked to has been modified, {@code false}
+     *         otherwise.
+     */
+    final boolean recordDirtyCheck(ProxyMetrics metrics) {
+
+        if (metrics != null) metrics.recordDirtyCheck(1);
+
+        DirtyScanEvent event = new DirtyScanEvent();
+        if (!event.isEnabled()) return this.isMarkedDirty();
+
+        event.begin();
+        boolean dirty = this.isMarkedDirty();
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.operation    = "isDirty";
+            event.className    = this.getInstance().getClass().getName();
+            event.nodesVisited = 1;
+            event.commit();
+        }
+        return dirty;
+    }
+
+    /**
+     * Same as {@link #isDirty()}, for internal checks which must not be recorded as dirty checks by
+     * {@link ProxyMetrics}.
+     *
+     * @return {@code true} if this state or one of the states it is linked to has been modified, {@code false}
+     *         otherwise.
+     */
+    final boolean isMarkedDirty() {
+
+        return this.dirtyCount > 0;
+    }
+
+    /**
+     * Check if this state has been modified itself, regardless of the states it is linked to.
+     *
+     * @return {@code true} if this state has been modified, {@code false} otherwise.
+     */
+    protected final boolean isSelfDirty() {
+
+        return this.selfDirty;
+    }
+
+    /**
+     * Define whether this state has been modified itself, propagating the change to the parents if the overall
+     * dirtiness of this state changes.
+     *
+     * @param dirty
+     *         {@code true} if this state has been modified, {@code false} otherwise.
+     */
+    protected final void setSelfDirty(boolean dirty) {
+
+        if (this.selfDirty == dirty) return;
+        this.selfDirty = dirty;
+        this.adjust(dirty ? 1 : -1);
+    }
+
+    /**
+     * Reverts this state and, recursively, every dirty state it is linked to. The graph is walked iteratively by a
+     * {@link GraphWalk}, each state being reverted before its children are listed, so that the original values
+     * restored by a parent are reverted as well.
+     */
+    @Override
+    public final void revert() {
+
+        ClassProxyFactory factory = this.getFactory();
+        factory.lockWrites();
+        try (GraphWalk walk = factory.startWalk()) {
+            walk.push(this);
+            for (StateNode<?> node = walk.poll(); node != null; node = walk.poll()) {
+                node.revertSelf();
+                walk.pushDirtyChildren(node);
+            }
+        } finally {
+            factory.unlockWrites();
+        }
+    }
+
+    /**
+     * Reverts the changes made to this state only, leaving the states it is linked to untouched.
+     */
+    abstract void revertSelf();
+
+    /**
+     * Retrieve the {@link ClassProxyFactory} managing this state.
+     *
+     * @return The {@link ClassProxyFactory}.
+     */
+    abstract ClassProxyFactory getFactory();
+
+    /**
+     * Visit the states this state is actively linked to, as a parent. Inactive links (removed, or closing a cycle) are
+     * skipped.
+     *
+     * @param action
+     *         The action to perform on each child state.
+     */
+    abstract void forEachChild(Consumer<StateNode<?>> action);
+
+    /**
+     * Visit the raw values held by this state which may have a state of their own, along with the ordinal of the
+     * property holding them ({@code -1} for the elements of a container). This is used by the {@link ClassProxyFactory}
+     * to link this state to the states of values which have not been read through it.
+     *
+     * @param visitor
+     *         The visitor receiving each value and its ordinal.
+     */
+    abstract void forEachReference(ObjIntConsumer<Object> visitor);
+
+    /**
+     * Link the state of a value visited by {@link #forEachReference(ObjIntConsumer)}, unless the value is not held by
+     * this state anymore.
+     *
+     * @param ordinal
+     *         The ordinal of the property holding the value, or {@code -1} for the elements of a container.
+     * @param child
+     *         The state of the value.
+     */
+    abstract void linkReference(int ordinal, StateNode<?> child);
+
+    /**
+     * Link this state, as a parent, to the provided child state.
+     *
+     * @param child
+     *         The state of a value wrapped by this state.
+     *
+     * @return The {@link Link}, which is inactive if it would close a cycle.
+     */
+    protected final Link link(StateNode<?> child) {
+
+        Link link = new Link(this, child);
+        if (child == this) return link;
+
+        if (child.reaches(this)) {
+            link.dormant = true;
+            if (this.dormant == null) {
+                this.dormant = new ArrayList<>(1);
+            }
+            this.dormant.add(link);
+            this.getFactory().dormantLinks++;
+            return link;
+        }
+
+        link.activate();
+        return link;
+    }
+
+    /**
+     * Remove every link pointing to this state. This must be called when the state is closed.
+     */
+    protected final void detach() {
+
+        if (this.parents == null) return;
+        List.copyOf(this.parents).forEach(Link::unlink);
+    }
+
+    /**
+     * Apply a change of the dirty counter, forwarding it to the parents for as long as it changes the overall dirtiness
+     * of a state. This is done iteratively, so that deep chains of states do not exhaust the call stack: within a
+     * propagation every change has the same sign, and inactive links guarantee that it stops.
+     */
+    private void adjust(int delta) {
+
+        StateNode<?>        node    = this;
+        Deque<StateNode<?>> pending = null;
+
+        while (node != null) {
+            int previous = node.dirtyCount;
+            node.dirtyCount += delta;
+
+            boolean changed = delta > 0 ? previous == 0 : node.dirtyCount == 0;
+            List<Link> parents = changed ? node.parents : null;
+
+            if (parents == null || parents.isEmpty()) {
+                node = pending == null ? null : pending.poll();
+            } else if (parents.size() == 1 && (pending == null || pending.isEmpty())) {
+                // Chains are followed without allocating.
+                node = parents.getFirst().parent;
+            } else {
+                if (pending == null) pending = new ArrayDeque<>();
+                for (Link link : parents) pending.push(link.parent);
+                node = pending.poll();
+            }
+        }
+    }
+
+    /**
+     * Activate the dormant links which do not close a cycle anymore, after an active link to this state was removed.
+     * Only the links of this state and of its descendants may have closed a cycle through the removed link.
+     */
+    private void wakeDormantLinks() {
+
+        List<Link> candidates = null;
+        try (GraphWalk walk = this.getFactory().startWalk()) {
+            walk.push(this);
+            for (StateNode<?> node = walk.poll(); node != null; node = walk.poll()) {
+                if (node.dormant != null && !node.dormant.isEmpty()) {
+                    if (candidates == null) candidates = new ArrayList<>();
+                    candidates.addAll(node.dormant);
+                }
+                walk.pushChildren(node);
+            }
+        }
+
+        if (candidates == null) return;
+
+        // Checked one by one, as activating a link may make the next one close a cycle again.
+        for (Link link : candidates) {
+            if (link.child.reaches(link.parent)) continue;
+
+            link.forget();
+            link.activate();
+        }
+    }
+
+    /**
+     * Check if the provided state is reachable from this state through active links. The search goes down from the
+     * would-be child rather than up from the parent: graphs are linked as they are navigated from their root, so the
+     * child of a new link rarely has any descendant yet, and linking stays constant-time however deep the graph is.
+     */
+    private boolean reaches(StateNode<?> target) {
+
+        try (GraphWalk walk = this.getFactory().startWalk()) {
+            walk.push(this);
+            for (StateNode<?> node = walk.poll(); node != null; node = walk.poll()) {
+                if (node == target) return true;
+                walk.pushChildren(node);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A link between a parent state and the state of one of its values.
+     */
+    static final class Link {
+
+        private final StateNode<?> parent;
+        private final StateNode<?> child;
+        private       boolean      active;
+        private       boolean      dormant;
+
+        private Link(StateNode<?> parent, StateNode<?> child) {
+
+            this.parent = parent;
+            this.child  = child;
+        }
+
+        /**
+         * Retrieve the child state of this {@link Link}.
+         *
+         * @return The child state.
+         */
+        StateNode<?> getChild() {
+
+            return this.child;
+        }
+
+        /**
+         * Check if this {@link Link} propagates the dirtiness of its child to its parent. A link is inactive once it has
+         * been removed, or for as long as it would close a cycle.
+         *
+         * @return {@code true} if this {@link Link} is active, {@code false} otherwise.
+         */
+        boolean isActive() {
+
+            return this.active;
+        }
+
+        /**
+         * Remove this {@link Link}, withdrawing the dirtiness of the child from the parent.
+         */
+        void unlink() {
+
+            if (this.dormant) {
+                this.forget();
+                return;
+            }
+
+            if (!this.active) return;
+            this.active = false;
+            this.child.parents.remove(this);
+
+            if (this.child.isMarkedDirty()) {
+                this.parent.adjust(-1);
+            }
+
+            if (this.child.getFactory().dormantLinks > 0) {
+                this.child.wakeDormantLinks();
+            }
+        }
+
+        /**
+         * Make this {@link Link} propagate the dirtiness of its child to its parent.
+         */
+        private void activate() {
+
+            this.active = true;
+            if (this.child.parents == null) {
+                this.child.parents = new ArrayList<>(1);
+            }
+            this.child.parents.add(this);
+
+            if (this.child.isMarkedDirty()) {
+                this.parent.adjust(1);
+            }
+        }
+
+        /**
+         * Remove this dormant {@link Link} from the dormant links of its parent.
+         */
+        private void forget() {
+
+            this.dormant = false;
+            this.parent.dormant.remove(this);
+            this.parent.getFactory().dormantLinks--;
+        }
+
+    }
+
+}
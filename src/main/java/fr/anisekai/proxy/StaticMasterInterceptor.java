@@ -1,42 +1,43 @@
 package fr.anisekai.proxy;
 
 import fr.anisekai.proxy.exceptions.ProxyAccessException;
-import net.bytebuddy.implementation.bind.annotation.AllArguments;
-import net.bytebuddy.implementation.bind.annotation.Origin;
-import net.bytebuddy.implementation.bind.annotation.RuntimeType;
-import net.bytebuddy.implementation.bind.annotation.This;
+import fr.anisekai.proxy.exceptions.ProxyInvocationException;
+import fr.anisekai.proxy.interfaces.Interceptable;
+import fr.anisekai.proxy.interfaces.ProxyInterceptor;
+import net.bytebuddy.implementation.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
-import java.util.Collections;
-import java.util.IdentityHashMap;
-import java.util.Map;
 
 /**
- * A stateless, static master interceptor that is wired into every generated proxy class. Its sole purpose is to find
- * the correct {@link ClassProxyFactory} instance responsible for the proxy and delegate the method call to it.
+ * A stateless, static master interceptor that is wired into every generated proxy class. Its sole purpose is to
+ * delegate the method call to the {@link ProxyInterceptor} stored in the proxy instance (see {@link Interceptable}).
  */
 public final class StaticMasterInterceptor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StaticMasterInterceptor.class);
 
-    static final Map<Object, ClassProxyFactory> PROXY_OWNER_REGISTRY = Collections.synchronizedMap(new IdentityHashMap<>());
-
     private StaticMasterInterceptor() {}
 
     @RuntimeType
-    public static Object intercept(@This Object self, @Origin Method method, @AllArguments Object[] args) {
-
-        LOGGER.trace("Proxying '{}()' on {}", method.getName(), self.getClass().getSimpleName());
+    public static Object intercept(@This Object self, @Origin Method method, @AllArguments Object[] args, @FieldValue(Interceptable.INTERCEPTOR_FIELD) ProxyInterceptor<?> interceptor) {
 
-        ClassProxyFactory owner = PROXY_OWNER_REGISTRY.get(self);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Proxying '{}()' on {}", method.getName(), self.getClass().getSimpleName());
+        }
 
-        if (owner == null) {
+        if (interceptor == null) {
             throw new ProxyAccessException("Orphan Proxy: Unable to find the proxy's factory.");
         }
 
-        return owner.intercept(self, method, args);
+        try {
+            return interceptor.intercept(method, args);
+        } catch (ProxyAccessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ProxyInvocationException("Failed to intercept " + method.getName(), e);
+        }
     }
 
 }
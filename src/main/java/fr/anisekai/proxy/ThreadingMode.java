@@ -0,0 +1,32 @@
+package fr.anisekai.proxy;
+
+/**
+ * Defines from which threads a {@link ClassProxyFactory} and its proxies may be used.
+ */
+public enum ThreadingMode {
+
+    /**
+     * The factory may be used from any thread: its registry is a concurrent map, and proxies of different instances
+     * can be created and used by different threads at the same time. A given proxy graph must still only be used by
+     * one thread at a time.
+     */
+    SHARED,
+
+    /**
+     * The factory and its proxies are only used by the thread which built the factory, typically for the duration of a
+     * single request. Registries are plain identity tables without any synchronization, and proxy classes are looked up
+     * in a cache local to the factory once resolved. When assertions are enabled, using the factory or one of its
+     * proxies from another thread throws a {@link fr.anisekai.proxy.exceptions.ProxyAccessException}.
+     */
+    CONFINED,
+
+    /**
+     * The factory and its proxies may be used from any thread, including a single proxy graph shared between threads
+     * (such as cached reference data). Reads never lock, while writes through proxies and containers are serialized by
+     * a lock shared by the whole factory, which suits read-mostly graphs. Proxies capture their original state eagerly,
+     * so this mode cannot be combined with {@link SnapshotMode#LAZY}. Containers are only as thread-safe as the
+     * collections and maps they wrap.
+     */
+    CONCURRENT
+
+}
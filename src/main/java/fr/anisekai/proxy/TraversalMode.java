@@ -0,0 +1,25 @@
+package fr.anisekai.proxy;
+
+/**
+ * Defines how a {@link ClassProxyFactory} walks its states when looking for the ones which have been modified (see
+ * {@link ClassProxyFactory#getDirtyStates()}).
+ * <p>
+ * Checking a single state never walks the graph, as dirtiness is propagated upward: both modes only apply to the scans
+ * collecting dirty states.
+ */
+public enum TraversalMode {
+
+    /**
+     * Scans are performed by the calling thread.
+     */
+    SEQUENTIAL,
+
+    /**
+     * Scans visiting more than a few thousand states are split into tasks run by the
+     * {@linkplain java.util.concurrent.ForkJoinPool#commonPool() common fork-join pool}, while the calling thread waits
+     * for their results. The states must not be modified during the scan, which only suits large graphs: below the
+     * threshold, scans are performed by the calling thread.
+     */
+    PARALLEL
+
+}
@@ -0,0 +1,30 @@
+package fr.anisekai.proxy;
+
+/**
+ * Defines how {@link ClassProxyFactory#unwrap(Object)} unwraps a container holding proxies.
+ * <p>
+ * Regardless of the mode, the proxy of a container is always unwrapped to the container itself.
+ */
+public enum UnwrapMode {
+
+    /**
+     * Every {@link java.util.List}, {@link java.util.Set} and {@link java.util.Map} is copied with its elements (or
+     * keys and values) unwrapped. Lists are copied into an unmodifiable list, sets into a {@link java.util.HashSet}
+     * and maps into a {@link java.util.HashMap}, losing the type (and thus the ordering) of the original container.
+     */
+    COPY,
+
+    /**
+     * Containers holding no proxy (directly or in a nested container) are returned as-is. Others are exposed through a
+     * lazy view unwrapping elements as they are read, which keeps the ordering and the {@link java.util.RandomAccess}
+     * marker of the original container, and writes through to it. Views are plain lists, sets and maps: the sorted and
+     * navigable interfaces of the original container are not exposed. Nothing is copied, but each unwrap scans the
+     * container to find out whether it holds a proxy.
+     * <p>
+     * Views are only returned to callers: a container holding proxies that is assigned through a proxy is stored as a
+     * copy with its elements unwrapped, which keeps the ordering of the original container and, for sorted sets and
+     * maps, its comparator.
+     */
+    VIEW
+
+}
@@ -0,0 +1,303 @@
+package fr.anisekai.proxy;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Lazy views over containers holding proxies, unwrapping their elements (or keys and values, for maps) as they are
+ * read instead of copying the container (see {@link UnwrapMode#VIEW}).
+ * <p>
+ * Views keep the ordering of the original container and write through to it: values written through a view are
+ * unwrapped before being stored. Views are plain {@link List}, {@link Set} and {@link Map}: they do not implement the
+ * sorted or navigable interfaces of the original container, and they are never stored into an instance (see
+ * {@link ClassProxyFactory#detach(Object)}).
+ * <p>
+ * As the original container may hold either the proxy or the raw instance of an element, lookups try both forms of
+ * their argument against the original container, so that hashed containers are not scanned.
+ */
+final class UnwrapView {
+
+    private UnwrapView() {}
+
+    /**
+     * Create the view of the provided container.
+     *
+     * @param container
+     *         A {@link List}, {@link Set} or {@link Map}.
+     * @param factory
+     *         The factory unwrapping the elements.
+     *
+     * @return The view, or {@code null} if the container is not a {@link List}, {@link Set} or {@link Map}.
+     */
+    @SuppressWarnings("unchecked")
+    static Object of(Object container, ClassProxyFactory factory) {
+
+        return switch (container) {
+            case List<?> list when list instanceof RandomAccess -> new RandomAccessListView((List<Object>) list, factory);
+            case List<?> list -> new ListView((List<Object>) list, factory);
+            case Set<?> set -> new SetView((Set<Object>) set, factory);
+            case Map<?, ?> map -> new MapView((Map<Object, Object>) map, factory);
+            default -> null;
+        };
+    }
+
+    /**
+     * Check whether the provided test matches any form under which a container may hold the provided value: the value
+     * itself, and either its raw instance and its proxy if it is managed by the factory, or its unwrapped value.
+     */
+    private static boolean anyForm(ClassProxyFactory factory, Object value, Predicate<Object> test) {
+
+        if (test.test(value)) return true;
+
+        StateNode<?> node = factory.findNode(value);
+        if (node == null) {
+            Object raw = factory.unwrap(value);
+            return raw != value && test.test(raw);
+        }
+
+        Object instance = node.getInstance();
+        Object proxy    = node.getProxy();
+        return (instance != value && test.test(instance)) || (proxy != value && test.test(proxy));
+    }
+
+    private static class ListView extends AbstractList<Object> {
+
+        private final List<Object>      list;
+        private final ClassProxyFactory factory;
+
+        private ListView(List<Object> list, ClassProxyFactory factory) {
+
+            this.list    = list;
+            this.factory = factory;
+        }
+
+        @Override
+        public Object get(int index) {
+
+            return this.factory.unwrap(this.list.get(index));
+        }
+
+        @Override
+        public int size() {
+
+            return this.list.size();
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+
+            return this.factory.unwrap(this.list.set(index, this.factory.detach(element)));
+        }
+
+        @Override
+        public void add(int index, Object element) {
+
+            this.list.add(index, this.factory.detach(element));
+        }
+
+        @Override
+        public Object remove(int index) {
+
+            return this.factory.unwrap(this.list.remove(index));
+        }
+
+        @Override
+        public boolean contains(Object o) {
+
+            return anyForm(this.factory, o, this.list::contains);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+
+            int[] index = {-1};
+            anyForm(this.factory, o, form -> {
+                int found = this.list.indexOf(form);
+                if (found >= 0 && (index[0] < 0 || found < index[0])) index[0] = found;
+                return false;
+            });
+            return index[0];
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+
+            int[] index = {-1};
+            anyForm(this.factory, o, form -> {
+                index[0] = Math.max(index[0], this.list.lastIndexOf(form));
+                return false;
+            });
+            return index[0];
+        }
+
+        @Override
+        public boolean remove(Object o) {
+
+            int index = this.indexOf(o);
+            if (index < 0) return false;
+
+            this.list.remove(index);
+            return true;
+        }
+
+    }
+
+    private static final class RandomAccessListView extends ListView implements RandomAccess {
+
+        private RandomAccessListView(List<Object> list, ClassProxyFactory factory) {
+
+            super(list, factory);
+        }
+
+    }
+
+    private static final class SetView extends AbstractSet<Object> {
+
+        private final Set<Object>       set;
+        private final ClassProxyFactory factory;
+
+        private SetView(Set<Object> set, ClassProxyFactory factory) {
+
+            this.set     = set;
+            this.factory = factory;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+
+            Iterator<Object> iterator = this.set.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {return iterator.hasNext();}
+
+                @Override
+                public Object next() {return SetView.this.factory.unwrap(iterator.next());}
+
+                @Override
+                public void remove() {iterator.remove();}
+            };
+        }
+
+        @Override
+        public int size() {
+
+            return this.set.size();
+        }
+
+        @Override
+        public boolean add(Object element) {
+
+            return this.set.add(this.factory.detach(element));
+        }
+
+        @Override
+        public boolean contains(Object o) {
+
+            return anyForm(this.factory, o, this.set::contains);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+
+            return anyForm(this.factory, o, this.set::remove);
+        }
+
+    }
+
+    private static final class MapView extends AbstractMap<Object, Object> {
+
+        private final Map<Object, Object> map;
+        private final ClassProxyFactory   factory;
+
+        private MapView(Map<Object, Object> map, ClassProxyFactory factory) {
+
+            this.map     = map;
+            this.factory = factory;
+        }
+
+        @Override
+        public int size() {
+
+            return this.map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+
+            return anyForm(this.factory, key, this.map::containsKey);
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+
+            return anyForm(this.factory, value, this.map::containsValue);
+        }
+
+        @Override
+        public Object get(Object key) {
+
+            Object[] value = {null};
+            anyForm(this.factory, key, form -> {
+                value[0] = this.map.get(form);
+                return value[0] != null || this.map.containsKey(form);
+            });
+            return this.factory.unwrap(value[0]);
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+
+            return this.factory.unwrap(this.map.put(this.factory.detach(key), this.factory.detach(value)));
+        }
+
+        @Override
+        public Object remove(Object key) {
+
+            Object[] value = {null};
+            anyForm(this.factory, key, form -> {
+                if (!this.map.containsKey(form)) return false;
+                value[0] = this.map.remove(form);
+                return true;
+            });
+            return this.factory.unwrap(value[0]);
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+
+            Set<Entry<Object, Object>> entries = this.map.entrySet();
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Object, Object>> iterator() {
+
+                    Iterator<Entry<Object, Object>> iterator = entries.iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {return iterator.hasNext();}
+
+                        @Override
+                        public Entry<Object, Object> next() {
+
+                            Entry<Object, Object> entry = iterator.next();
+                            return new SimpleImmutableEntry<>(
+                                    MapView.this.factory.unwrap(entry.getKey()),
+                                    MapView.this.factory.unwrap(entry.getValue())
+                            );
+                        }
+
+                        @Override
+                        public void remove() {iterator.remove();}
+                    };
+                }
+
+                @Override
+                public int size() {
+
+                    return entries.size();
+                }
+            };
+        }
+
+    }
+
+}
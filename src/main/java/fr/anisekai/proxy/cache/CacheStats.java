@@ -0,0 +1,15 @@
+package fr.anisekai.proxy.cache;
+
+/**
+ * A snapshot of the statistics of a {@link ClassCache}.
+ *
+ * @param size
+ *         The number of values currently retained by the cache.
+ * @param loads
+ *         The number of values computed since the cache has been created.
+ * @param evictions
+ *         The number of values dropped since the cache has been created, because their class has been unloaded.
+ */
+public record CacheStats(long size, long loads, long evictions) {
+
+}
@@ -0,0 +1,77 @@
+package fr.anisekai.proxy.cache;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A cache of values computed per {@link Class}, backed by a {@link ClassValue}.
+ * <p>
+ * Unlike a static map keyed by {@link Class}, values are stored alongside their class: they do not keep it reachable,
+ * and are collected together with its class loader once it is unloaded (as long as the value does not reference a class
+ * of a longer-lived class loader). This prevents leaking metaspace on hosts that load and unload applications.
+ * <p>
+ * Unloaded classes are tracked with a {@link Cleaner} to report evictions in the {@link CacheStats}. Note that a
+ * {@link ClassValue} may compute a value more than once when several threads request it at the same time: every
+ * computation is counted as a load, and the values that were not retained are later counted as evicted as well.
+ *
+ * @param <V>
+ *         The type of the cached values.
+ */
+public final class ClassCache<V> {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final ClassValue<V> values;
+    private final LongAdder     loads     = new LongAdder();
+    private final LongAdder     evictions = new LongAdder();
+
+    /**
+     * Create a new {@link ClassCache}.
+     *
+     * @param loader
+     *         The {@link Function} computing the value of a class the first time it is requested.
+     */
+    public ClassCache(Function<Class<?>, V> loader) {
+
+        LongAdder evictions = this.evictions;
+
+        this.values = new ClassValue<>() {
+            @Override
+            protected V computeValue(Class<?> type) {
+
+                V value = loader.apply(type);
+                ClassCache.this.loads.increment();
+                // The cleaning action must not capture the class, otherwise it would never become unreachable.
+                CLEANER.register(type, evictions::increment);
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Retrieve the value of the provided class, computing it if necessary.
+     *
+     * @param type
+     *         The class.
+     *
+     * @return The value of the class.
+     */
+    public V get(Class<?> type) {
+
+        return this.values.get(type);
+    }
+
+    /**
+     * Retrieve a snapshot of the statistics of this cache.
+     *
+     * @return The {@link CacheStats}.
+     */
+    public CacheStats stats() {
+
+        long evictions = this.evictions.sum();
+        long loads     = this.loads.sum();
+        return new CacheStats(loads - evictions, loads, evictions);
+    }
+
+}
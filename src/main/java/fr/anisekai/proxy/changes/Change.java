@@ -0,0 +1,50 @@
+package fr.anisekai.proxy.changes;
+
+import fr.anisekai.proxy.interfaces.ContainerState;
+import fr.anisekai.proxy.interfaces.State;
+import fr.anisekai.proxy.reflection.Property;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A change made through a proxy of a {@link fr.anisekai.proxy.ClassProxyFactory}: either a property written through an
+ * intercepted setter, or a mutation of a container.
+ * <p>
+ * Values are raw values, never proxies. Changes are recorded once applied (mutations failing with an exception are not
+ * recorded), so that listeners always observe the modified proxy or container. Container mutations only tell which key
+ * (for maps) or element (for collections) they touch: the resulting changes of the container are available through
+ * {@link ContainerState#getChanges()}.
+ *
+ * @param sequence
+ *         The position of the change among the changes of the factory, starting at zero.
+ * @param state
+ *         The {@link State} of the proxy or container which has been modified.
+ * @param property
+ *         The {@link Property} which has been written, or which holds the mutated container.
+ * @param key
+ *         The key or element touched by a container mutation, or {@code null} for property writes and for container
+ *         mutations whose keys or elements are not known (such as {@code clear()}).
+ * @param oldValue
+ *         The value of the property before the write, or {@code null} for container mutations.
+ * @param newValue
+ *         The value written to the property, or {@code null} for container mutations.
+ */
+public record Change(
+        long sequence,
+        State<?> state,
+        Property property,
+        @Nullable Object key,
+        @Nullable Object oldValue,
+        @Nullable Object newValue
+) {
+
+    /**
+     * Check if this change is a container mutation rather than a property write.
+     *
+     * @return {@code true} if a container has been mutated, {@code false} if a property has been written.
+     */
+    public boolean isContainerChange() {
+
+        return this.state instanceof ContainerState<?>;
+    }
+
+}
@@ -0,0 +1,47 @@
+package fr.anisekai.proxy.changes;
+
+import fr.anisekai.proxy.interfaces.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the changes made through the proxies of a {@link fr.anisekai.proxy.ClassProxyFactory}, as registered with
+ * {@link fr.anisekai.proxy.ClassProxyFactory#addChangeListener(ChangeListener, DeliveryMode)}. When and from which
+ * thread changes are received depends on the {@link DeliveryMode} of the listener.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+
+    /**
+     * Create a listener only receiving the changes made to the provided state, forwarding them to another listener.
+     * Batches without any change of the state are not forwarded.
+     *
+     * @param state
+     *         The {@link State} whose changes are received, compared by identity.
+     * @param listener
+     *         The listener receiving the changes of the state.
+     *
+     * @return A new {@link ChangeListener}.
+     */
+    static ChangeListener forState(State<?> state, ChangeListener listener) {
+
+        return changes -> {
+            List<Change> filtered = new ArrayList<>(changes.size());
+            for (Change change : changes) {
+                if (change.state() == state) filtered.add(change);
+            }
+            if (!filtered.isEmpty()) listener.onChanges(List.copyOf(filtered));
+        };
+    }
+
+    /**
+     * Receive a batch of changes, ordered by {@linkplain Change#sequence() sequence number}. Exceptions thrown by this
+     * method are logged, and never reach the code which made the changes.
+     *
+     * @param changes
+     *         The changes, which is never empty.
+     */
+    void onChanges(List<Change> changes);
+
+}
@@ -0,0 +1,30 @@
+package fr.anisekai.proxy.changes;
+
+/**
+ * Defines when a {@link ChangeListener} receives the changes made through the proxies of a factory.
+ */
+public enum DeliveryMode {
+
+    /**
+     * Each change is delivered on its own, by the thread making it, as soon as it has been applied: the listener sees
+     * the modified proxy or container. Listeners are called outside of the write lock of the factory (in
+     * {@link fr.anisekai.proxy.ThreadingMode#CONCURRENT} mode), but still delay the thread making the change, so they
+     * must be fast. Changes made by the listener through the proxies are delivered to it recursively.
+     */
+    SYNCHRONOUS,
+
+    /**
+     * Changes are buffered and delivered as a single batch when {@link fr.anisekai.proxy.ClassProxyFactory#flush()}
+     * is called, by the calling thread. Repeated changes of the same property (or of the same key of a container)
+     * within a batch are coalesced.
+     */
+    BATCHED,
+
+    /**
+     * Changes are buffered and delivered in batches by another thread, a virtual thread unless an executor is
+     * provided. Changes made while a batch is being delivered are coalesced into the next batch, and batches are
+     * delivered one at a time, in order.
+     */
+    ASYNCHRONOUS
+
+}
@@ -0,0 +1,31 @@
+package fr.anisekai.proxy.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The net changes made to a {@link java.util.Set} (or to any collection without positions).
+ *
+ * @param added
+ *         The elements which were not in the collection originally, and are now.
+ * @param removed
+ *         The elements which were in the collection originally, and are not anymore.
+ * @param <E>
+ *         The type of the elements.
+ */
+public record CollectionDiff<E>(List<E> added, List<E> removed) implements ContainerDiff {
+
+    public CollectionDiff {
+
+        added   = Collections.unmodifiableList(new ArrayList<>(added));
+        removed = Collections.unmodifiableList(new ArrayList<>(removed));
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return this.added.isEmpty() && this.removed.isEmpty();
+    }
+
+}
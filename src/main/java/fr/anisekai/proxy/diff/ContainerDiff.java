@@ -0,0 +1,19 @@
+package fr.anisekai.proxy.diff;
+
+/**
+ * The net changes made to a container (a {@link java.util.Collection} or a {@link java.util.Map}) through its proxy,
+ * relative to its original content.
+ * <p>
+ * Changes are net: operations cancelling each other out (such as adding an element and removing it afterward) do not
+ * appear in the diff, so that persisting a container only requires touching the elements listed here.
+ */
+public sealed interface ContainerDiff permits CollectionDiff, ListDiff, MapDiff {
+
+    /**
+     * Check if this diff contains no change at all.
+     *
+     * @return {@code true} if the container has the same content as originally, {@code false} otherwise.
+     */
+    boolean isEmpty();
+
+}
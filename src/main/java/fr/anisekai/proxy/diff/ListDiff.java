@@ -0,0 +1,60 @@
+package fr.anisekai.proxy.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The net changes made to a {@link java.util.List}, expressed as windows of positions: every element outside of the
+ * windows is unchanged, while the {@link Window#removed()} elements of each window have been replaced by its
+ * {@link Window#added()} ones.
+ * <p>
+ * Windows are ordered by position and never overlap. Appending, inserting, removing or replacing elements in distinct
+ * regions of the list yields a window per region, so that two distant edits of a large list only report the elements
+ * they touched.
+ *
+ * @param windows
+ *         The windows of the changes, ordered by position.
+ * @param <E>
+ *         The type of the elements.
+ */
+public record ListDiff<E>(List<Window<E>> windows) implements ContainerDiff {
+
+    public ListDiff {
+
+        windows = Collections.unmodifiableList(new ArrayList<>(windows));
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return this.windows.isEmpty();
+    }
+
+    /**
+     * A region of the list whose elements changed.
+     * <p>
+     * The position of a window is its position in the current list, which is also its position in the original list
+     * once the windows before it have been applied: replacing the {@link #removed()} elements by the {@link #added()}
+     * ones at {@link #from()} for each window, in order, turns the original list into the current one.
+     *
+     * @param from
+     *         The position of the first changed element.
+     * @param removed
+     *         The original elements of the window.
+     * @param added
+     *         The current elements of the window.
+     * @param <E>
+     *         The type of the elements.
+     */
+    public record Window<E>(int from, List<E> removed, List<E> added) {
+
+        public Window {
+
+            removed = Collections.unmodifiableList(new ArrayList<>(removed));
+            added   = Collections.unmodifiableList(new ArrayList<>(added));
+        }
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package fr.anisekai.proxy.diff;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The net changes made to a {@link java.util.Map}.
+ *
+ * @param put
+ *         The entries which were added or whose value changed, with their current value.
+ * @param removed
+ *         The entries which were removed, with their original value.
+ * @param <K>
+ *         The type of the keys.
+ * @param <V>
+ *         The type of the values.
+ */
+public record MapDiff<K, V>(Map<K, V> put, Map<K, V> removed) implements ContainerDiff {
+
+    public MapDiff {
+
+        put     = Collections.unmodifiableMap(new LinkedHashMap<>(put));
+        removed = Collections.unmodifiableMap(new LinkedHashMap<>(removed));
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return this.put.isEmpty() && this.removed.isEmpty();
+    }
+
+}
@@ -1,7 +1,8 @@
 package fr.anisekai.proxy.exceptions;
 
 /**
- * Specific subclass of {@link ProxyException} used when a proxy is used without any interceptor available.
+ * Specific subclass of {@link ProxyException} used when a proxy is used without any interceptor available, or from
+ * another thread than the one its factory is confined to (see {@link fr.anisekai.proxy.ThreadingMode#CONFINED}).
  */
 public class ProxyAccessException extends ProxyException {
 
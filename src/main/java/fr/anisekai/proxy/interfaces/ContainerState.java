@@ -0,0 +1,30 @@
+package fr.anisekai.proxy.interfaces;
+
+import fr.anisekai.proxy.diff.ContainerDiff;
+
+/**
+ * The {@link State} of a proxied container ({@link java.util.Collection} or {@link java.util.Map}).
+ * <p>
+ * Containers have no properties, so their changes are exposed through {@link #getChanges()} rather than through
+ * {@link #getOriginalState()} and {@link #getDifferentialState()}, which are always empty.
+ *
+ * @param <T>
+ *         The type of the container.
+ */
+public interface ContainerState<T> extends State<T> {
+
+    /**
+     * Retrieve the net changes made to the container through its proxy since it was created (or since it was last
+     * reverted).
+     * <p>
+     * As computing the net changes requires comparing the container with its original content, {@link #isDirty()} is
+     * conservative and stays {@code true} after changes cancelling each other out, until this method finds no net
+     * change and marks the container as clean again.
+     *
+     * @return A {@link ContainerDiff}, which is a {@link fr.anisekai.proxy.diff.MapDiff} for maps, a
+     *         {@link fr.anisekai.proxy.diff.ListDiff} for lists, and a {@link fr.anisekai.proxy.diff.CollectionDiff}
+     *         for other collections.
+     */
+    ContainerDiff getChanges();
+
+}
@@ -0,0 +1,33 @@
+package fr.anisekai.proxy.interfaces;
+
+/**
+ * Contract implemented by every generated proxy class, giving access to the {@link ProxyInterceptor} stored in a field
+ * of the proxy instance itself.
+ * <p>
+ * Storing the interceptor in the proxy allows each intercepted call to be dispatched directly, without looking up the
+ * interceptor in any registry. This interface is an implementation detail of the generated proxies: its methods are
+ * never intercepted and should not be called by user code.
+ */
+public interface Interceptable {
+
+    /**
+     * The name of the field holding the {@link ProxyInterceptor} in generated proxy classes.
+     */
+    String INTERCEPTOR_FIELD = "deepProxy$interceptor";
+
+    /**
+     * Retrieve the {@link ProxyInterceptor} handling calls made on this proxy.
+     *
+     * @return The {@link ProxyInterceptor}, or {@code null} if the proxy has been closed.
+     */
+    ProxyInterceptor<?> $getInterceptor();
+
+    /**
+     * Define the {@link ProxyInterceptor} handling calls made on this proxy.
+     *
+     * @param interceptor
+     *         The {@link ProxyInterceptor}, or {@code null} to detach the proxy from its state.
+     */
+    void $setInterceptor(ProxyInterceptor<?> interceptor);
+
+}
@@ -67,6 +67,12 @@ public interface ProxyPolicy {
             // java.util contains collections (already handled) and other utilities that are not typically stateful domain objects.
             return !pkg.startsWith("java.util");
         }
+
+        @Override
+        public boolean isClassBased() {
+
+            return true;
+        }
     };
 
     /**
@@ -106,4 +112,23 @@ public interface ProxyPolicy {
         return object instanceof List || object instanceof Map || object instanceof Set;
     }
 
+    /**
+     * Determines if the decisions of this policy only depend on the {@link Property} and on the class of the object,
+     * and never on the object itself.
+     * <p>
+     * If this method returns {@code true}, the framework evaluates {@link #shouldProxy(Property, Object)} and
+     * {@link #shouldProxyContainer(Object)} once per property and class of value, and reuses the decision for every
+     * following value of the same class.
+     * <p>
+     * The default implementation returns {@code false}, as a policy may inspect the object itself.
+     * {@link #DEFAULT} returns {@code true}.
+     *
+     * @return {@code true} if the decisions of this policy can be cached per property and class, {@code false}
+     *         otherwise.
+     */
+    default boolean isClassBased() {
+
+        return false;
+    }
+
 }
@@ -0,0 +1,55 @@
+package fr.anisekai.proxy.metrics;
+
+import java.util.Map;
+
+/**
+ * A destination for the metrics of a {@link fr.anisekai.proxy.ClassProxyFactory}, allowing to bridge them to any
+ * monitoring library (see {@link MetricsSnapshot#publishTo(MetricsSink)}).
+ * <p>
+ * Metrics are published by name, with tags distinguishing their dimensions (such as the kind of intercept, or the class
+ * of the proxies). Counters and timers are cumulative since the creation of the metrics: sinks exposing rates must
+ * compute them from successive publications.
+ */
+public interface MetricsSink {
+
+    /**
+     * Publish the current value of a monotonic counter.
+     *
+     * @param name
+     *         The name of the counter.
+     * @param tags
+     *         The tags of the counter, which may be empty.
+     * @param count
+     *         The number of events counted since the metrics have been created.
+     */
+    void counter(String name, Map<String, String> tags, long count);
+
+    /**
+     * Publish the current value of a gauge.
+     *
+     * @param name
+     *         The name of the gauge.
+     * @param tags
+     *         The tags of the gauge, which may be empty.
+     * @param value
+     *         The current value of the gauge.
+     */
+    void gauge(String name, Map<String, String> tags, long value);
+
+    /**
+     * Publish the current state of a timer.
+     *
+     * @param name
+     *         The name of the timer.
+     * @param tags
+     *         The tags of the timer, which may be empty.
+     * @param count
+     *         The number of events timed since the metrics have been created.
+     * @param totalNanos
+     *         The total duration of the timed events, in nanoseconds.
+     * @param maxNanos
+     *         The longest duration of a timed event, in nanoseconds.
+     */
+    void timer(String name, Map<String, String> tags, long count, long totalNanos, long maxNanos);
+
+}
@@ -0,0 +1,114 @@
+package fr.anisekai.proxy.metrics;
+
+import java.util.Map;
+
+/**
+ * A snapshot of the metrics of a {@link fr.anisekai.proxy.ClassProxyFactory}.
+ * <p>
+ * Proxy classes are shared by every factory of the application, so the class generation metrics are application-wide:
+ * they are the same for every factory.
+ *
+ * @param liveProxies
+ *         The number of live class proxies, per name of proxied class.
+ * @param liveContainers
+ *         The number of live container proxies, per name of proxied class.
+ * @param getterIntercepts
+ *         The number of getters intercepted by class proxies.
+ * @param setterIntercepts
+ *         The number of setters intercepted by class proxies.
+ * @param otherIntercepts
+ *         The number of other methods intercepted by class proxies.
+ * @param dirtyChecks
+ *         The number of dirty checks made on the states of the factory.
+ * @param dirtyNodesVisited
+ *         The number of states visited by these dirty checks.
+ * @param classGenerations
+ *         The number of proxy classes resolved by the application.
+ * @param classGenerationNanos
+ *         The total time spent resolving proxy classes, in nanoseconds.
+ * @param classGenerationMaxNanos
+ *         The longest time spent resolving a single proxy class, in nanoseconds.
+ */
+public record MetricsSnapshot(
+        Map<String, Long> liveProxies,
+        Map<String, Long> liveContainers,
+        long getterIntercepts,
+        long setterIntercepts,
+        long otherIntercepts,
+        long dirtyChecks,
+        long dirtyNodesVisited,
+        long classGenerations,
+        long classGenerationNanos,
+        long classGenerationMaxNanos
+) {
+
+    public MetricsSnapshot {
+
+        liveProxies    = Map.copyOf(liveProxies);
+        liveContainers = Map.copyOf(liveContainers);
+    }
+
+    /**
+     * Retrieve the total number of live class proxies.
+     *
+     * @return The number of live class proxies.
+     */
+    public long totalLiveProxies() {
+
+        return sum(this.liveProxies);
+    }
+
+    /**
+     * Retrieve the total number of live container proxies.
+     *
+     * @return The number of live container proxies.
+     */
+    public long totalLiveContainers() {
+
+        return sum(this.liveContainers);
+    }
+
+    /**
+     * Retrieve the total number of methods intercepted by class proxies.
+     *
+     * @return The number of intercepted methods.
+     */
+    public long totalIntercepts() {
+
+        return this.getterIntercepts + this.setterIntercepts + this.otherIntercepts;
+    }
+
+    /**
+     * Publish every metric of this snapshot to the provided {@link MetricsSink}.
+     *
+     * @param sink
+     *         The {@link MetricsSink}.
+     */
+    public void publishTo(MetricsSink sink) {
+
+        this.liveProxies.forEach((type, count) -> sink.gauge("deepproxy.proxies.live", Map.of("class", type), count));
+        this.liveContainers.forEach((type, count) -> sink.gauge("deepproxy.containers.live", Map.of("class", type), count));
+
+        sink.counter("deepproxy.intercepts", Map.of("kind", "getter"), this.getterIntercepts);
+        sink.counter("deepproxy.intercepts", Map.of("kind", "setter"), this.setterIntercepts);
+        sink.counter("deepproxy.intercepts", Map.of("kind", "other"), this.otherIntercepts);
+        sink.counter("deepproxy.dirty.checks", Map.of(), this.dirtyChecks);
+        sink.counter("deepproxy.dirty.nodes", Map.of(), this.dirtyNodesVisited);
+
+        sink.timer(
+                "deepproxy.class.generation",
+                Map.of(),
+                this.classGenerations,
+                this.classGenerationNanos,
+                this.classGenerationMaxNanos
+        );
+    }
+
+    private static long sum(Map<String, Long> counts) {
+
+        long total = 0;
+        for (long count : counts.values()) total += count;
+        return total;
+    }
+
+}
@@ -0,0 +1,97 @@
+package fr.anisekai.proxy.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the metrics of a {@link fr.anisekai.proxy.ClassProxyFactory}. Each attribute is read from the live
+ * counters when requested.
+ *
+ * @see MetricsSnapshot
+ */
+public interface ProxyMetricsMXBean {
+
+    /**
+     * Retrieve the number of class proxies currently registered in the factory.
+     *
+     * @return The number of live class proxies.
+     */
+    long getLiveProxies();
+
+    /**
+     * Retrieve the number of class proxies currently registered in the factory, per name of proxied class.
+     *
+     * @return The number of live class proxies of each class.
+     */
+    Map<String, Long> getLiveProxiesPerClass();
+
+    /**
+     * Retrieve the number of container proxies currently registered in the factory.
+     *
+     * @return The number of live container proxies.
+     */
+    long getLiveContainers();
+
+    /**
+     * Retrieve the number of container proxies currently registered in the factory, per name of proxied class.
+     *
+     * @return The number of live container proxies of each class.
+     */
+    Map<String, Long> getLiveContainersPerClass();
+
+    /**
+     * Retrieve the number of getters intercepted by class proxies.
+     *
+     * @return The number of intercepted getters.
+     */
+    long getGetterIntercepts();
+
+    /**
+     * Retrieve the number of setters intercepted by class proxies.
+     *
+     * @return The number of intercepted setters.
+     */
+    long getSetterIntercepts();
+
+    /**
+     * Retrieve the number of other methods intercepted by class proxies.
+     *
+     * @return The number of other intercepted methods.
+     */
+    long getOtherIntercepts();
+
+    /**
+     * Retrieve the number of dirty checks made on the states of the factory.
+     *
+     * @return The number of dirty checks.
+     */
+    long getDirtyChecks();
+
+    /**
+     * Retrieve the number of states visited by the dirty checks of the factory.
+     *
+     * @return The number of visited states.
+     */
+    long getDirtyNodesVisited();
+
+    /**
+     * Retrieve the number of proxy classes resolved by the application, either generated or pregenerated.
+     *
+     * @return The number of resolved proxy classes.
+     */
+    long getClassGenerations();
+
+    /**
+     * Retrieve the total time spent resolving proxy classes by the application.
+     *
+     * @return The total resolution time, in nanoseconds.
+     */
+    long getClassGenerationNanos();
+
+    /**
+     * Retrieve the longest time spent resolving a single proxy class by the application.
+     *
+     * @return The longest resolution time, in nanoseconds.
+     */
+    long getClassGenerationMaxNanos();
+
+}
@@ -0,0 +1,157 @@
+package fr.anisekai.proxy.reflection;
+
+import fr.anisekai.proxy.exceptions.ProxyInvocationException;
+
+import java.lang.invoke.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Compiles getter and setter {@link Method}s into functional accessors that can be inlined by the JIT, unlike
+ * {@link Method#invoke(Object, Object...)}.
+ * <p>
+ * Accessors are generated using {@link LambdaMetafactory} whenever the declaring class can be accessed with full
+ * privileges (which is the case for classes living in the unnamed module of the same class loader). Otherwise, they
+ * fall back to a {@link MethodHandle} and, as a last resort, to plain reflection.
+ */
+final class Accessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Accessors() {}
+
+    /**
+     * Compile a getter {@link Method} into a {@link Function} taking the instance and returning the property value.
+     *
+     * @param getter
+     *         The getter {@link Method}.
+     *
+     * @return A {@link Function} calling the getter.
+     */
+    @SuppressWarnings("unchecked")
+    static Function<Object, Object> getter(Method getter) {
+
+        Class<?> owner = getter.getDeclaringClass();
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, LOOKUP);
+            MethodHandle         handle = lookup.unreflect(getter);
+
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(boxed(getter.getReturnType()), owner)
+            );
+
+            return (Function<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable ignored) {
+            // Not accessible with full privileges, try the slower alternatives.
+        }
+
+        MethodHandle handle = unreflect(getter);
+        if (handle != null) {
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+            return instance -> {
+                try {
+                    return generic.invokeExact(instance);
+                } catch (Throwable e) {
+                    throw rethrow(getter, e);
+                }
+            };
+        }
+
+        return instance -> {
+            try {
+                return getter.invoke(instance);
+            } catch (InvocationTargetException e) {
+                throw rethrow(getter, e.getCause());
+            } catch (IllegalAccessException e) {
+                throw rethrow(getter, e);
+            }
+        };
+    }
+
+    /**
+     * Compile a setter {@link Method} into a {@link BiConsumer} taking the instance and the new property value.
+     *
+     * @param setter
+     *         The setter {@link Method}.
+     *
+     * @return A {@link BiConsumer} calling the setter.
+     */
+    @SuppressWarnings("unchecked")
+    static BiConsumer<Object, Object> setter(Method setter) {
+
+        Class<?> owner = setter.getDeclaringClass();
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, LOOKUP);
+            MethodHandle         handle = lookup.unreflect(setter);
+
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(void.class, owner, boxed(setter.getParameterTypes()[0]))
+            );
+
+            return (BiConsumer<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable ignored) {
+            // Not accessible with full privileges, try the slower alternatives.
+        }
+
+        MethodHandle handle = unreflect(setter);
+        if (handle != null) {
+            MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (instance, value) -> {
+                try {
+                    generic.invokeExact(instance, value);
+                } catch (Throwable e) {
+                    throw rethrow(setter, e);
+                }
+            };
+        }
+
+        return (instance, value) -> {
+            try {
+                setter.invoke(instance, value);
+            } catch (InvocationTargetException e) {
+                throw rethrow(setter, e.getCause());
+            } catch (IllegalAccessException e) {
+                throw rethrow(setter, e);
+            }
+        };
+    }
+
+    private static MethodHandle unreflect(Method method) {
+
+        try {
+            if (method.trySetAccessible()) {
+                return LOOKUP.unreflect(method);
+            }
+            return MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static RuntimeException rethrow(Method method, Throwable throwable) {
+
+        if (throwable instanceof RuntimeException runtimeException) return runtimeException;
+        if (throwable instanceof Error error) throw error;
+        return new ProxyInvocationException("Failed to invoke " + method.getName(), throwable);
+    }
+
+}
@@ -1,7 +1,6 @@
 package fr.anisekai.proxy.reflection;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Objects;
 
 /**
@@ -23,7 +22,7 @@ public class LinkedProperty extends Property {
      */
     public LinkedProperty(Property property, Object instance) {
 
-        super(property.getField(), property.getGetter(), property.getSetter(), property.getName());
+        super(property);
         this.instance = instance;
     }
 
@@ -33,13 +32,14 @@ public class LinkedProperty extends Property {
      * @return The value of the {@link Property} in the underlying {@link Object}.
      *
      * @throws InvocationTargetException
-     *         See {@link Method#invoke(Object, Object...)}
+     *         Kept for compatibility, exceptions thrown by the getter are now propagated as is (see
+     *         {@link #read(Object)}).
      * @throws IllegalAccessException
-     *         See {@link Method#invoke(Object, Object...)}
+     *         Kept for compatibility, the getter is compiled when the {@link Property} is created.
      */
     public Object getValue() throws InvocationTargetException, IllegalAccessException {
 
-        return this.getGetter().invoke(this.instance);
+        return this.read(this.instance);
     }
 
     /**
@@ -49,13 +49,14 @@ public class LinkedProperty extends Property {
      *         The new value for the {@link Property} in the underlying {@link Object}.
      *
      * @throws InvocationTargetException
-     *         See {@link Method#invoke(Object, Object...)}
+     *         Kept for compatibility, exceptions thrown by the setter are now propagated as is (see
+     *         {@link #write(Object, Object)}).
      * @throws IllegalAccessException
-     *         See {@link Method#invoke(Object, Object...)}
+     *         Kept for compatibility, the setter is compiled when the {@link Property} is created.
      */
     public void setValue(Object value) throws InvocationTargetException, IllegalAccessException {
 
-        this.getSetter().invoke(this.instance, value);
+        this.write(this.instance, value);
     }
 
     @Override
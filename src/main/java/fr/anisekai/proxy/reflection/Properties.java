@@ -1,15 +1,17 @@
 package fr.anisekai.proxy.reflection;
 
+import fr.anisekai.proxy.cache.CacheStats;
+import fr.anisekai.proxy.cache.ClassCache;
+
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public final class Properties {
 
-    private static final Map<Class<?>, Set<Property>> LOOKUP = new ConcurrentHashMap<>();
+    private static final ClassCache<PropertyIndex> LOOKUP = new ClassCache<>(Properties::computeProperties);
 
     private Properties() {
 
@@ -26,7 +28,32 @@ public final class Properties {
      */
     public static Set<Property> getPropertiesOf(Class<?> clazz) {
 
-        return LOOKUP.computeIfAbsent(clazz, Properties::computeProperties);
+        return LOOKUP.get(clazz).asSet();
+    }
+
+    /**
+     * Introspects a class and returns its valid JavaBean properties (see {@link #getPropertiesOf(Class)}) indexed by
+     * their ordinal.
+     *
+     * @param clazz
+     *         The class to analyze.
+     *
+     * @return The {@link PropertyIndex} of the class.
+     */
+    public static PropertyIndex getIndexOf(Class<?> clazz) {
+
+        return LOOKUP.get(clazz);
+    }
+
+    /**
+     * Retrieve the statistics of the cache of properties. Properties of a class are dropped from the cache when the
+     * class is unloaded.
+     *
+     * @return The {@link CacheStats} of the property cache.
+     */
+    public static CacheStats getCacheStats() {
+
+        return LOOKUP.stats();
     }
 
     /**
@@ -46,23 +73,23 @@ public final class Properties {
                 .collect(Collectors.toSet());
     }
 
-    private static Set<Property> computeProperties(Class<?> clazz) {
+    private static PropertyIndex computeProperties(Class<?> clazz) {
 
         Map<String, List<Method>> methodsByProperty = Arrays
                 .stream(clazz.getMethods())
                 .filter(method -> !method.getDeclaringClass().equals(Object.class))
                 .filter(Properties::isPropertyMethod)
-                .collect(Collectors.groupingBy(Properties::getPropertyName));
+                .collect(Collectors.groupingBy(Properties::getPropertyName, TreeMap::new, Collectors.toList()));
 
-        Set<Property> properties = new HashSet<>();
+        List<Property> properties = new ArrayList<>();
         for (Map.Entry<String, List<Method>> entry : methodsByProperty.entrySet()) {
-            findValidPair(clazz, entry.getValue(), entry.getKey()).ifPresent(properties::add);
+            findValidPair(clazz, entry.getValue(), entry.getKey(), properties.size()).ifPresent(properties::add);
         }
 
-        return properties;
+        return new PropertyIndex(properties);
     }
 
-    private static Optional<Property> findValidPair(Class<?> originatingClass, Collection<Method> methods, String propertyName) {
+    private static Optional<Property> findValidPair(Class<?> originatingClass, Collection<Method> methods, String propertyName, int ordinal) {
 
         Optional<Method> getterOpt = methods.stream().filter(Properties::isGetter).findFirst();
         if (getterOpt.isEmpty()) {
@@ -81,7 +108,7 @@ public final class Properties {
 
         return setterOpt.flatMap(
                 method -> findFieldInHierarchy(originatingClass, propertyName)
-                        .map(field -> new Property(field, getter, method, propertyName))
+                        .map(field -> new Property(field, getter, method, propertyName, ordinal))
         );
 
     }
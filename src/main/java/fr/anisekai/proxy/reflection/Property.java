@@ -1,18 +1,33 @@
 package fr.anisekai.proxy.reflection;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.lang.reflect.*;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Represents a complete JavaBean property, including its backing field, getter/setter methods, and name.
+ * <p>
+ * The getter and setter are compiled into accessors when the property is created, allowing to {@link #read(Object)}
+ * and {@link #write(Object, Object)} the property without going through reflection.
+ * <p>
+ * The declared return type of the getter is also analyzed once, to tell whether the values of the property (see
+ * {@link #isValueTyped()}) or the elements of its containers (see {@link #hasValueTypedElements()}) can ever be
+ * proxied.
  */
 public class Property {
 
-    private final Field  field;
-    private final Method getter;
-    private final Method setter;
-    private final String name;
+    private final Field                      field;
+    private final Method                     getter;
+    private final Method                     setter;
+    private final String                     name;
+    private final int                        ordinal;
+    private final Function<Object, Object>   reader;
+    private final BiConsumer<Object, Object> writer;
+    private final boolean                    valueTyped;
+    private final boolean                    valueTypedElements;
 
     /**
      * Create a new {@link Property} instance.
@@ -28,10 +43,76 @@ public class Property {
      */
     public Property(Field field, Method getter, Method setter, String name) {
 
-        this.field  = field;
-        this.getter = getter;
-        this.setter = setter;
-        this.name   = name;
+        this(field, getter, setter, name, -1);
+    }
+
+    Property(Field field, Method getter, Method setter, String name, int ordinal) {
+
+        this.field   = field;
+        this.getter  = getter;
+        this.setter  = setter;
+        this.name    = name;
+        this.ordinal = ordinal;
+        this.reader  = Accessors.getter(getter);
+        this.writer  = Accessors.setter(setter);
+
+        this.valueTyped         = isValueType(getter.getGenericReturnType());
+        this.valueTypedElements = hasValueTypeElements(getter.getGenericReturnType());
+    }
+
+    /**
+     * Create a new {@link Property} instance sharing the metadata and compiled accessors of another {@link Property}.
+     *
+     * @param property
+     *         The {@link Property} to copy.
+     */
+    protected Property(Property property) {
+
+        this.field   = property.field;
+        this.getter  = property.getter;
+        this.setter  = property.setter;
+        this.name    = property.name;
+        this.ordinal = property.ordinal;
+        this.reader  = property.reader;
+        this.writer  = property.writer;
+
+        this.valueTyped         = property.valueTyped;
+        this.valueTypedElements = property.valueTypedElements;
+    }
+
+    /**
+     * Check if every value of the provided type is a plain value: primitives, arrays, enums, records and final classes
+     * can never be subclassed by a proxy, and cannot be proxied as containers unless they are a {@link Collection} or a
+     * {@link Map}.
+     */
+    private static boolean isValueType(Type type) {
+
+        if (!(type instanceof Class<?> clazz)) return false;
+        if (clazz.isPrimitive() || clazz.isArray() || clazz.isEnum() || Enum.class.isAssignableFrom(clazz)) return true;
+        if (Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz)) return false;
+
+        return clazz.isRecord() || Modifier.isFinal(clazz.getModifiers());
+    }
+
+    /**
+     * Check if the provided type is a {@link Collection} or a {@link Map} whose elements (keys and values, for maps) are
+     * all plain values, such as {@code List<String>} or {@code Map<String, Integer>}.
+     */
+    private static boolean hasValueTypeElements(Type type) {
+
+        if (!(type instanceof ParameterizedType parameterized)) return false;
+        if (!(parameterized.getRawType() instanceof Class<?> raw)) return false;
+
+        if (Collection.class.isAssignableFrom(raw) || Map.class.isAssignableFrom(raw)) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (arguments.length == 0) return false;
+
+            for (Type argument : arguments) {
+                if (!isValueType(argument)) return false;
+            }
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -74,6 +155,69 @@ public class Property {
         return this.name;
     }
 
+    /**
+     * Retrieve the ordinal of this {@link Property} within the {@link PropertyIndex} of its class.
+     *
+     * @return The ordinal, or {@code -1} if this {@link Property} has not been created by {@link Properties}.
+     */
+    public int getOrdinal() {
+
+        return this.ordinal;
+    }
+
+    /**
+     * Check if the values of this {@link Property} can never be proxied, because the declared type of its getter is a
+     * primitive, an array, an enum, a record or a final class (such as {@link String} or boxed primitives) which is not a
+     * container.
+     *
+     * @return {@code true} if the values of this {@link Property} are never proxied, {@code false} otherwise.
+     */
+    public boolean isValueTyped() {
+
+        return this.valueTyped;
+    }
+
+    /**
+     * Check if the declared type of the getter of this {@link Property} is a container whose elements can never be
+     * proxied, such as {@code List<String>} or {@code Map<String, Integer>}. The container itself is still proxied to
+     * track its mutations.
+     *
+     * @return {@code true} if the elements of the containers held by this {@link Property} are never proxied,
+     *         {@code false} otherwise.
+     */
+    public boolean hasValueTypedElements() {
+
+        return this.valueTypedElements;
+    }
+
+    /**
+     * Read the value of this {@link Property} on the provided instance using the compiled getter. Any exception thrown by
+     * the getter is propagated as is.
+     *
+     * @param instance
+     *         The {@link Object} from which the value will be read.
+     *
+     * @return The value of this {@link Property}.
+     */
+    public Object read(Object instance) {
+
+        return this.reader.apply(instance);
+    }
+
+    /**
+     * Write the value of this {@link Property} on the provided instance using the compiled setter. Any exception thrown
+     * by the setter is propagated as is.
+     *
+     * @param instance
+     *         The {@link Object} on which the value will be written.
+     * @param value
+     *         The new value of this {@link Property}.
+     */
+    public void write(Object instance, Object value) {
+
+        this.writer.accept(instance, value);
+    }
+
     @Override
     public boolean equals(Object o) {
 
@@ -0,0 +1,113 @@
+package fr.anisekai.proxy.reflection;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * The properties of a class, each of them identified by a stable ordinal (see {@link Property#getOrdinal()}) ranging
+ * from {@code 0} to {@link #size()} (exclusive), in the alphabetical order of their names.
+ * <p>
+ * Ordinals allow per-instance data to be stored in flat arrays instead of maps keyed by {@link Property}, while the
+ * {@link Method} lookups needed to dispatch an intercepted call are shared by every instance of the class.
+ */
+public final class PropertyIndex {
+
+    private final Property[]           properties;
+    private final Set<Property>        propertySet;
+    private final Map<Method, Integer> getters;
+    private final Map<Method, Integer> setters;
+
+    PropertyIndex(List<Property> properties) {
+
+        this.properties  = properties.toArray(Property[]::new);
+        this.propertySet = Collections.unmodifiableSet(new LinkedHashSet<>(properties));
+        this.getters     = HashMap.newHashMap(this.properties.length);
+        this.setters     = HashMap.newHashMap(this.properties.length);
+
+        for (int ordinal = 0; ordinal < this.properties.length; ordinal++) {
+            Property property = this.properties[ordinal];
+            if (property.getOrdinal() != ordinal) {
+                throw new IllegalArgumentException("Property " + property.getName() + " has an unexpected ordinal");
+            }
+            this.getters.put(property.getGetter(), ordinal);
+            this.setters.put(property.getSetter(), ordinal);
+        }
+    }
+
+    /**
+     * Retrieve the number of properties in this {@link PropertyIndex}.
+     *
+     * @return The number of properties.
+     */
+    public int size() {
+
+        return this.properties.length;
+    }
+
+    /**
+     * Retrieve the {@link Property} having the provided ordinal.
+     *
+     * @param ordinal
+     *         The ordinal of the {@link Property}.
+     *
+     * @return A {@link Property}.
+     */
+    public Property get(int ordinal) {
+
+        return this.properties[ordinal];
+    }
+
+    /**
+     * Retrieve the ordinal of the provided {@link Property} in this {@link PropertyIndex}.
+     *
+     * @param candidate
+     *         The object that may be one of the properties of this {@link PropertyIndex}.
+     *
+     * @return The ordinal of the {@link Property}, or {@code -1} if it does not belong to this {@link PropertyIndex}.
+     */
+    public int ordinalOf(Object candidate) {
+
+        if (!(candidate instanceof Property property)) return -1;
+
+        int ordinal = property.getOrdinal();
+        if (ordinal < 0 || ordinal >= this.properties.length) return -1;
+        return this.properties[ordinal].equals(property) ? ordinal : -1;
+    }
+
+    /**
+     * Retrieve the ordinal of the property using the provided {@link Method} as getter.
+     *
+     * @param method
+     *         The {@link Method}.
+     *
+     * @return The ordinal of the property, or {@code -1} if the {@link Method} is not a getter.
+     */
+    public int getterOrdinal(Method method) {
+
+        return this.getters.getOrDefault(method, -1);
+    }
+
+    /**
+     * Retrieve the ordinal of the property using the provided {@link Method} as setter.
+     *
+     * @param method
+     *         The {@link Method}.
+     *
+     * @return The ordinal of the property, or {@code -1} if the {@link Method} is not a setter.
+     */
+    public int setterOrdinal(Method method) {
+
+        return this.setters.getOrDefault(method, -1);
+    }
+
+    /**
+     * Retrieve every property of this {@link PropertyIndex}, in the order of their ordinals.
+     *
+     * @return An unmodifiable {@link Set} of {@link Property}.
+     */
+    public Set<Property> asSet() {
+
+        return this.propertySet;
+    }
+
+}
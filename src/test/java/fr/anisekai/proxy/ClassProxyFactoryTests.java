@@ -1,12 +1,44 @@
 package fr.anisekai.proxy;
 
+import fr.anisekai.proxy.cache.CacheStats;
+import fr.anisekai.proxy.changes.Change;
+import fr.anisekai.proxy.changes.ChangeListener;
+import fr.anisekai.proxy.changes.DeliveryMode;
+import fr.anisekai.proxy.diff.CollectionDiff;
+import fr.anisekai.proxy.diff.ListDiff;
+import fr.anisekai.proxy.diff.MapDiff;
 import fr.anisekai.proxy.exceptions.ProxyAccessException;
+import fr.anisekai.proxy.interfaces.ContainerState;
+import fr.anisekai.proxy.interfaces.ProxyPolicy;
 import fr.anisekai.proxy.interfaces.State;
+import fr.anisekai.proxy.metrics.MetricsSink;
+import fr.anisekai.proxy.metrics.MetricsSnapshot;
 import fr.anisekai.proxy.reflection.Properties;
 import fr.anisekai.proxy.reflection.Property;
+import fr.anisekai.proxy.reflection.PropertyIndex;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.*;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -47,6 +79,96 @@ public class ClassProxyFactoryTests {
             Assertions.assertFalse(properties.containsKey("ignored"), "Extraneous 'ignored' property");
         }
 
+        @Test
+        @Order(2)
+        @DisplayName("Should read and write through compiled accessors")
+        void shouldReadAndWriteProperties() {
+
+            Map<String, Property> properties = Properties
+                    .getPropertiesOf(ExampleEntity.class)
+                    .stream()
+                    .collect(Collectors.toMap(Property::getName, Function.identity()));
+
+            ExampleEntity entity = ExampleEntity.create(1);
+            entity.setName("before");
+
+            Property name   = properties.get("name");
+            Property active = properties.get("active");
+
+            Assertions.assertEquals("before", name.read(entity), "Wrong value read");
+            Assertions.assertEquals(true, active.read(entity), "Wrong primitive value read");
+
+            name.write(entity, "after");
+            active.write(entity, false);
+
+            Assertions.assertEquals("after", entity.getName(), "Value not written");
+            Assertions.assertFalse(entity.isActive(), "Primitive value not written");
+        }
+
+        @Test
+        @Order(3)
+        @DisplayName("Should count cache loads")
+        void shouldCountCacheLoads() {
+
+            class Uncached {}
+
+            long loads = Properties.getCacheStats().loads();
+
+            Properties.getPropertiesOf(Uncached.class);
+            Properties.getPropertiesOf(Uncached.class);
+
+            CacheStats stats = Properties.getCacheStats();
+            Assertions.assertEquals(loads + 1, stats.loads(), "Properties not cached");
+            Assertions.assertTrue(stats.size() > 0, "Cached properties not counted");
+        }
+
+        @Test
+        @Order(4)
+        @DisplayName("Should index properties by ordinal")
+        void shouldIndexProperties() {
+
+            PropertyIndex index = Properties.getIndexOf(ExampleEntity.class);
+
+            Assertions.assertEquals(8, index.size(), "Wrong property count");
+
+            String previous = "";
+            for (int ordinal = 0; ordinal < index.size(); ordinal++) {
+                Property property = index.get(ordinal);
+
+                Assertions.assertEquals(ordinal, property.getOrdinal(), "Wrong ordinal");
+                Assertions.assertEquals(ordinal, index.ordinalOf(property), "Property not found");
+                Assertions.assertEquals(ordinal, index.getterOrdinal(property.getGetter()), "Getter not found");
+                Assertions.assertEquals(ordinal, index.setterOrdinal(property.getSetter()), "Setter not found");
+                Assertions.assertTrue(previous.compareTo(property.getName()) < 0, "Properties not sorted by name");
+                previous = property.getName();
+            }
+
+            Assertions.assertEquals(-1, index.ordinalOf("name"), "Unexpected ordinal");
+            Assertions.assertEquals(-1, index.getterOrdinal(index.get(0).getSetter()), "Setter used as getter");
+        }
+
+        @Test
+        @Order(5)
+        @DisplayName("Should analyze property types")
+        void shouldAnalyzePropertyTypes() {
+
+            Map<String, Property> properties = Properties
+                    .getPropertiesOf(ExampleEntity.class)
+                    .stream()
+                    .collect(Collectors.toMap(Property::getName, Function.identity()));
+
+            Assertions.assertTrue(properties.get("id").isValueTyped(), "Boxed type not value-typed");
+            Assertions.assertTrue(properties.get("name").isValueTyped(), "String not value-typed");
+            Assertions.assertTrue(properties.get("active").isValueTyped(), "Primitive not value-typed");
+            Assertions.assertFalse(properties.get("entity").isValueTyped(), "Entity value-typed");
+            Assertions.assertFalse(properties.get("tags").isValueTyped(), "Container value-typed");
+
+            Assertions.assertTrue(properties.get("tags").hasValueTypedElements(), "List<String> elements not value-typed");
+            Assertions.assertTrue(properties.get("mapping").hasValueTypedElements(), "Map<String, String> entries not value-typed");
+            Assertions.assertFalse(properties.get("entities").hasValueTypedElements(), "Entity elements value-typed");
+            Assertions.assertFalse(properties.get("entityMap").hasValueTypedElements(), "Entity values value-typed");
+        }
+
     }
 
     @Nested
@@ -688,6 +810,1339 @@ public class ClassProxyFactoryTests {
             factory.close();
         }
 
+        @Test
+        @Order(9)
+        @DisplayName("Should replace the proxy by its instance on serialization")
+        void shouldReplaceProxyOnSerialization() {
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+            ExampleEntity     entity  = ExampleEntity.create();
+
+            State<ExampleEntity> state = Assertions.assertDoesNotThrow(() -> factory.create(entity));
+            Assertions.assertNotNull(state);
+
+            ExampleEntity proxy = state.getProxy();
+
+            Method writeReplace = Assertions.assertDoesNotThrow(() -> proxy.getClass().getDeclaredMethod("writeReplace"));
+            writeReplace.setAccessible(true);
+
+            Object replacement = Assertions.assertDoesNotThrow(() -> writeReplace.invoke(proxy));
+            Assertions.assertSame(entity, replacement, "Proxy not replaced by its instance");
+
+            state.close();
+            factory.close();
+        }
+
+        @Test
+        @Order(10)
+        @DisplayName("Should use a pregenerated proxy class")
+        void shouldUsePregeneratedClass(@TempDir Path directory) throws Exception {
+
+            String name = ProxyClassGenerator.getPregeneratedName(PregeneratedEntity.class);
+            ProxyClassGenerator.pregenerate(PregeneratedEntity.class, directory.toFile());
+
+            Path classFile = directory.resolve(name.replace('.', '/') + ".class");
+            Assertions.assertTrue(Files.exists(classFile), "Class file not written");
+
+            // Simulate the class being packaged alongside its original class.
+            MethodHandles
+                    .privateLookupIn(PregeneratedEntity.class, MethodHandles.lookup())
+                    .defineClass(Files.readAllBytes(classFile));
+
+            ClassProxyFactory  factory = new ClassProxyFactory();
+            PregeneratedEntity entity  = new PregeneratedEntity();
+
+            State<PregeneratedEntity> state = Assertions.assertDoesNotThrow(() -> factory.create(entity));
+            Assertions.assertNotNull(state);
+
+            PregeneratedEntity proxy = state.getProxy();
+            Assertions.assertEquals(name, proxy.getClass().getName(), "Pregenerated class not used");
+
+            proxy.setValue("changed");
+            Assertions.assertTrue(state.isDirty(), "State was not dirty");
+            Assertions.assertEquals("changed", entity.getValue(), "entity value desync");
+
+            state.close();
+            factory.close();
+        }
+
+        @Test
+        @Order(11)
+        @DisplayName("Should capture original values lazily")
+        void shouldCaptureLazily() {
+
+            ClassProxyFactory factory = ClassProxyFactory.builder().snapshotMode(SnapshotMode.LAZY).build();
+            ExampleEntity     entity  = ExampleEntity.create();
+
+            entity.setName("created");
+
+            State<ExampleEntity> state = Assertions.assertDoesNotThrow(() -> factory.create(entity));
+            Assertions.assertNotNull(state);
+
+            ExampleEntity proxy = state.getProxy();
+
+            // Untracked change, made before the property is captured.
+            entity.setName("untracked");
+
+            Assertions.assertFalse(state.isDirty(), "State is already dirty");
+            Assertions.assertEquals("untracked", proxy.getName(), "proxy value desync");
+
+            proxy.setName("tracked");
+
+            Map<String, Object> original = state
+                    .getOriginalState()
+                    .entrySet()
+                    .stream()
+                    .filter(entry -> entry.getValue() != null)
+                    .collect(Collectors.toMap(entry -> entry.getKey().getName(), Map.Entry::getValue));
+
+            Assertions.assertEquals("untracked", original.get("name"), "wrong source value");
+            Assertions.assertEquals(1L, original.get("id"), "uncaptured value missing from source");
+            Assertions.assertTrue(state.isDirty(), "State was not dirty");
+
+            state.revert();
+
+            Assertions.assertFalse(state.isDirty(), "State is dirty after revert");
+            Assertions.assertEquals("untracked", entity.getName(), "entity value not reverted");
+
+            state.close();
+            factory.close();
+        }
+
+        @Test
+        @Order(12)
+        @DisplayName("Should propagate dirtiness to parents")
+        void shouldPropagateDirtiness() {
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+            ExampleEntity     root    = ExampleEntity.create(1L);
+            ExampleEntity     middle  = ExampleEntity.create(2L);
+            ExampleEntity     leaf    = ExampleEntity.create(3L);
+
+            root.setEntity(middle);
+            middle.setEntities(new ArrayList<>(List.of(leaf)));
+            leaf.setEntity(root); // Cycle back to the root.
+
+            State<ExampleEntity> state = Assertions.assertDoesNotThrow(() -> factory.create(root));
+            Assertions.assertNotNull(state);
+
+            ExampleEntity leafProxy = state.getProxy().getEntity().getEntities().getFirst();
+            Assertions.assertSame(state.getProxy(), leafProxy.getEntity(), "Cycle not preserved");
+
+            leafProxy.setName("changed");
+
+            Assertions.assertTrue(factory.getExistingState(leaf).isDirty(), "Leaf was not dirty");
+            Assertions.assertTrue(factory.getExistingState(middle).isDirty(), "Middle was not dirty");
+            Assertions.assertTrue(state.isDirty(), "Root was not dirty");
+            Assertions.assertTrue(state.getDifferentialState().containsKey(
+                    Properties.getPropertiesOf(ExampleEntity.class)
+                              .stream()
+                              .filter(property -> property.getName().equals("entity"))
+                              .findFirst()
+                              .orElseThrow()
+            ), "Dirty child missing from differential state");
+
+            leafProxy.setName(null);
+
+            Assertions.assertFalse(factory.getExistingState(leaf).isDirty(), "Leaf is still dirty");
+            Assertions.assertFalse(state.isDirty(), "Root is still dirty");
+
+            state.getProxy().setName("root");
+
+            Assertions.assertTrue(state.isDirty(), "Root was not dirty");
+            Assertions.assertFalse(factory.getExistingState(leaf).isDirty(), "Root dirtiness leaked through the cycle");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(13)
+        @DisplayName("Should create a single proxy per instance across threads")
+        void shouldCreateConcurrently() throws Exception {
+
+            ClassProxyFactory   factory  = new ClassProxyFactory();
+            List<ExampleEntity> entities = new ArrayList<>();
+            for (long i = 0; i < 500; i++) {
+                entities.add(ExampleEntity.create(i));
+            }
+
+            int                                      threads = 8;
+            CountDownLatch                           start   = new CountDownLatch(1);
+            List<Future<List<State<ExampleEntity>>>> results = new ArrayList<>();
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return entities.stream().map(factory::create).toList();
+                    }));
+                }
+                start.countDown();
+
+                List<State<ExampleEntity>> expected = results.getFirst().get();
+                for (Future<List<State<ExampleEntity>>> result : results) {
+                    List<State<ExampleEntity>> states = result.get();
+                    for (int i = 0; i < entities.size(); i++) {
+                        Assertions.assertSame(expected.get(i), states.get(i), "Another proxy has been created");
+                        Assertions.assertSame(expected.get(i), factory.getExistingState(entities.get(i)), "State not registered");
+                    }
+                }
+            }
+
+            factory.close();
+            Assertions.assertNull(factory.getExistingState(entities.getFirst()), "State still registered after close");
+        }
+
+        @Test
+        @Order(14)
+        @DisplayName("Should prewarm proxy classes")
+        void shouldPrewarm() {
+
+            Set<Class<?>> classes = ProxyPrewarmer.scan("fr.anisekai.proxy", this.getClass().getClassLoader());
+
+            Assertions.assertTrue(classes.contains(ExampleEntity.class), "Proxyable class not found");
+            Assertions.assertTrue(classes.contains(PregeneratedEntity.class), "Nested proxyable class not found");
+            Assertions.assertFalse(classes.contains(ClassProxyFactory.class), "Final class found");
+
+            Assertions.assertDoesNotThrow(
+                    () -> ClassProxyFactory.prewarm(List.of(ExampleEntity.class)).get(30, TimeUnit.SECONDS),
+                    "Prewarm failed"
+            );
+
+            Assertions.assertThrows(
+                    ExecutionException.class,
+                    () -> ClassProxyFactory.prewarm(List.of(String.class)).get(30, TimeUnit.SECONDS),
+                    "Prewarm of a final class did not fail"
+            );
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+            ExampleEntity     proxy   = factory.create(ExampleEntity.create()).getProxy();
+
+            Assertions.assertSame(
+                    ClassProxyFactory.getOrGenerateByteBuddyClass(ExampleEntity.class),
+                    proxy.getClass(),
+                    "Prewarmed class not used"
+            );
+
+            factory.close();
+        }
+
+        @Test
+        @Order(15)
+        @DisplayName("Should create proxies in bulk")
+        void shouldCreateInBulk() {
+
+            ClassProxyFactory factory  = new ClassProxyFactory();
+            ExampleEntity     existing = ExampleEntity.create(0L);
+            ExampleEntity     first    = ExampleEntity.create(1L);
+            ExampleEntity     second   = ExampleEntity.create(2L);
+
+            State<ExampleEntity> existingState = factory.create(existing);
+
+            List<State<ExampleEntity>> states = factory.createAll(Arrays.asList(first, existing, null, second, first));
+
+            Assertions.assertEquals(5, states.size(), "Wrong number of states");
+            Assertions.assertSame(first, states.get(0).getInstance(), "States not in input order");
+            Assertions.assertSame(existingState, states.get(1), "Existing state not reused");
+            Assertions.assertNull(states.get(2), "State created for null");
+            Assertions.assertSame(second, states.get(3).getInstance(), "States not in input order");
+            Assertions.assertSame(states.get(0), states.get(4), "Duplicate instance proxied twice");
+
+            Assertions.assertSame(states.get(0), factory.getExistingState(first), "State not registered");
+            Assertions.assertSame(states.get(3), factory.create(second), "State not registered");
+
+            List<ExampleEntity> streamed = new ArrayList<>();
+            for (long i = 0; i < 600; i++) {
+                streamed.add(ExampleEntity.create(i));
+            }
+
+            List<State<ExampleEntity>> streamedStates = factory.createAll(streamed.stream()).toList();
+            Assertions.assertEquals(streamed.size(), streamedStates.size(), "Wrong number of streamed states");
+            for (int i = 0; i < streamed.size(); i++) {
+                Assertions.assertSame(streamed.get(i), streamedStates.get(i).getInstance(), "Streamed states not in order");
+            }
+
+            streamedStates.getLast().getProxy().setName("changed");
+            Assertions.assertTrue(streamedStates.getLast().isDirty(), "Streamed state not tracking changes");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(16)
+        @DisplayName("Should track container changes")
+        void shouldTrackContainerChanges() {
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+            ExampleEntity     entity  = ExampleEntity.create();
+
+            entity.setTags(new ArrayList<>(List.of("a", "b", "c", "d")));
+            entity.setMapping(new HashMap<>(Map.of("kept", "1", "changed", "2", "removed", "3")));
+
+            ExampleEntity proxy = factory.create(entity).getProxy();
+
+            List<String>                tags      = proxy.getTags();
+            ContainerState<List<String>> tagsState = (ContainerState<List<String>>) factory.getExistingState(tags);
+
+            tags.set(1, "x");
+            tags.remove("c");
+            tags.add(2, "y");
+
+            ListDiff<?> listDiff = Assertions.assertInstanceOf(ListDiff.class, tagsState.getChanges());
+            Assertions.assertEquals(1, listDiff.windows().size(), "Wrong number of windows");
+
+            ListDiff.Window<?> window = listDiff.windows().getFirst();
+            Assertions.assertEquals(1, window.from(), "Wrong window start");
+            Assertions.assertEquals(List.of("b", "c"), window.removed(), "Wrong removed elements");
+            Assertions.assertEquals(List.of("x", "y"), window.added(), "Wrong added elements");
+
+            tagsState.revert();
+            Assertions.assertEquals(List.of("a", "b", "c", "d"), entity.getTags(), "List not reverted");
+            Assertions.assertTrue(tagsState.getChanges().isEmpty(), "Changes left after revert");
+            Assertions.assertFalse(tagsState.isDirty(), "List still dirty after revert");
+
+            // Distant edits are reported as distinct windows.
+            List<String> large = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) large.add("element-" + i);
+            ExampleEntity largeEntity = ExampleEntity.create(2);
+            largeEntity.setTags(new ArrayList<>(large));
+
+            List<String>                 largeTags  = factory.create(largeEntity).getProxy().getTags();
+            ContainerState<List<String>> largeState = (ContainerState<List<String>>) factory.getExistingState(largeTags);
+
+            largeTags.set(0, "first");
+            largeTags.set(999, "last");
+            largeTags.remove(500);
+            largeTags.add(250, "inserted");
+
+            ListDiff<?> largeDiff = Assertions.assertInstanceOf(ListDiff.class, largeState.getChanges());
+            Assertions.assertEquals(
+                    List.of(
+                            new ListDiff.Window<>(0, List.of("element-0"), List.of("first")),
+                            new ListDiff.Window<>(250, List.of(), List.of("inserted")),
+                            new ListDiff.Window<>(501, List.of("element-500"), List.of()),
+                            new ListDiff.Window<>(999, List.of("element-999"), List.of("last"))
+                    ),
+                    largeDiff.windows(),
+                    "Distant edits should be reported as distinct windows"
+            );
+
+            largeState.revert();
+            Assertions.assertEquals(large, largeEntity.getTags(), "Windows not reverted");
+
+            // Changes cancelling each other out leave the container clean once noticed.
+            largeTags.add("temporary");
+            largeTags.remove("temporary");
+            Assertions.assertTrue(largeState.isDirty(), "Mutated list not dirty");
+            Assertions.assertTrue(largeState.getChanges().isEmpty(), "Cancelled changes reported");
+            Assertions.assertFalse(largeState.isDirty(), "List still dirty without net changes");
+
+            Map<String, String>                mapping      = proxy.getMapping();
+            ContainerState<Map<String, String>> mappingState = (ContainerState<Map<String, String>>) factory.getExistingState(mapping);
+
+            mapping.put("changed", "two");
+            mapping.remove("removed");
+            mapping.put("added", "4");
+            mapping.put("kept", "one");
+            mapping.put("kept", "1");
+
+            MapDiff<?, ?> mapDiff = Assertions.assertInstanceOf(MapDiff.class, mappingState.getChanges());
+            Assertions.assertEquals(Map.of("changed", "two", "added", "4"), mapDiff.put(), "Wrong put entries");
+            Assertions.assertEquals(Map.of("removed", "3"), mapDiff.removed(), "Wrong removed entries");
+
+            mappingState.revert();
+            Assertions.assertEquals(Map.of("kept", "1", "changed", "2", "removed", "3"), entity.getMapping(), "Map not reverted");
+
+            Set<String>      set     = new HashSet<>(Set.of("a", "b"));
+            ContainerTracker tracker = ContainerTracker.of(set);
+
+            tracker.touch("c");
+            set.add("c");
+            tracker.touch("a");
+            set.remove("a");
+            tracker.touch("c");
+            set.remove("c");
+
+            Assertions.assertEquals(
+                    new CollectionDiff<>(List.of(), List.of("a")),
+                    tracker.diff(),
+                    "Cancelling changes should not be reported"
+            );
+
+            tracker.revert();
+            Assertions.assertEquals(Set.of("a", "b"), set, "Set not reverted");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(17)
+        @DisplayName("Should use specialized container proxies")
+        void shouldUseSpecializedContainerProxies() {
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+            ExampleEntity     entity  = ExampleEntity.create();
+            ExampleEntity     child   = ExampleEntity.create(2L);
+
+            entity.setTags(new ArrayList<>(List.of("a", "b")));
+            entity.setMapping(new HashMap<>(Map.of("key", "value", "other", "value")));
+            entity.setEntityMap(new TreeMap<>(Map.of("child", child)));
+
+            State<ExampleEntity> state = factory.create(entity);
+            ExampleEntity        proxy = state.getProxy();
+
+            Assertions.assertInstanceOf(ProxyList.class, proxy.getTags(), "List not specialized");
+            Assertions.assertInstanceOf(RandomAccess.class, proxy.getTags(), "RandomAccess marker lost");
+            Assertions.assertInstanceOf(ProxyMap.class, proxy.getMapping(), "Map not specialized");
+            Assertions.assertTrue(
+                    java.lang.reflect.Proxy.isProxyClass(proxy.getEntityMap().getClass()),
+                    "NavigableMap should fall back to a Proxy"
+            );
+            Assertions.assertInstanceOf(NavigableMap.class, proxy.getEntityMap(), "NavigableMap interface lost");
+
+            proxy.getTags().subList(0, 1).clear();
+            Assertions.assertEquals(List.of("b"), entity.getTags(), "Sub-list not delegating");
+            Assertions.assertTrue(state.isDirty(), "Sub-list mutation not tracked");
+
+            Map<String, String>                mapping      = proxy.getMapping();
+            ContainerState<Map<String, String>> mappingState = (ContainerState<Map<String, String>>) factory.getExistingState(mapping);
+
+            mapping.entrySet().stream().filter(entry -> entry.getKey().equals("key")).forEach(entry -> entry.setValue("changed"));
+            mapping.keySet().remove("other");
+
+            MapDiff<?, ?> diff = Assertions.assertInstanceOf(MapDiff.class, mappingState.getChanges());
+            Assertions.assertEquals(Map.of("key", "changed"), diff.put(), "Entry update not tracked");
+            Assertions.assertEquals(Map.of("other", "value"), diff.removed(), "Key set removal not tracked");
+
+            ExampleEntity proxiedChild = proxy.getEntityMap().get("child");
+            Assertions.assertInstanceOf(State.class, proxiedChild, "Element not proxied");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(18)
+        @DisplayName("Should unwrap containers without copying")
+        void shouldUnwrapWithoutCopying() {
+
+            ClassProxyFactory factory = ClassProxyFactory.builder().unwrapMode(UnwrapMode.VIEW).build();
+            ExampleEntity     child   = ExampleEntity.create(2L);
+            ExampleEntity     proxy   = factory.create(child).getProxy();
+
+            List<ExampleEntity> raw = new LinkedList<>(List.of(child));
+            Assertions.assertSame(raw, factory.unwrap(raw), "Container without proxy copied");
+
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            sorted.put("b", proxy);
+            sorted.put("a", new ArrayList<>(List.of(proxy)));
+
+            Map<String, Object> unwrapped = factory.unwrap(sorted);
+            Assertions.assertEquals(List.of("a", "b"), List.copyOf(unwrapped.keySet()), "Ordering lost");
+            Assertions.assertSame(child, unwrapped.get("b"), "Value not unwrapped");
+            Assertions.assertSame(child, ((List<?>) unwrapped.get("a")).getFirst(), "Nested value not unwrapped");
+            Assertions.assertInstanceOf(RandomAccess.class, unwrapped.get("a"), "RandomAccess marker lost");
+
+            ExampleEntity entity = ExampleEntity.create();
+            entity.setTags(new ArrayList<>(List.of("a")));
+            ExampleEntity parent = factory.create(entity).getProxy();
+
+            Assertions.assertSame(entity.getTags(), factory.unwrap(parent.getTags()), "Container proxy not unwrapped");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(19)
+        @DisplayName("Should cache policy decisions")
+        void shouldCachePolicyDecisions() {
+
+            int[] evaluations = new int[1];
+
+            ProxyPolicy uncached = (property, object) -> {
+                evaluations[0]++;
+                return ProxyPolicy.DEFAULT.shouldProxy(property, object);
+            };
+
+            ProxyPolicy cached = new ProxyPolicy() {
+                @Override
+                public boolean shouldProxy(Property property, Object object) {
+
+                    return uncached.shouldProxy(property, object);
+                }
+
+                @Override
+                public boolean isClassBased() {
+
+                    return true;
+                }
+            };
+
+            Function<ProxyPolicy, Integer> countEvaluations = policy -> {
+                evaluations[0] = 0;
+
+                ClassProxyFactory factory = new ClassProxyFactory(policy);
+                ExampleEntity     entity  = ExampleEntity.create();
+                entity.setEntity(ExampleEntity.create(2L));
+                entity.setTags(new ArrayList<>(List.of("a", "b")));
+                entity.setEntities(new ArrayList<>(List.of(
+                        ExampleEntity.create(3L),
+                        ExampleEntity.create(4L),
+                        ExampleEntity.create(5L)
+                )));
+
+                ExampleEntity proxy = factory.create(entity).getProxy();
+                for (int i = 0; i < 10; i++) {
+                    proxy.getName();
+                    proxy.getEntity();
+                    proxy.getTags().forEach(tag -> {});
+                    proxy.getEntities().forEach(child -> {});
+                }
+
+                factory.close();
+                return evaluations[0];
+            };
+
+            // Entity, tags list, entities list, and each new element: names and tags are never evaluated.
+            Assertions.assertEquals(6, countEvaluations.apply(uncached), "Policy not evaluated for each new value");
+            // The elements of the entities list share the decision made for their class.
+            Assertions.assertEquals(4, countEvaluations.apply(cached), "Policy decisions not cached");
+        }
+
+        @Test
+        @Order(20)
+        @DisplayName("Should memoize child proxies")
+        void shouldMemoizeChildProxies() {
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+            ExampleEntity     entity  = ExampleEntity.create();
+            entity.setEntity(ExampleEntity.create(2L));
+
+            ExampleEntity proxy = factory.create(entity).getProxy();
+            ExampleEntity child = proxy.getEntity();
+
+            Assertions.assertSame(child, proxy.getEntity(), "Child proxy not memoized");
+
+            ExampleEntity replacement = ExampleEntity.create(3L);
+            proxy.setEntity(replacement);
+            Assertions.assertSame(replacement, factory.unwrap(proxy.getEntity()), "Memo not invalidated by the setter");
+
+            proxy.setEntity(factory.unwrap(child));
+            ExampleEntity reverted = proxy.getEntity();
+            Assertions.assertSame(factory.unwrap(child), factory.unwrap(reverted), "Wrong child after revert");
+
+            factory.getExistingState(reverted).close();
+            ExampleEntity reopened = proxy.getEntity();
+            Assertions.assertNotSame(reverted, reopened, "Closed child proxy returned");
+            Assertions.assertEquals(2L, reopened.getId(), "Wrong child after close");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(21)
+        @DisplayName("Should record metrics")
+        void shouldRecordMetrics() throws Exception {
+
+            Assertions.assertNull(new ClassProxyFactory().getMetrics(), "Metrics enabled by default");
+
+            ClassProxyFactory factory = ClassProxyFactory.builder().metrics(true).build();
+            ProxyMetrics      metrics = factory.getMetrics();
+            Assertions.assertNotNull(metrics, "Metrics not enabled");
+
+            ExampleEntity entity = ExampleEntity.create();
+            entity.setTags(new ArrayList<>());
+
+            State<ExampleEntity> state = factory.create(entity);
+            ExampleEntity        proxy = state.getProxy();
+
+            proxy.getName();
+            proxy.getTags().add("metrics");
+            proxy.setName("metrics");
+            proxy.hashCode();
+            state.isDirty();
+
+            MetricsSnapshot snapshot = metrics.snapshot();
+            Assertions.assertEquals(1L, snapshot.liveProxies().get(ExampleEntity.class.getName()), "Wrong live proxies");
+            Assertions.assertEquals(1L, snapshot.totalLiveContainers(), "Wrong live containers");
+            Assertions.assertEquals(2L, snapshot.getterIntercepts(), "Wrong getter intercepts");
+            Assertions.assertEquals(1L, snapshot.setterIntercepts(), "Wrong setter intercepts");
+            Assertions.assertEquals(1L, snapshot.otherIntercepts(), "Wrong other intercepts");
+            Assertions.assertEquals(1L, snapshot.dirtyChecks(), "Wrong dirty checks");
+            Assertions.assertTrue(snapshot.classGenerations() > 0, "Class generation not timed");
+
+            Map<String, Long> published = new HashMap<>();
+            snapshot.publishTo(new MetricsSink() {
+                @Override
+                public void counter(String name, Map<String, String> tags, long count) {
+
+                    published.put(name + tags.values(), count);
+                }
+
+                @Override
+                public void gauge(String name, Map<String, String> tags, long value) {
+
+                    published.put(name + tags.values(), value);
+                }
+
+                @Override
+                public void timer(String name, Map<String, String> tags, long count, long totalNanos, long maxNanos) {
+
+                    published.put(name, count);
+                }
+            });
+            Assertions.assertEquals(2L, published.get("deepproxy.intercepts[getter]"), "Getter intercepts not published");
+
+            ObjectName name = metrics.registerMBean("tests");
+            Assertions.assertEquals(
+                    1L,
+                    ManagementFactory.getPlatformMBeanServer().getAttribute(name, "LiveProxies"),
+                    "Wrong MBean attribute"
+            );
+
+            factory.close();
+            Assertions.assertEquals(0L, metrics.getLiveProxies(), "Closed proxies still live");
+            Assertions.assertEquals(0L, metrics.getLiveContainers(), "Closed containers still live");
+            Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name), "MBean not unregistered");
+        }
+
+        @Test
+        @Order(22)
+        @DisplayName("Should emit flight recorder events")
+        void shouldEmitFlightRecorderEvents(@TempDir Path directory) throws Exception {
+
+            Path file = directory.resolve("recording.jfr");
+
+            try (Recording recording = new Recording()) {
+                for (String event : List.of("ClassGeneration", "ProxyCreation", "DirtyScan", "FactoryClose")) {
+                    recording.enable("fr.anisekai.proxy." + event).withThreshold(Duration.ZERO);
+                }
+                recording.start();
+
+                ClassProxyFactory     factory = new ClassProxyFactory();
+                State<RecordedEntity> state   = factory.create(new RecordedEntity());
+                state.getProxy().setValue("recorded");
+                state.isDirty();
+                state.getDifferentialState();
+                factory.close();
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            Map<String, RecordedEvent> events = RecordingFile
+                    .readAllEvents(file)
+                    .stream()
+                    .collect(Collectors.toMap(
+                            event -> event.getEventType().getName() + "/" + (event.hasField("operation") ? event.getString("operation") : ""),
+                            Function.identity(),
+                            (a, b) -> a
+                    ));
+
+            RecordedEvent generation = events.get("fr.anisekai.proxy.ClassGeneration/");
+            Assertions.assertNotNull(generation, "Class generation not recorded");
+            Assertions.assertEquals(RecordedEntity.class.getName(), generation.getString("className"));
+            Assertions.assertTrue(generation.getInt("bytes") > 0, "Bytecode size not recorded");
+
+            RecordedEvent creation = events.get("fr.anisekai.proxy.ProxyCreation/");
+            Assertions.assertNotNull(creation, "Proxy creation not recorded");
+            Assertions.assertEquals(1, creation.getInt("propertyCount"), "Wrong property count");
+
+            Assertions.assertNotNull(events.get("fr.anisekai.proxy.DirtyScan/isDirty"), "Dirty check not recorded");
+            Assertions.assertNotNull(events.get("fr.anisekai.proxy.DirtyScan/getDifferentialState"), "Diff not recorded");
+
+            RecordedEvent close = events.get("fr.anisekai.proxy.FactoryClose/");
+            Assertions.assertNotNull(close, "Factory close not recorded");
+            Assertions.assertEquals(1, close.getInt("statesReleased"), "Wrong released states");
+        }
+
+        @Test
+        @Order(23)
+        @DisplayName("Should confine a factory to its thread")
+        void shouldConfineFactoryToThread() throws Exception {
+
+            ClassProxyFactory factory = ClassProxyFactory.builder().threadingMode(ThreadingMode.CONFINED).build();
+            ExampleEntity     entity  = ExampleEntity.create();
+            entity.setEntity(ExampleEntity.create(2L));
+
+            State<ExampleEntity> state = factory.create(entity);
+            ExampleEntity        proxy = state.getProxy();
+
+            Assertions.assertSame(state, factory.create(entity), "Instance proxied twice");
+            Assertions.assertSame(proxy.getEntity(), proxy.getEntity(), "Child proxied twice");
+            proxy.getEntity().setName("confined");
+            Assertions.assertTrue(state.isDirty(), "Child change not propagated");
+
+            List<State<ExampleEntity>> states = factory.createAll(List.of(entity, ExampleEntity.create(3L)));
+            Assertions.assertSame(state, states.getFirst(), "Instance proxied twice in bulk");
+
+            if (ClassProxyFactory.class.desiredAssertionStatus()) {
+                try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+                    ExecutionException exception = Assertions.assertThrows(
+                            ExecutionException.class,
+                            () -> executor.submit(proxy::getName).get()
+                    );
+                    Assertions.assertInstanceOf(ProxyAccessException.class, exception.getCause(), "Misuse not detected");
+                }
+            }
+
+            factory.close();
+            Assertions.assertNull(factory.getExistingState(entity), "State not released");
+        }
+
+        @Test
+        @Order(24)
+        @DisplayName("Should share a proxy graph between threads")
+        void shouldShareProxyGraphBetweenThreads() throws Exception {
+
+            Assertions.assertThrows(
+                    IllegalStateException.class,
+                    () -> ClassProxyFactory.builder()
+                                           .threadingMode(ThreadingMode.CONCURRENT)
+                                           .snapshotMode(SnapshotMode.LAZY)
+                                           .build(),
+                    "Lazy snapshots allowed in concurrent mode"
+            );
+
+            ClassProxyFactory factory = ClassProxyFactory.builder().threadingMode(ThreadingMode.CONCURRENT).build();
+            ExampleEntity     entity  = ExampleEntity.create();
+            entity.setName("original");
+            entity.setEntity(ExampleEntity.create(2L));
+
+            State<ExampleEntity>      state   = factory.create(entity);
+            ExampleEntity             proxy   = state.getProxy();
+            int                       readers = 4;
+            CountDownLatch            start   = new CountDownLatch(1);
+            List<Future<Set<Object>>> results = new ArrayList<>();
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(readers + 1)) {
+                for (int i = 0; i < readers; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+                        for (int j = 0; j < 20_000; j++) {
+                            String name = proxy.getName();
+                            if (!"original".equals(name) && !"written".equals(name)) {
+                                throw new IllegalStateException("Inconsistent value read: " + name);
+                            }
+                            seen.add(proxy.getEntity());
+                        }
+                        return seen;
+                    }));
+                }
+
+                Future<?> writer = executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 2_000; j++) {
+                        proxy.setName(j % 2 == 0 ? "written" : "original");
+                        proxy.getEntity().setActive(j % 2 == 0);
+                    }
+                    return null;
+                });
+                start.countDown();
+                writer.get();
+
+                for (Future<Set<Object>> result : results) {
+                    Set<Object> seen = result.get();
+                    Assertions.assertEquals(1, seen.size(), "Child proxied twice");
+                    Assertions.assertSame(proxy.getEntity(), seen.iterator().next(), "Child proxied twice");
+                }
+            }
+
+            Assertions.assertEquals("original", proxy.getName(), "Wrong final value");
+            Assertions.assertFalse(proxy.getEntity().isActive(), "Wrong final child value");
+            Assertions.assertTrue(state.isDirty(), "Child change not propagated");
+            Assertions.assertEquals(
+                    Set.of("entity"),
+                    state.getDifferentialState().keySet().stream().map(Property::getName).collect(Collectors.toSet()),
+                    "Wrong differential state"
+            );
+
+            factory.close();
+        }
+
+        @Test
+        @Order(25)
+        @DisplayName("Should collect the dirty states of a graph")
+        void shouldCollectDirtyStates() {
+
+            for (TraversalMode mode : TraversalMode.values()) {
+                this.assertDirtyStates(mode);
+            }
+        }
+
+        private void assertDirtyStates(TraversalMode mode) {
+
+            // Enough dirty elements for the parallel scans to be split.
+            int                 count    = DirtyScan.THRESHOLD * 2 + 1;
+            List<ExampleEntity> elements = new ArrayList<>();
+            for (int i = 0; i < count; i++) elements.add(ExampleEntity.create(i));
+
+            ExampleEntity root = ExampleEntity.create();
+            root.setEntities(elements);
+            root.setEntity(ExampleEntity.create(-1));
+
+            ClassProxyFactory    factory = ClassProxyFactory.builder().traversalMode(mode).build();
+            State<ExampleEntity> state   = factory.create(root);
+            ExampleEntity        proxy   = state.getProxy();
+            List<ExampleEntity>  proxies = new ArrayList<>(proxy.getEntities());
+
+            Assertions.assertFalse(factory.hasDirtyStates(), "Clean factory reported as dirty");
+            Assertions.assertTrue(factory.getDirtyStates(proxy).isEmpty(), "Clean graph reported as dirty");
+
+            for (ExampleEntity element : proxies) {
+                element.setName("modified");
+                // Closes a cycle back to the root, which the scans must not follow forever.
+                element.setEntity(proxy);
+            }
+            proxy.getEntity().getName();
+
+            Set<Object> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+            proxies.forEach(element -> expected.add(factory.findNode(element)));
+
+            List<State<?>> fromRoot = factory.getDirtyStates(proxy);
+            Assertions.assertEquals(count, fromRoot.size(), "Wrong number of dirty states in the graph with " + mode);
+            Assertions.assertTrue(expected.containsAll(fromRoot), "Clean state collected");
+
+            List<State<?>> all = factory.getDirtyStates();
+            Assertions.assertEquals(count, all.size(), "Wrong number of dirty states in the factory with " + mode);
+            Assertions.assertTrue(expected.containsAll(all), "Clean state collected");
+            Assertions.assertTrue(factory.hasDirtyStates(), "Dirty factory reported as clean");
+
+            Assertions.assertEquals(List.of(), factory.getDirtyStates(root.getEntity()), "Clean child reported as dirty");
+            Assertions.assertEquals(List.of(), factory.getDirtyStates(new Object()), "Unmanaged value reported as dirty");
+
+            all.forEach(State::revert);
+            Assertions.assertFalse(factory.hasDirtyStates(), "Reverted factory reported as dirty");
+            Assertions.assertTrue(factory.getDirtyStates(state).isEmpty(), "Reverted graph reported as dirty");
+            Assertions.assertFalse(state.isDirty(), "Reverted graph reported as dirty");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(26)
+        @DisplayName("Should handle deep and cyclic graphs without recursion")
+        void shouldHandleDeepAndCyclicGraphs() {
+
+            // Deep enough to overflow the stack of a recursive propagation.
+            int           depth    = 50_000;
+            ExampleEntity root     = ExampleEntity.create(0);
+            ExampleEntity previous = null;
+            ExampleEntity last     = root;
+            for (int i = 1; i < depth; i++) {
+                ExampleEntity next = ExampleEntity.create(i);
+                last.setEntity(next);
+                previous = last;
+                last     = next;
+            }
+            // Bidirectional association between the two last entities.
+            last.setEntity(previous);
+
+            ClassProxyFactory    factory = new ClassProxyFactory();
+            State<ExampleEntity> state   = factory.create(root);
+
+            ExampleEntity leaf = state.getProxy();
+            for (int i = 1; i < depth; i++) leaf = leaf.getEntity();
+            leaf.getEntity().getName();
+
+            leaf.setName("modified");
+            leaf.getEntity().setName("modified");
+            Assertions.assertTrue(state.isDirty(), "Deep change not propagated");
+            Assertions.assertEquals(2, factory.getDirtyStates(state).size(), "Wrong number of dirty states");
+
+            state.revert();
+            Assertions.assertFalse(state.isDirty(), "Revert is not recursive");
+            Assertions.assertNull(last.getName(), "Deep change not reverted");
+            Assertions.assertNull(previous.getName(), "Cyclic change not reverted");
+            Assertions.assertTrue(factory.getDirtyStates().isEmpty(), "Dirty state left after revert");
+
+            leaf.setName("modified");
+            Assertions.assertTrue(state.isDirty(), "Deep change not propagated after revert");
+            factory.close();
+        }
+
+        @Test
+        @Order(27)
+        @DisplayName("Should journal changes in order")
+        void shouldJournalChanges() {
+
+            ExampleEntity entity = ExampleEntity.create();
+            entity.setName("original");
+            entity.setTags(new ArrayList<>(List.of("a")));
+
+            ClassProxyFactory    factory = ClassProxyFactory.builder().journal(8).build();
+            ChangeJournal        journal = factory.getJournal();
+            ChangeJournal.Cursor cursor  = journal.cursor();
+            State<ExampleEntity> state   = factory.create(entity);
+            ExampleEntity        proxy   = state.getProxy();
+
+            Assertions.assertNull(cursor.poll(), "Change read before any write");
+
+            proxy.setName("first");
+            proxy.setName("second");
+            proxy.getTags().add("b");
+            proxy.getTags().clear();
+
+            List<Change> changes = new ArrayList<>();
+            Assertions.assertEquals(4, cursor.drain(changes::add), "Wrong number of changes");
+            Assertions.assertEquals(List.of(0L, 1L, 2L, 3L), changes.stream().map(Change::sequence).toList(), "Wrong order");
+
+            Assertions.assertSame(state, changes.get(0).state(), "Wrong state");
+            Assertions.assertEquals("name", changes.get(0).property().getName(), "Wrong property");
+            Assertions.assertEquals("original", changes.get(0).oldValue(), "Wrong old value");
+            Assertions.assertEquals("first", changes.get(0).newValue(), "Wrong new value");
+            Assertions.assertEquals("first", changes.get(1).oldValue(), "Wrong old value");
+            Assertions.assertEquals("second", changes.get(1).newValue(), "Wrong new value");
+
+            Assertions.assertTrue(changes.get(2).isContainerChange(), "Container mutation not recognized");
+            Assertions.assertEquals("tags", changes.get(2).property().getName(), "Wrong container property");
+            Assertions.assertEquals("b", changes.get(2).key(), "Wrong touched element");
+            Assertions.assertNull(changes.get(3).key(), "Clear reported with an element");
+
+            // Overflow the journal: the cursor skips what has been overwritten.
+            for (int i = 0; i < 20; i++) proxy.setName("name-" + i);
+            Change next = cursor.poll();
+            Assertions.assertNotNull(next, "Change not read");
+            Assertions.assertEquals(24 - journal.getCapacity(), next.sequence(), "Wrong first change kept");
+            Assertions.assertEquals(next.sequence() - 4, cursor.getMissed(), "Wrong number of missed changes");
+            Assertions.assertEquals(journal.getCapacity() - 1, cursor.drain(change -> {}), "Wrong number of kept changes");
+            Assertions.assertEquals(24, journal.getNextSequence(), "Wrong next sequence");
+
+            Assertions.assertEquals(journal.getCapacity(), journal.cursor(0).drain(change -> {}), "Wrong replay");
+            Assertions.assertNull(ClassProxyFactory.builder().build().getJournal(), "Journal enabled by default");
+            factory.close();
+        }
+
+        @Test
+        @Order(28)
+        @DisplayName("Should notify change listeners")
+        void shouldNotifyChangeListeners() throws Exception {
+
+            ExampleEntity entity = ExampleEntity.create();
+            entity.setName("original");
+            entity.setTags(new ArrayList<>());
+            ExampleEntity other = ExampleEntity.create(2);
+
+            ClassProxyFactory    factory = new ClassProxyFactory();
+            State<ExampleEntity> state   = factory.create(entity);
+            ExampleEntity        proxy   = state.getProxy();
+            ExampleEntity        second  = factory.create(other).getProxy();
+
+            List<String>                synchronous = new ArrayList<>();
+            List<List<Change>>          batches     = new ArrayList<>();
+            BlockingQueue<List<Change>> async       = new LinkedBlockingQueue<>();
+
+            ChangeSubscription sync = factory.addChangeListener(
+                    changes -> synchronous.add(proxy.getName()),
+                    DeliveryMode.SYNCHRONOUS
+            );
+            factory.addChangeListener(ChangeListener.forState(state, batches::add), DeliveryMode.BATCHED);
+            factory.addChangeListener(async::add, DeliveryMode.ASYNCHRONOUS);
+
+            proxy.setName("first");
+            proxy.setName("second");
+            proxy.setName("third");
+            proxy.getTags().add("tag");
+            second.setName("elsewhere");
+
+            Assertions.assertEquals(List.of("first", "second", "third", "third", "third"), synchronous, "Wrong synchronous delivery");
+            Assertions.assertTrue(batches.isEmpty(), "Batch delivered before flush");
+
+            factory.flush();
+            Assertions.assertEquals(1, batches.size(), "Wrong number of batches");
+            List<Change> batch = batches.getFirst();
+            // The container has its own state, filtered out along with the other entity.
+            Assertions.assertEquals(1, batch.size(), "Repeated writes not coalesced");
+            Assertions.assertEquals("original", batch.get(0).oldValue(), "Wrong coalesced old value");
+            Assertions.assertEquals("third", batch.get(0).newValue(), "Wrong coalesced new value");
+            Assertions.assertEquals(2, batch.get(0).sequence(), "Wrong coalesced sequence");
+
+            factory.flush();
+            Assertions.assertEquals(1, batches.size(), "Empty batch delivered");
+
+            List<Change> received = new ArrayList<>();
+            while (received.stream().noneMatch(change -> change.state() != state)) {
+                List<Change> next = async.poll(10, TimeUnit.SECONDS);
+                Assertions.assertNotNull(next, "Asynchronous changes not delivered");
+                received.addAll(next);
+            }
+            Assertions.assertEquals("elsewhere", received.getLast().newValue(), "Wrong asynchronous change");
+            Assertions.assertTrue(received.stream().anyMatch(Change::isContainerChange), "Container change not delivered");
+
+            sync.close();
+            Assertions.assertFalse(sync.isActive(), "Subscription still active");
+            proxy.setName("fourth");
+            Assertions.assertEquals(5, synchronous.size(), "Closed listener notified");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(29)
+        @DisplayName("Should read a concurrent graph while its writes are locked")
+        void shouldReadWhileWritesAreLocked() throws Exception {
+
+            ExampleEntity entity = ExampleEntity.create();
+            entity.setName("original");
+            entity.setEntity(ExampleEntity.create(2));
+
+            ClassProxyFactory factory = ClassProxyFactory.builder().threadingMode(ThreadingMode.CONCURRENT).build();
+            ExampleEntity     proxy   = factory.create(entity).getProxy();
+            ExampleEntity     child   = proxy.getEntity();
+
+            CountDownLatch locked  = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+
+            try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+                Future<?> holder = executor.submit(() -> {
+                    factory.lockWrites();
+                    try {
+                        locked.countDown();
+                        release.await();
+                    } finally {
+                        factory.unlockWrites();
+                    }
+                    return null;
+                });
+                locked.await();
+
+                try (ExecutorService reader = Executors.newSingleThreadExecutor()) {
+                    Future<?> reads = reader.submit(() -> {
+                        Assertions.assertEquals("original", proxy.getName(), "Wrong value read");
+                        Assertions.assertEquals(1L, proxy.getId(), "Wrong value read");
+                        Assertions.assertTrue(proxy.isActive(), "Wrong value read");
+                        Assertions.assertSame(child, proxy.getEntity(), "Wrong child read");
+                        return null;
+                    });
+                    reads.get(10, TimeUnit.SECONDS);
+                } finally {
+                    release.countDown();
+                }
+                holder.get();
+            }
+            factory.close();
+        }
+
+        @Test
+        @Order(30)
+        @DisplayName("Should propagate the changes of children proxied independently")
+        void shouldPropagateIndependentChildren() {
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+
+            // The child is proxied after its parent, without being read through it.
+            ExampleEntity root  = ExampleEntity.create(1);
+            ExampleEntity child = ExampleEntity.create(2);
+            root.setEntity(child);
+
+            State<ExampleEntity> rootState = factory.create(root);
+            factory.create(child).getProxy().setName("child");
+
+            Assertions.assertTrue(rootState.isDirty(), "Parent was not dirty");
+            Set<String> changed = rootState
+                    .getDifferentialState()
+                    .keySet()
+                    .stream()
+                    .map(Property::getName)
+                    .collect(Collectors.toSet());
+            Assertions.assertEquals(Set.of("entity"), changed, "Wrong differential state");
+
+            rootState.revert();
+            Assertions.assertFalse(rootState.isDirty(), "Parent was not reverted");
+            Assertions.assertNull(child.getName(), "Child was not reverted");
+
+            // The child is proxied and modified before its parent.
+            ExampleEntity other      = ExampleEntity.create(3);
+            ExampleEntity otherChild = ExampleEntity.create(4);
+            other.setEntity(otherChild);
+
+            factory.create(otherChild).getProxy().setName("child");
+            Assertions.assertTrue(factory.create(other).isDirty(), "Parent created after its child was not dirty");
+
+            // The element of a container is proxied without being read through it.
+            ExampleEntity holder  = ExampleEntity.create(5);
+            ExampleEntity element = ExampleEntity.create(6);
+            holder.setEntities(new ArrayList<>(List.of(element)));
+
+            State<ExampleEntity> holderState = factory.create(holder);
+            State<?>             container   = factory.findNode(holderState.getProxy().getEntities());
+            Assertions.assertNotNull(container, "Container was not proxied");
+
+            factory.create(element).getProxy().setName("element");
+            Assertions.assertTrue(container.isDirty(), "Container was not dirty");
+            Assertions.assertTrue(holderState.isDirty(), "Holder was not dirty");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(31)
+        @DisplayName("Should notify listeners once changes are applied")
+        void shouldNotifyAppliedChanges() throws Exception {
+
+            ExampleEntity entity = ExampleEntity.create();
+            entity.setTags(new ArrayList<>());
+            entity.setMapping(Collections.unmodifiableMap(new HashMap<>(Map.of("key", "value"))));
+            ExampleEntity other = ExampleEntity.create(2);
+
+            ClassProxyFactory factory = ClassProxyFactory.builder().threadingMode(ThreadingMode.CONCURRENT).build();
+            ExampleEntity     proxy   = factory.create(entity).getProxy();
+            ExampleEntity     second  = factory.create(other).getProxy();
+            List<String>      tags    = proxy.getTags();
+
+            List<Integer> sizes  = new ArrayList<>();
+            AtomicBoolean nested = new AtomicBoolean();
+
+            try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+                factory.addChangeListener(changes -> {
+                    if (changes.getFirst().state().getProxy() == second) return;
+                    sizes.add(tags.size());
+
+                    // Another thread writing from a listener would never finish if the listener held the write lock.
+                    if (nested.compareAndSet(false, true)) {
+                        Future<?> write = executor.submit(() -> second.setName("nested"));
+                        Assertions.assertDoesNotThrow(() -> write.get(10, TimeUnit.SECONDS), "Listener holds the write lock");
+                    }
+                }, DeliveryMode.SYNCHRONOUS);
+
+                tags.add("first");
+                tags.add("second");
+                Assertions.assertEquals(List.of(1, 2), sizes, "Listener notified before the mutation was applied");
+                Assertions.assertEquals("nested", other.getName(), "Nested write not applied");
+
+                Map<String, String> mapping = proxy.getMapping();
+                Assertions.assertThrows(UnsupportedOperationException.class, () -> mapping.put("key", "other"));
+                Assertions.assertEquals(List.of(1, 2), sizes, "Failed mutation notified");
+            }
+            factory.close();
+        }
+
+        @Test
+        @Order(32)
+        @DisplayName("Should ignore mutators leaving a container unchanged")
+        void shouldIgnoreUnchangedContainers() {
+
+            ExampleEntity entity = ExampleEntity.create();
+            entity.setTags(new ArrayList<>(List.of("a", "b")));
+            entity.setMapping(new HashMap<>(Map.of("key", "value")));
+            entity.setEntities(List.of());
+
+            ClassProxyFactory   factory = ClassProxyFactory.builder().journal(16).build();
+            ExampleEntity       proxy   = factory.create(entity).getProxy();
+            List<String>        tags    = proxy.getTags();
+            Map<String, String> mapping = proxy.getMapping();
+
+            Assertions.assertFalse(tags.remove("absent"), "Absent element removed");
+            Assertions.assertEquals("a", tags.set(0, "a"), "Wrong replaced element");
+            Assertions.assertFalse(tags.removeIf(String::isEmpty), "Element removed");
+            Assertions.assertNull(mapping.remove("absent"), "Absent key removed");
+            Assertions.assertEquals("value", mapping.put("key", "value"), "Wrong previous value");
+            Assertions.assertEquals("value", mapping.putIfAbsent("key", "other"), "Present key replaced");
+            Assertions.assertEquals("value", mapping.computeIfAbsent("key", key -> "other"), "Present key computed");
+            Assertions.assertNull(mapping.computeIfPresent("absent", (key, value) -> "other"), "Absent key computed");
+            Assertions.assertNull(mapping.replace("absent", "other"), "Absent key replaced");
+            mapping.putAll(Map.of("key", "value"));
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> proxy.getEntities().add(ExampleEntity.create(2)));
+
+            Assertions.assertFalse(factory.findNode(tags).isDirty(), "Unchanged list marked as dirty");
+            Assertions.assertFalse(factory.findNode(mapping).isDirty(), "Unchanged map marked as dirty");
+            Assertions.assertFalse(factory.findNode(proxy.getEntities()).isDirty(), "Failed mutation marked as dirty");
+            Assertions.assertEquals(0, factory.getJournal().getNextSequence(), "Unchanged containers journaled");
+
+            Assertions.assertTrue(tags.remove("a"), "Element not removed");
+            Assertions.assertEquals("value", mapping.remove("key"), "Key not removed");
+            Assertions.assertTrue(factory.findNode(tags).isDirty(), "Changed list not dirty");
+            Assertions.assertTrue(factory.findNode(mapping).isDirty(), "Changed map not dirty");
+            Assertions.assertEquals(2, factory.getJournal().getNextSequence(), "Changes not journaled");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(33)
+        @DisplayName("Should never read the value of another key concurrently")
+        void shouldReadConsistentEntriesConcurrently() throws Exception {
+
+            ConcurrentIdentityMap<Object[]> map  = new ConcurrentIdentityMap<>();
+            Object[]                        keys = new Object[256];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = new Object();
+                map.put(keys[i], new Object[]{keys[i]});
+            }
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            try (ExecutorService executor = Executors.newFixedThreadPool(3)) {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int writer = 0; writer < 2; writer++) {
+                    int seed = writer;
+                    writers.add(executor.submit(() -> {
+                        Random random = new Random(seed);
+                        for (int i = 0; i < 200_000; i++) {
+                            Object   key   = keys[random.nextInt(keys.length)];
+                            Object[] value = map.get(key);
+                            if (value != null && map.remove(key, value)) map.put(key, new Object[]{key});
+                        }
+                        return null;
+                    }));
+                }
+
+                Future<Integer> reader = executor.submit(() -> {
+                    int reads = 0;
+                    while (running.get() || reads == 0) {
+                        for (Object key : keys) {
+                            Object[] value = map.get(key);
+                            if (value != null && value[0] != key) return -1;
+                            reads++;
+                        }
+                    }
+                    return reads;
+                });
+
+                for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+                running.set(false);
+                Assertions.assertTrue(reader.get(60, TimeUnit.SECONDS) > 0, "Value of another key read");
+            }
+
+            for (Object key : keys) {
+                Assertions.assertSame(key, map.get(key)[0], "Entry lost");
+            }
+        }
+
+        @Test
+        @Order(34)
+        @DisplayName("Should activate links of a cycle once it is broken")
+        void shouldActivateBrokenCycleLinks() {
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+            ExampleEntity     a       = ExampleEntity.create(1L);
+            ExampleEntity     b       = ExampleEntity.create(2L);
+
+            a.setEntity(b);
+            b.setEntity(a);
+
+            ExampleEntity proxyA = factory.create(a).getProxy();
+            ExampleEntity proxyB = proxyA.getEntity();
+            Assertions.assertSame(proxyA, proxyB.getEntity(), "Cycle not preserved");
+
+            proxyA.setEntity(null);
+            proxyA.setName("x");
+
+            Assertions.assertTrue(factory.getExistingState(a).isDirty(), "A was not dirty");
+            Assertions.assertTrue(factory.getExistingState(b).isDirty(), "Dirtiness of A not propagated to B");
+
+            proxyA.setName(null);
+            proxyA.setEntity(b);
+
+            Assertions.assertFalse(factory.getExistingState(a).isDirty(), "A is still dirty");
+            Assertions.assertFalse(factory.getExistingState(b).isDirty(), "B is still dirty");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(35)
+        @DisplayName("Should journal concurrent writes in the order they were applied")
+        void shouldJournalConcurrentWrites() throws Exception {
+
+            ClassProxyFactory factory = ClassProxyFactory.builder()
+                                                         .threadingMode(ThreadingMode.CONCURRENT)
+                                                         .journal(1 << 16)
+                                                         .build();
+            ExampleEntity     entity  = ExampleEntity.create(1L);
+            ExampleEntity     proxy   = factory.create(entity).getProxy();
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int w = 0; w < 2; w++) {
+                    String prefix = "writer-" + w + "-";
+                    writers.add(executor.submit(() -> {
+                        for (int i = 0; i < 10_000; i++) proxy.setName(prefix + i);
+                    }));
+                }
+                for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+            }
+
+            List<Change> changes = new ArrayList<>();
+            factory.getJournal().cursor(0).drain(changes::add);
+            Assertions.assertEquals(20_000, changes.size(), "Changes lost");
+
+            // Each change must start from the value written by the change numbered before it.
+            for (int i = 1; i < changes.size(); i++) {
+                Assertions.assertEquals(changes.get(i - 1).newValue(), changes.get(i).oldValue(), "Changes out of order");
+            }
+            Assertions.assertEquals(entity.getName(), changes.getLast().newValue(), "Replay ends on a stale value");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(36)
+        @DisplayName("Should never wrap the keys of a map")
+        void shouldNeverWrapKeys() {
+
+            ClassProxyFactory factory = new ClassProxyFactory();
+            ExampleEntity     key     = ExampleEntity.create(2L);
+            ExampleEntity     value   = ExampleEntity.create(3L);
+            KeyedEntity       entity  = new KeyedEntity();
+
+            Map<ExampleEntity, ExampleEntity> raw = new HashMap<>(Map.of(key, value));
+            entity.setEntries(raw);
+            Map<ExampleEntity, ExampleEntity> map = factory.create(entity).getProxy().getEntries();
+
+            Assertions.assertSame(key, map.keySet().iterator().next(), "Key wrapped by the key set");
+            Assertions.assertSame(key, map.entrySet().iterator().next().getKey(), "Key wrapped by the entry set");
+            map.forEach((k, v) -> Assertions.assertSame(key, k, "Key wrapped by forEach"));
+            Assertions.assertNull(factory.getExistingState(key), "Key proxied");
+            Assertions.assertNotSame(value, map.get(key), "Value not wrapped");
+
+            ExampleEntity other = ExampleEntity.create(4L);
+            map.put(factory.create(other).getProxy(), value);
+            Assertions.assertTrue(raw.containsKey(other), "Provided key not unwrapped");
+
+            factory.close();
+        }
+
+        @Test
+        @Order(37)
+        @DisplayName("Should never publish a change over a newer one")
+        void shouldWriteJournalSlotsInOrder() throws Exception {
+
+            ChangeJournal        journal = new ChangeJournal(2);
+            ChangeJournal.Cursor cursor  = journal.cursor();
+            AtomicBoolean        running = new AtomicBoolean(true);
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int w = 0; w < 3; w++) {
+                    writers.add(executor.submit(() -> {
+                        for (long i = 0; i < 20_000; i++) {
+                            Long marker = i;
+                            journal.record(null, null, marker, marker, marker);
+                        }
+                    }));
+                }
+
+                Future<Integer> reader = executor.submit(() -> {
+                    int reads = 0;
+                    while (running.get()) {
+                        for (Change change = cursor.poll(); change != null; change = cursor.poll()) {
+                            if (change.key() != change.oldValue() || change.key() != change.newValue()) return -1;
+                            reads++;
+                        }
+                    }
+                    return reads;
+                });
+
+                for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+                running.set(false);
+                Assertions.assertNotEquals(-1, reader.get(60, TimeUnit.SECONDS), "Mixed change read");
+            }
+
+            cursor.drain(change -> {});
+            Assertions.assertEquals(journal.getNextSequence(), cursor.getPosition(), "Cursor stuck on a slot");
+            Assertions.assertEquals(2, journal.cursor(journal.getNextSequence() - 2).drain(change -> {}), "Latest changes lost");
+        }
+
     }
 
     @Nested
@@ -779,6 +2234,102 @@ public class ClassProxyFactoryTests {
             factory.close();
         }
 
+        @Test
+        @Order(3)
+        @DisplayName("Should never store views into an instance")
+        void shouldNeverStoreViews() {
+
+            ClassProxyFactory factory = ClassProxyFactory.builder().unwrapMode(UnwrapMode.VIEW).build();
+            ExampleEntity     child   = ExampleEntity.create(2L);
+            ExampleEntity     proxy   = factory.create(child).getProxy();
+            ExampleEntity     entity  = ExampleEntity.create(1L);
+            ExampleEntity     parent  = factory.create(entity).getProxy();
+
+            List<ExampleEntity> entities = new ArrayList<>(List.of(proxy));
+            parent.setEntities(entities);
+
+            Assertions.assertEquals(ArrayList.class, entity.getEntities().getClass(), "View stored into the instance");
+            Assertions.assertSame(child, entity.getEntities().getFirst(), "Element not unwrapped");
+
+            entities.add(proxy);
+            Assertions.assertEquals(1, entity.getEntities().size(), "Instance aliases the provided list");
+
+            TreeMap<String, ExampleEntity> sorted = new TreeMap<>(Comparator.reverseOrder());
+            sorted.put("a", proxy);
+            sorted.put("b", proxy);
+            parent.setEntityMap(sorted);
+
+            TreeMap<?, ?> stored = Assertions.assertInstanceOf(TreeMap.class, entity.getEntityMap(), "Sorted map lost");
+            Assertions.assertSame(sorted.comparator(), stored.comparator(), "Comparator lost");
+            Assertions.assertEquals(List.of("b", "a"), List.copyOf(stored.keySet()), "Ordering lost");
+            Assertions.assertSame(child, stored.get("a"), "Value not unwrapped");
+
+            Set<ExampleEntity> view = factory.unwrap(new HashSet<>(List.of(proxy)));
+            Assertions.assertTrue(view.contains(child), "Raw element not found");
+            Assertions.assertTrue(view.contains(proxy), "Proxied element not found");
+            Assertions.assertTrue(view.remove(child), "Raw element not removed");
+            Assertions.assertTrue(view.isEmpty(), "Element not removed");
+
+            factory.close();
+        }
+
+    }
+
+    /**
+     * Entity only used to check flight recorder events, so that its proxy class is generated while recording.
+     */
+    public static class RecordedEntity {
+
+        private String value;
+
+        public String getValue() {
+
+            return this.value;
+        }
+
+        public void setValue(String value) {
+
+            this.value = value;
+        }
+
+    }
+
+    /**
+     * Entity holding a map keyed by entities, used to check how keys are wrapped.
+     */
+    public static class KeyedEntity {
+
+        private Map<ExampleEntity, ExampleEntity> entries;
+
+        public Map<ExampleEntity, ExampleEntity> getEntries() {
+
+            return this.entries;
+        }
+
+        public void setEntries(Map<ExampleEntity, ExampleEntity> entries) {
+
+            this.entries = entries;
+        }
+
+    }
+
+    /**
+     * Entity only used to check pregenerated proxy classes, so that no other test generates its proxy class first.
+     */
+    public static class PregeneratedEntity {
+
+        private String value;
+
+        public String getValue() {
+
+            return this.value;
+        }
+
+        public void setValue(String value) {
+
+            this.value = value;
+        }
+
     }
 
 }